@@ -0,0 +1,80 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.ardulink.core.AbstractConnection;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Connection simulating an arduino running the Ardulink sketch: every message
+ * carrying a message id is answered with an ok reply. Replies are sent by a
+ * separate thread like they would be received by a real connection's reader
+ * thread.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class InMemoryArduino extends AbstractConnection {
+
+	private static final String ID_PARAM = "?id=";
+
+	private final BlockingQueue<String> replies = new LinkedBlockingQueue<String>();
+
+	private final Thread thread = new Thread() {
+
+		{
+			setDaemon(true);
+			start();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					contactListeners4Received(replies.take().getBytes());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	};
+
+	@Override
+	public void write(byte[] bytes) throws IOException {
+		String message = new String(bytes);
+		int idx = message.indexOf(ID_PARAM);
+		if (idx >= 0) {
+			replies.add("alp://rply/ok?id="
+					+ message.substring(idx + ID_PARAM.length()).trim());
+		}
+		contactListeners4Sent(bytes);
+	}
+
+	@Override
+	public void close() throws IOException {
+		thread.interrupt();
+	}
+
+}
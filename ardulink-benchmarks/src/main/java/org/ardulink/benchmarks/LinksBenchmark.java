@@ -0,0 +1,90 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.benchmarks;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.ardulink.core.Link;
+import org.ardulink.core.convenience.Links;
+import org.ardulink.util.URIs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Retrieving and releasing cached links from several threads concurrently.
+ * One link is held open during the whole benchmark so the link itself is
+ * shared and only the cache is exercised.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LinksBenchmark {
+
+	private final URI uri = URIs.newURI("ardulink://benchmark");
+
+	private Link held;
+
+	@Setup
+	public void setup() {
+		held = Links.getLink(uri);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		held.close();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void getLinkSingleThreaded() throws IOException {
+		getAndClose();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void getLinkContended() throws IOException {
+		getAndClose();
+	}
+
+	private void getAndClose() throws IOException {
+		Links.getLink(uri).close();
+	}
+
+}
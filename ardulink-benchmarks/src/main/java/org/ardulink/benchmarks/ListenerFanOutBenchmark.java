@@ -0,0 +1,93 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.benchmarks;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.ardulink.core.Pin.analogPin;
+
+import java.io.IOException;
+
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.DefaultAnalogPinValueChangedEvent;
+import org.ardulink.core.events.EventListenerAdapter;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Dispatching a pin change event to the registered listeners of a link.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ListenerFanOutBenchmark {
+
+	@Param({ "1", "10", "100", "1000" })
+	public int listeners;
+
+	private ConnectionBasedLink link;
+
+	private final AnalogPinValueChangedEvent event = new DefaultAnalogPinValueChangedEvent(
+			analogPin(3), 512);
+
+	@Setup
+	public void setup(final Blackhole blackhole) throws IOException {
+		link = new ConnectionBasedLink(new InMemoryArduino(),
+				ArdulinkProtocol2.instance());
+		for (int i = 0; i < listeners; i++) {
+			link.addListener(new EventListenerAdapter() {
+				@Override
+				public void stateChanged(AnalogPinValueChangedEvent event) {
+					blackhole.consume(event);
+				}
+			});
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		link.close();
+	}
+
+	@Benchmark
+	public void fireStateChanged() {
+		link.fireStateChanged(event);
+	}
+
+}
@@ -0,0 +1,97 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.benchmarks;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.proto.api.MessageIdHolders.addMessageId;
+
+import org.ardulink.core.proto.api.Protocol;
+import org.ardulink.core.proto.api.Protocol.FromArduino;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.ardulink.core.proto.impl.DefaultToArduinoPinEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Encoding and decoding of {@link ArdulinkProtocol2} messages.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProtocolBenchmark {
+
+	private final Protocol protocol = ArdulinkProtocol2.instance();
+
+	private final DefaultToArduinoPinEvent digitalPinEvent = new DefaultToArduinoPinEvent(
+			digitalPin(13), true);
+	private final DefaultToArduinoPinEvent analogPinEvent = new DefaultToArduinoPinEvent(
+			analogPin(9), 1023);
+
+	private final byte[] analogPinRead = "alp://ared/5/1023".getBytes();
+	private final byte[] digitalPinRead = "alp://dred/13/1".getBytes();
+	private final byte[] reply = "alp://rply/ok?id=4711".getBytes();
+
+	@Benchmark
+	public byte[] encodeDigitalPinEvent() {
+		return protocol.toArduino(digitalPinEvent);
+	}
+
+	@Benchmark
+	public byte[] encodeAnalogPinEvent() {
+		return protocol.toArduino(analogPinEvent);
+	}
+
+	@Benchmark
+	public byte[] encodeAnalogPinEventWithMessageId() {
+		return protocol.toArduino(addMessageId(analogPinEvent, 4711));
+	}
+
+	@Benchmark
+	public FromArduino decodeAnalogPinRead() {
+		return protocol.fromArduino(analogPinRead);
+	}
+
+	@Benchmark
+	public FromArduino decodeDigitalPinRead() {
+		return protocol.fromArduino(digitalPinRead);
+	}
+
+	@Benchmark
+	public FromArduino decodeReply() {
+		return protocol.fromArduino(reply);
+	}
+
+}
@@ -0,0 +1,124 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.benchmarks;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.ardulink.core.StreamReader;
+import org.ardulink.core.proto.impl.ArdulinkBinaryProtocol;
+import org.ardulink.core.proto.impl.ArdulinkBinaryProtocol.Opcode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Splitting a stream of received bytes into frames using
+ * {@link StreamReader}, for the separator based text protocol as well as for
+ * the length prefixed binary protocol.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StreamReaderBenchmark {
+
+	@Param({ "1000" })
+	public int frames;
+
+	private byte[] textStream;
+	private byte[] binaryStream;
+	private final ArdulinkBinaryProtocol binaryProtocol = new ArdulinkBinaryProtocol();
+
+	@Setup
+	public void setup() throws IOException {
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		for (int i = 0; i < frames; i++) {
+			text.write(("alp://ared/" + (i % 6) + "/" + (i % 1024) + "\n")
+					.getBytes());
+			binary.write(analogPinRead(i % 6, i % 1024));
+		}
+		textStream = text.toByteArray();
+		binaryStream = binary.toByteArray();
+	}
+
+	@Benchmark
+	public void separatorFraming(Blackhole blackhole) {
+		reader(textStream, blackhole).readUntilClosed("\n".getBytes());
+	}
+
+	@Benchmark
+	public void binaryFraming(Blackhole blackhole) {
+		reader(binaryStream, blackhole).readUntilClosed(binaryProtocol);
+	}
+
+	private static StreamReader reader(byte[] bytes, final Blackhole blackhole) {
+		return new StreamReader(new ByteArrayInputStream(bytes)) {
+			@Override
+			protected void received(byte[] bytes) throws Exception {
+				blackhole.consume(bytes);
+			}
+		};
+	}
+
+	/**
+	 * Returns an analog pin read frame of the binary protocol (without CRC).
+	 */
+	private static byte[] analogPinRead(int pin, int value) {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		payload.write(Opcode.ANALOG_PIN_READ.getCode());
+		writeVarint(payload, pin);
+		writeVarint(payload, value << 1);
+		ByteArrayOutputStream frame = new ByteArrayOutputStream();
+		frame.write(ArdulinkBinaryProtocol.SYNC);
+		writeVarint(frame, payload.size());
+		byte[] bytes = payload.toByteArray();
+		frame.write(bytes, 0, bytes.length);
+		return frame.toByteArray();
+	}
+
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+}
@@ -1,5 +1,6 @@
 package org.ardulink.core;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -28,22 +29,128 @@ public abstract class AbstractConnection implements Connection {
 	}
 	
 	public void contactListeners4Sent(byte[] bytes) {
+		ByteBuffer view = null;
 		for (Listener listener : listeners) {
 			try {
-				listener.sent(bytes);
+				if (listener instanceof ByteBufferListener) {
+					if (view == null) {
+						view = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+					} else {
+						view.clear();
+					}
+					((ByteBufferListener) listener).sent(view);
+				} else {
+					listener.sent(bytes);
+				}
 			} catch (Exception e) {
 				logger.error("Listener {} failure", listener, e);
 			}
 		}
 	}
 
+	/**
+	 * Passes the message to the listeners. {@link ByteBufferListener}s share
+	 * one read-only view of the array.
+	 * 
+	 * @param bytes
+	 *            the message received
+	 */
 	public void contactListeners4Received(byte[] bytes) {
+		ByteBuffer view = null;
 		for (Listener listener : listeners) {
 			try {
-				listener.received(bytes);
+				if (listener instanceof ByteBufferListener) {
+					if (view == null) {
+						view = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+					} else {
+						view.clear();
+					}
+					((ByteBufferListener) listener).received(view);
+				} else {
+					listener.received(bytes);
+				}
 			} catch (Exception e) {
 				logger.error("Listener {} failure", listener, e);
 			}
 		}
 	}
+
+	/**
+	 * Passes the buffer's remaining bytes to the listeners.
+	 * {@link ByteBufferListener}s share one read-only view of the buffer (the
+	 * buffer itself if it is read-only), its position and limit are reset for
+	 * each of them. All other listeners get a copy which is shared among them.
+	 * 
+	 * @param buffer
+	 *            the message received, the buffer's position and limit are
+	 *            restored before returning
+	 */
+	public void contactListeners4Received(ByteBuffer buffer) {
+		contactListeners(buffer, false);
+	}
+
+	/**
+	 * Passes the buffer's remaining bytes to the listeners like
+	 * {@link #contactListeners4Received(ByteBuffer)} does.
+	 * 
+	 * @param buffer
+	 *            the message sent, the buffer's position and limit are
+	 *            restored before returning
+	 */
+	public void contactListeners4Sent(ByteBuffer buffer) {
+		contactListeners(buffer, true);
+	}
+
+	private void contactListeners(ByteBuffer buffer, boolean sent) {
+		int position = buffer.position();
+		int limit = buffer.limit();
+		ByteBuffer view = null;
+		byte[] bytes = null;
+		try {
+			for (Listener listener : listeners) {
+				try {
+					if (listener instanceof ByteBufferListener) {
+						if (view == null) {
+							view = buffer.isReadOnly() ? buffer : buffer
+									.asReadOnlyBuffer();
+						}
+						view.limit(limit);
+						view.position(position);
+						if (sent) {
+							((ByteBufferListener) listener).sent(view);
+						} else {
+							((ByteBufferListener) listener).received(view);
+						}
+					} else {
+						if (bytes == null) {
+							bytes = toArray(buffer, position, limit);
+						}
+						if (sent) {
+							listener.sent(bytes);
+						} else {
+							listener.received(bytes);
+						}
+					}
+				} catch (Exception e) {
+					logger.error("Listener {} failure", listener, e);
+				}
+			}
+		} finally {
+			buffer.limit(limit);
+			buffer.position(position);
+		}
+	}
+
+	private static byte[] toArray(ByteBuffer buffer, int position, int limit) {
+		byte[] bytes = new byte[limit - position];
+		if (buffer.hasArray()) {
+			System.arraycopy(buffer.array(), buffer.arrayOffset() + position,
+					bytes, 0, bytes.length);
+		} else {
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = buffer.get(position + i);
+			}
+		}
+		return bytes;
+	}
 }
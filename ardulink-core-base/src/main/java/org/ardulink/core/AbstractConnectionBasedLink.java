@@ -25,26 +25,34 @@ import static org.ardulink.util.Throwables.propagate;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.ardulink.util.StopWatch;
 import org.ardulink.util.Throwables;
+import org.ardulink.core.Connection.ByteBufferListenerAdapter;
+import org.ardulink.core.Connection.ByteBufferWriter;
 import org.ardulink.core.Connection.ListenerAdapter;
 import org.ardulink.core.Pin.AnalogPin;
 import org.ardulink.core.Pin.DigitalPin;
-import org.ardulink.core.events.AnalogPinValueChangedEvent;
-import org.ardulink.core.events.DefaultAnalogPinValueChangedEvent;
-import org.ardulink.core.events.DefaultDigitalPinValueChangedEvent;
 import org.ardulink.core.events.DefaultRplyEvent;
-import org.ardulink.core.events.DigitalPinValueChangedEvent;
+import org.ardulink.core.proto.api.ByteBufferDecoder;
+import org.ardulink.core.proto.api.ByteBufferEncoder;
 import org.ardulink.core.proto.api.Protocol;
 import org.ardulink.core.proto.api.Protocol.FromArduino;
 import org.ardulink.core.proto.impl.DefaultToArduinoNoTone;
+import org.ardulink.core.proto.impl.DefaultToArduinoPinEvent;
+import org.ardulink.core.proto.impl.FromArduinoCumulativeReply;
 import org.ardulink.core.proto.impl.FromArduinoPinStateChanged;
 import org.ardulink.core.proto.impl.FromArduinoReady;
 import org.ardulink.core.proto.impl.FromArduinoReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * [ardulinktitle] [ardulinkversion]
@@ -56,17 +64,55 @@ import org.ardulink.core.proto.impl.FromArduinoReply;
  */
 public abstract class AbstractConnectionBasedLink extends AbstractListenerLink {
 
+	private static final Logger logger = LoggerFactory
+			.getLogger(AbstractConnectionBasedLink.class);
+
 	private final Connection connection;
 	private final Protocol protocol;
+	private final OutboundQueue outboundQueue;
+	/**
+	 * Buffer pin switches are encoded into if they can be written without
+	 * creating garbage, <code>null</code> otherwise.
+	 */
+	private final ByteBuffer writeBuffer;
+	private final ByteBuffer writeView;
+	private final AtomicLong messageIds = new AtomicLong();
+	private final AtomicLong malformedFrames = new AtomicLong();
+	private final NavigableSet<Long> awaitingReply = new ConcurrentSkipListSet<Long>();
 	private boolean readyMsgReceived;
 
 	public AbstractConnectionBasedLink(Connection connection, Protocol protocol) {
+		this(connection, protocol, 0);
+	}
+
+	/**
+	 * Creates a link whose messages are sent by an {@link OutboundQueue}
+	 * conflating pending pin switches per pin.
+	 * 
+	 * @param outboundQueueCapacity
+	 *            the maximum number of pending messages or <code>0</code> to
+	 *            write the messages directly to the connection (as
+	 *            {@link org.ardulink.core.qos.ConnectionBasedQosLink} does)
+	 */
+	public AbstractConnectionBasedLink(Connection connection,
+			Protocol protocol, int outboundQueueCapacity) {
 		this.connection = connection;
 		this.protocol = protocol;
-		this.connection.addListener(new ListenerAdapter() {
+		this.outboundQueue = outboundQueueCapacity == 0 ? null
+				: new OutboundQueue(connection, outboundQueueCapacity);
+		if (this.outboundQueue == null && protocol instanceof ByteBufferEncoder
+				&& connection instanceof ByteBufferWriter) {
+			this.writeBuffer = ByteBuffer.allocate(((ByteBufferEncoder) protocol)
+					.getMaxFrameLength());
+			this.writeView = this.writeBuffer.asReadOnlyBuffer();
+		} else {
+			this.writeBuffer = null;
+			this.writeView = null;
+		}
+		this.connection.addListener(new ByteBufferListenerAdapter() {
 			@Override
-			public void received(byte[] bytes) throws IOException {
-				AbstractConnectionBasedLink.this.received(bytes);
+			public void received(ByteBuffer buffer) throws IOException {
+				AbstractConnectionBasedLink.this.received(buffer);
 			}
 		});
 	}
@@ -79,16 +125,172 @@ public abstract class AbstractConnectionBasedLink extends AbstractListenerLink {
 		return protocol;
 	}
 
+	/**
+	 * Returns the number of pin switches that have been dropped because a
+	 * newer value for the same pin has been queued before they were sent.
+	 * 
+	 * @return number of conflated messages, always <code>0</code> if this link
+	 *         has no outbound queue
+	 */
+	public long getConflatedCount() {
+		return outboundQueue == null ? 0 : outboundQueue.getConflatedCount();
+	}
+
+	/**
+	 * Returns the number of frames received by this link that its protocol
+	 * could not decode.
+	 * 
+	 * @return number of malformed frames
+	 */
+	public long getMalformedFrames() {
+		return malformedFrames.get();
+	}
+
+	/**
+	 * Returns a message id not used on this link before. Everything sending
+	 * messages with ids over this link has to use these ids, so each reply
+	 * can be matched unambiguously.
+	 * 
+	 * @return new message id
+	 */
+	public long nextMessageId() {
+		return messageIds.incrementAndGet();
+	}
+
+	/**
+	 * Sends a message carrying the passed id (see {@link #nextMessageId()})
+	 * and remembers the id until its reply has been received (or
+	 * {@link #abandonReply(long)} is called), so cumulative replies fire reply
+	 * events for this message too.
+	 * 
+	 * @param messageId
+	 *            the id of the message
+	 * @param bytes
+	 *            the message to send
+	 * @throws IOException
+	 */
+	public void sendAwaitingReply(long messageId, byte[] bytes)
+			throws IOException {
+		awaitingReply.add(messageId);
+		try {
+			send(bytes);
+		} catch (IOException e) {
+			awaitingReply.remove(messageId);
+			throw e;
+		}
+	}
+
+	/**
+	 * Forgets a message sent by {@link #sendAwaitingReply(long, byte[])} whose
+	 * reply is not of interest any longer (e.g. because it timed out).
+	 * 
+	 * @param messageId
+	 *            the id of the message
+	 */
+	public void abandonReply(long messageId) {
+		awaitingReply.remove(messageId);
+	}
+
+	protected void send(byte[] bytes) throws IOException {
+		if (outboundQueue == null) {
+			connection.write(bytes);
+		} else {
+			outboundQueue.add(bytes);
+		}
+	}
+
+	/**
+	 * Sends a message switching the passed pin. If the link has an outbound
+	 * queue a still pending message for the same pin is replaced.
+	 */
+	protected void send(Pin pin, byte[] bytes) throws IOException {
+		if (outboundQueue == null) {
+			connection.write(bytes);
+		} else {
+			outboundQueue.put(pin, bytes);
+		}
+	}
+
+	/**
+	 * Sends a message switching the analog pin. If the link has no outbound
+	 * queue, its protocol is a {@link ByteBufferEncoder} and its connection a
+	 * {@link ByteBufferWriter} the message is encoded into a buffer reused by
+	 * this link, so switching pins does not create any garbage.
+	 */
+	protected void send(AnalogPin pin, int value) throws IOException {
+		if (writeBuffer == null) {
+			send(pin, protocol.toArduino(new DefaultToArduinoPinEvent(pin,
+					value)));
+		} else {
+			synchronized (writeBuffer) {
+				writeBuffer.clear();
+				((ByteBufferEncoder) protocol).switchAnalogPin(writeBuffer,
+						pin.pinNum(), value);
+				writeEncoded();
+			}
+		}
+	}
+
+	/**
+	 * Sends a message switching the digital pin like
+	 * {@link #send(AnalogPin, int)} does.
+	 */
+	protected void send(DigitalPin pin, boolean value) throws IOException {
+		if (writeBuffer == null) {
+			send(pin, protocol.toArduino(new DefaultToArduinoPinEvent(pin,
+					value)));
+		} else {
+			synchronized (writeBuffer) {
+				writeBuffer.clear();
+				((ByteBufferEncoder) protocol).switchDigitalPin(writeBuffer,
+						pin.pinNum(), value);
+				writeEncoded();
+			}
+		}
+	}
+
+	private void writeEncoded() throws IOException {
+		writeView.limit(writeBuffer.position());
+		writeView.position(0);
+		((ByteBufferWriter) connection).write(writeView);
+	}
+
 	protected void received(byte[] bytes) {
 		received(this.protocol.fromArduino(bytes));
 	}
 
+	/**
+	 * Decodes the frame received. If the protocol is a
+	 * {@link ByteBufferDecoder} the frame is decoded from the connection's
+	 * buffer without copying it.
+	 * 
+	 * @param buffer
+	 *            the frame, only valid during this call
+	 */
+	protected void received(ByteBuffer buffer) {
+		if (this.protocol instanceof ByteBufferDecoder) {
+			received(((ByteBufferDecoder) this.protocol).fromArduino(buffer));
+		} else {
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			received(bytes);
+		}
+	}
+
 	protected void received(FromArduino fromArduino) {
+		if (fromArduino == null) {
+			// malformed frame skipped by the protocol
+			malformedFrames.incrementAndGet();
+			return;
+		}
 		if (fromArduino instanceof FromArduinoPinStateChanged) {
 			handlePinChanged((FromArduinoPinStateChanged) fromArduino);
 		} else if (fromArduino instanceof FromArduinoReply) {
 			FromArduinoReply reply = (FromArduinoReply) fromArduino;
+			awaitingReply.remove(reply.getId());
 			fireReplyReceived(new DefaultRplyEvent(reply.isOk(), reply.getId()));
+		} else if (fromArduino instanceof FromArduinoCumulativeReply) {
+			handleCumulativeReply((FromArduinoCumulativeReply) fromArduino);
 		} else if (fromArduino instanceof FromArduinoReady) {
 			this.readyMsgReceived = true;
 		} else {
@@ -96,21 +298,37 @@ public abstract class AbstractConnectionBasedLink extends AbstractListenerLink {
 		}
 	}
 
+	/**
+	 * Fires a reply event for each message sent by
+	 * {@link #sendAwaitingReply(long, byte[])} covered by the cumulative
+	 * reply. Ids not awaited are ignored since there is no way to tell which
+	 * of them have been sent at all. Links keeping track of the messages they
+	 * sent on their own should override this method and fire events for those
+	 * messages too.
+	 */
+	protected void handleCumulativeReply(FromArduinoCumulativeReply reply) {
+		NavigableSet<Long> covered = awaitingReply.headSet(
+				reply.getUpToId(), true);
+		Long messageId;
+		while ((messageId = covered.pollFirst()) != null) {
+			fireReplyReceived(new DefaultRplyEvent(reply.isOk(messageId),
+					messageId));
+		}
+		logger.debug("Cumulative reply up to {} handled", reply.getUpToId());
+	}
+
 	protected void handlePinChanged(FromArduinoPinStateChanged pinChanged) {
 		Pin pin = pinChanged.getPin();
-		Object value = pinChanged.getValue();
-		if (pin.is(ANALOG) && value instanceof Integer) {
-			AnalogPinValueChangedEvent event = new DefaultAnalogPinValueChangedEvent(
-					(AnalogPin) pin, (Integer) value);
-			fireStateChanged(event);
-		} else if (pin.is(DIGITAL) && value instanceof Boolean) {
-			DigitalPinValueChangedEvent event = new DefaultDigitalPinValueChangedEvent(
-					(DigitalPin) pin, (Boolean) value);
-			fireStateChanged(event);
+		if (pin.is(ANALOG)) {
+			fireStateChanged((AnalogPin) pin, pinChanged.intValue(),
+					System.nanoTime());
+		} else if (pin.is(DIGITAL)) {
+			fireStateChanged((DigitalPin) pin, pinChanged.booleanValue(),
+					System.nanoTime());
 		} else {
 			throw new IllegalStateException(
 					"Cannot handle pin change event for pin " + pin
-							+ " with value " + value);
+							+ " with value " + pinChanged.getValue());
 		}
 	}
 
@@ -199,7 +417,7 @@ public abstract class AbstractConnectionBasedLink extends AbstractListenerLink {
 		// this is not really a ping message since such a message does not exist
 		// (yet). So let's write something that the arduino tries to respond to.
 		try {
-			long messageId = 0;
+			long messageId = nextMessageId();
 			connection.write(getProtocol().toArduino(
 					addMessageId(new DefaultToArduinoNoTone(analogPin(0)),
 							messageId)));
@@ -211,6 +429,9 @@ public abstract class AbstractConnectionBasedLink extends AbstractListenerLink {
 	@Override
 	public void close() throws IOException {
 		deregisterAllEventListeners();
+		if (this.outboundQueue != null) {
+			this.outboundQueue.close();
+		}
 		this.connection.close();
 		super.close();
 	}
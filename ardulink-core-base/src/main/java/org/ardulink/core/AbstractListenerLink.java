@@ -16,19 +16,33 @@ limitations under the License.
 
 package org.ardulink.core;
 
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.ardulink.core.Pin.AnalogPin;
+import org.ardulink.core.Pin.DigitalPin;
 import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.AsyncEventListener;
+import org.ardulink.core.events.AsyncEventListener.OverflowPolicy;
+import org.ardulink.core.events.DefaultAnalogPinValueChangedEvent;
+import org.ardulink.core.events.DefaultDigitalPinValueChangedEvent;
 import org.ardulink.core.events.DigitalPinValueChangedEvent;
+import org.ardulink.core.events.EventCache;
 import org.ardulink.core.events.EventListener;
 import org.ardulink.core.events.FilteredEventListenerAdapter;
+import org.ardulink.core.events.PrimitiveEventListener;
 import org.ardulink.core.events.RplyEvent;
 import org.ardulink.core.events.RplyListener;
+import org.ardulink.util.Optional;
 
 /**
  * [ardulinktitle] [ardulinkversion]
@@ -43,12 +57,87 @@ public abstract class AbstractListenerLink implements Link {
 	private static final Logger logger = LoggerFactory
 			.getLogger(AbstractListenerLink.class);
 
+	// listeners not filtering by pin, the others are held by pinListeners
 	private final List<EventListener> eventListeners = new CopyOnWriteArrayList<EventListener>();
+	private final PinListenerIndex pinListeners = new PinListenerIndex();
+	private final List<PrimitiveEventListener> primitiveListeners = new CopyOnWriteArrayList<PrimitiveEventListener>();
 	private final List<ConnectionListener> connectionListeners = new CopyOnWriteArrayList<ConnectionListener>();
 	private final List<RplyListener> rplyListeners = new CopyOnWriteArrayList<RplyListener>();
+	private final ConcurrentMap<EventListener, AsyncEventListener> asyncListeners = new ConcurrentHashMap<EventListener, AsyncEventListener>();
+
+	private volatile int asyncQueueCapacity;
+	private volatile OverflowPolicy asyncOverflowPolicy;
+	private volatile EventCache eventCache;
 
 	private boolean closed;
 
+	/**
+	 * Switches to asynchronous event dispatch: each {@link EventListener}
+	 * added afterwards gets its own queue and thread (see
+	 * {@link AsyncEventListener}) so slow listeners do not block the thread
+	 * reading from the arduino. Listeners already added keep being called
+	 * synchronously.
+	 * 
+	 * @param queueCapacity
+	 *            the capacity of each listener's queue
+	 * @param overflowPolicy
+	 *            what to do if a listener's queue is full
+	 * @return this link
+	 */
+	public AbstractListenerLink dispatchAsync(int queueCapacity,
+			OverflowPolicy overflowPolicy) {
+		checkArgument(queueCapacity > 0,
+				"queueCapacity must be positive but was %s", queueCapacity);
+		this.asyncOverflowPolicy = checkNotNull(overflowPolicy,
+				"overflowPolicy must not be null");
+		this.asyncQueueCapacity = queueCapacity;
+		return this;
+	}
+
+	/**
+	 * Returns the {@link AsyncEventListener} dispatching the events to the
+	 * passed listener, e.g. to query its lag.
+	 * 
+	 * @param listener
+	 *            the listener added
+	 * @return the AsyncEventListener or absent if the listener is called
+	 *         synchronously
+	 */
+	public Optional<AsyncEventListener> getAsyncListener(EventListener listener) {
+		return Optional.ofNullable(asyncListeners.get(listener));
+	}
+
+	/**
+	 * If set the events fired for pin changes are reused: the same event
+	 * instance is fired for the same pin and value (see {@link EventCache}).
+	 * Listeners must not rely on getting distinct event instances then.
+	 * 
+	 * @param reuseEvents
+	 *            <code>true</code> to reuse events
+	 */
+	public void setReuseEvents(boolean reuseEvents) {
+		this.eventCache = reuseEvents ? new EventCache() : null;
+	}
+
+	/**
+	 * Adds a listener getting pin changes as primitive values. Other than
+	 * {@link #addListener(EventListener)} this does not start listening on
+	 * any pin and the listener is always called synchronously.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 * @return this link
+	 */
+	public Link addPrimitiveListener(PrimitiveEventListener listener) {
+		this.primitiveListeners.add(listener);
+		return this;
+	}
+
+	public Link removePrimitiveListener(PrimitiveEventListener listener) {
+		this.primitiveListeners.remove(listener);
+		return this;
+	}
+
 	public Link addListener(EventListener listener) throws IOException {
 		if (!closed && listener instanceof FilteredEventListenerAdapter) {
 			Pin pin = ((FilteredEventListenerAdapter) listener).getPin();
@@ -59,15 +148,35 @@ public abstract class AbstractListenerLink implements Link {
 			startListening(pin);
 			// }
 		}
-		this.eventListeners.add(listener);
+		if (asyncQueueCapacity > 0) {
+			asyncListeners.putIfAbsent(listener, new AsyncEventListener(listener,
+					asyncQueueCapacity, asyncOverflowPolicy));
+		}
+		if (listener instanceof FilteredEventListenerAdapter) {
+			this.pinListeners.add(
+					((FilteredEventListenerAdapter) listener).getPin(),
+					listener);
+		} else {
+			this.eventListeners.add(listener);
+		}
 		return this;
 	}
 
 	public Link removeListener(EventListener listener) throws IOException {
-		this.eventListeners.remove(listener);
+		if (listener instanceof FilteredEventListenerAdapter) {
+			this.pinListeners.remove(
+					((FilteredEventListenerAdapter) listener).getPin(),
+					listener);
+		} else {
+			this.eventListeners.remove(listener);
+		}
+		AsyncEventListener asyncListener = asyncListeners.remove(listener);
+		if (asyncListener != null) {
+			asyncListener.close();
+		}
 		if (!closed && listener instanceof FilteredEventListenerAdapter) {
 			Pin pin = ((FilteredEventListenerAdapter) listener).getPin();
-			if (!hasListenerForPin(pin)) {
+			if (!pinListeners.hasListeners(pin)) {
 				stopListening(pin);
 			}
 		}
@@ -86,10 +195,63 @@ public abstract class AbstractListenerLink implements Link {
 		return this;
 	}
 
+	/**
+	 * Fires an analog pin change to the {@link PrimitiveEventListener}s. The
+	 * {@link AnalogPinValueChangedEvent} is only created if there are
+	 * {@link EventListener}s interested in the pin.
+	 */
+	public void fireStateChanged(AnalogPin pin, int value, long nanoTime) {
+		for (PrimitiveEventListener listener : this.primitiveListeners) {
+			try {
+				listener.onAnalog(pin.pinNum(), value, nanoTime);
+			} catch (Exception e) {
+				logger.error("EventListener {} failure", listener, e);
+			}
+		}
+		if (hasEventListeners(pin)) {
+			EventCache cache = this.eventCache;
+			fireStateChanged(cache == null ? new DefaultAnalogPinValueChangedEvent(
+					pin, value) : cache.analogEvent(pin, value));
+		}
+	}
+
+	/**
+	 * Fires a digital pin change to the {@link PrimitiveEventListener}s. The
+	 * {@link DigitalPinValueChangedEvent} is only created if there are
+	 * {@link EventListener}s interested in the pin.
+	 */
+	public void fireStateChanged(DigitalPin pin, boolean value, long nanoTime) {
+		for (PrimitiveEventListener listener : this.primitiveListeners) {
+			try {
+				listener.onDigital(pin.pinNum(), value, nanoTime);
+			} catch (Exception e) {
+				logger.error("EventListener {} failure", listener, e);
+			}
+		}
+		if (hasEventListeners(pin)) {
+			EventCache cache = this.eventCache;
+			fireStateChanged(cache == null ? new DefaultDigitalPinValueChangedEvent(
+					pin, value) : cache.digitalEvent(pin, value));
+		}
+	}
+
+	private boolean hasEventListeners(Pin pin) {
+		return !this.eventListeners.isEmpty()
+				|| this.pinListeners.hasListeners(pin);
+	}
+
 	public void fireStateChanged(AnalogPinValueChangedEvent event) {
 		for (EventListener eventListener : this.eventListeners) {
 			try {
-				eventListener.stateChanged(event);
+				dispatcher(eventListener).stateChanged(event);
+			} catch (Exception e) {
+				logger.error("EventListener {} failure", eventListener, e);
+			}
+		}
+		for (EventListener eventListener : this.pinListeners.get(event
+				.getPin())) {
+			try {
+				dispatcher(eventListener).stateChanged(event);
 			} catch (Exception e) {
 				logger.error("EventListener {} failure", eventListener, e);
 			}
@@ -99,7 +261,15 @@ public abstract class AbstractListenerLink implements Link {
 	public void fireStateChanged(DigitalPinValueChangedEvent event) {
 		for (EventListener eventListener : this.eventListeners) {
 			try {
-				eventListener.stateChanged(event);
+				dispatcher(eventListener).stateChanged(event);
+			} catch (Exception e) {
+				logger.error("EventListener {} failure", eventListener, e);
+			}
+		}
+		for (EventListener eventListener : this.pinListeners.get(event
+				.getPin())) {
+			try {
+				dispatcher(eventListener).stateChanged(event);
 			} catch (Exception e) {
 				logger.error("EventListener {} failure", eventListener, e);
 			}
@@ -138,15 +308,12 @@ public abstract class AbstractListenerLink implements Link {
 		}
 	}
 
-	private boolean hasListenerForPin(Pin pin) {
-		for (EventListener listener : this.eventListeners) {
-			if (listener instanceof FilteredEventListenerAdapter
-					&& pin.equals(((FilteredEventListenerAdapter) listener)
-							.getPin())) {
-				return true;
-			}
+	private EventListener dispatcher(EventListener eventListener) {
+		if (asyncListeners.isEmpty()) {
+			return eventListener;
 		}
-		return false;
+		AsyncEventListener asyncListener = asyncListeners.get(eventListener);
+		return asyncListener == null ? eventListener : asyncListener;
 	}
 
 	// TODO make this part of an interface, e.g. ConnectionStateObservable
@@ -165,11 +332,20 @@ public abstract class AbstractListenerLink implements Link {
 		for (EventListener eventListener : this.eventListeners) {
 			removeListener(eventListener);
 		}
+		for (EventListener eventListener : this.pinListeners.all()) {
+			removeListener(eventListener);
+		}
 	}
 
 	@Override
 	public void close() throws IOException {
 		this.closed = true;
+		for (EventListener listener : asyncListeners.keySet()) {
+			AsyncEventListener asyncListener = asyncListeners.remove(listener);
+			if (asyncListener != null) {
+				asyncListener.close();
+			}
+		}
 	}
 
 }
@@ -0,0 +1,246 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Preconditions.checkState;
+import static org.ardulink.util.Threads.startDaemonThread;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Writes messages to an {@link OutputStream} using a writer thread. All
+ * messages pending when the writer thread wakes up are gathered into one buffer
+ * which is written and flushed at once, so bursts of messages are sent using a
+ * few large transfers instead of one transfer per message. A message arriving
+ * while the writer is idle (nothing written within the max latency) is written
+ * immediately. Otherwise the writer thread gathers further messages until the
+ * max latency has passed since the previous write, so a burst is written at
+ * most once per max latency.
+ * <p>
+ * At most {@value #MAX_QUEUED_MESSAGES} messages are queued, writing further
+ * messages blocks until the writer thread caught up. Since the messages are
+ * written asynchronously a failure writing to the stream is thrown by the next
+ * call to {@link #write(byte[])}. Subclasses are notified about the messages
+ * written (see {@link #written(byte[])}).
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class CoalescingWriter implements Closeable {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(CoalescingWriter.class);
+
+	private static final int MAX_BATCH_SIZE = 4096;
+
+	private static final int MAX_QUEUED_MESSAGES = 1024;
+
+	private static final byte[] CLOSE = new byte[0];
+
+	private final OutputStream outputStream;
+	private final long maxLatencyNanos;
+	private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<byte[]>(
+			MAX_QUEUED_MESSAGES);
+	private final ByteArrayOutputStream batch = new ByteArrayOutputStream(
+			MAX_BATCH_SIZE);
+	private final List<byte[]> batched = new ArrayList<byte[]>();
+	private final Thread thread;
+	/**
+	 * Guards closing so no message can be queued behind {@link #CLOSE}.
+	 */
+	private final Object closeLock = new Object();
+	private volatile IOException failure;
+	private boolean closed;
+	private long lastWrite;
+
+	public CoalescingWriter(OutputStream outputStream, long maxLatency,
+			TimeUnit timeUnit) {
+		checkArgument(maxLatency >= 0,
+				"maxLatency must not be negative but was %s", maxLatency);
+		this.outputStream = checkNotNull(outputStream,
+				"outputStream must not be null");
+		this.maxLatencyNanos = timeUnit.toNanos(maxLatency);
+		// idle from the start
+		this.lastWrite = System.nanoTime() - maxLatencyNanos;
+		this.thread = startDaemonThread(new Runnable() {
+
+			@Override
+			public void run() {
+				writeUntilClosed();
+			}
+
+		});
+	}
+
+	/**
+	 * Queues the passed message. The message is written by the writer thread.
+	 * Blocks if the queue is full.
+	 * 
+	 * @param bytes
+	 *            the message to write
+	 * @throws IOException
+	 *             if writing a previous message failed
+	 */
+	public void write(byte[] bytes) throws IOException {
+		checkNotNull(bytes, "bytes must not be null");
+		IOException locFailure = failure;
+		if (locFailure != null) {
+			throw new IOException("Writing to stream failed", locFailure);
+		}
+		synchronized (closeLock) {
+			checkState(!closed, "Writer closed");
+			try {
+				queue.put(bytes);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while queueing");
+			}
+		}
+	}
+
+	/**
+	 * Called by the writer thread for each message after it has been written
+	 * and flushed. The default implementation does nothing.
+	 * 
+	 * @param bytes
+	 *            the message written
+	 */
+	protected void written(byte[] bytes) {
+		// nothing to do
+	}
+
+	private void writeUntilClosed() {
+		try {
+			byte[] bytes;
+			while ((bytes = queue.take()) != CLOSE) {
+				add(bytes);
+				boolean close = gatherPending();
+				writeBatch();
+				if (close) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			logger.error("Error writing to stream", e);
+			failure = e;
+			discardUntilClosed();
+		}
+	}
+
+	/**
+	 * Moves the pending messages to the batch. If the writer is idle only the
+	 * messages already queued are moved.
+	 * 
+	 * @return <code>true</code> if the writer has been closed
+	 */
+	private boolean gatherPending() throws InterruptedException {
+		long deadline = lastWrite + maxLatencyNanos;
+		while (batch.size() < MAX_BATCH_SIZE) {
+			long remaining = deadline - System.nanoTime();
+			byte[] bytes = remaining > 0 ? queue.poll(remaining, NANOSECONDS)
+					: queue.poll();
+			if (bytes == null) {
+				return false;
+			}
+			if (bytes == CLOSE) {
+				return true;
+			}
+			add(bytes);
+		}
+		return false;
+	}
+
+	private void add(byte[] bytes) {
+		batch.write(bytes, 0, bytes.length);
+		batched.add(bytes);
+	}
+
+	private void writeBatch() throws IOException {
+		logger.debug("Stream write batch of {} bytes", batch.size());
+		try {
+			batch.writeTo(outputStream);
+			outputStream.flush();
+			lastWrite = System.nanoTime();
+			for (byte[] bytes : batched) {
+				written(bytes);
+			}
+		} finally {
+			batch.reset();
+			batched.clear();
+		}
+	}
+
+	/**
+	 * Empties the queue after a failure so writers do not block.
+	 */
+	private void discardUntilClosed() {
+		try {
+			while (queue.take() != CLOSE) {
+				continue;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes all messages queued and stops the writer thread. The underlying
+	 * stream is not closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (closeLock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				queue.put(CLOSE);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		try {
+			thread.join(TimeUnit.SECONDS.toMillis(1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread.interrupt();
+	}
+
+}
@@ -18,6 +18,7 @@ package org.ardulink.core;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * [ardulinktitle] [ardulinkversion]
@@ -79,6 +80,86 @@ public interface Connection extends Closeable {
 		}
 	}
 
+	/**
+	 * Listeners implementing this interface get the messages passed as
+	 * read-only {@link ByteBuffer}s instead of byte arrays by connections
+	 * supporting it (see
+	 * {@link AbstractConnection#contactListeners4Received(ByteBuffer)}). This
+	 * way connections can pass slices of their read buffers without copying
+	 * them. The buffer is only valid for the duration of the callback, so
+	 * listeners must copy the bytes if they need them later on.
+	 * <p>
+	 * Connections not supporting buffers call the byte array methods of
+	 * {@link Listener} which {@link ByteBufferListenerAdapter} forwards to the
+	 * buffer methods.
+	 */
+	interface ByteBufferListener extends Listener {
+
+		/**
+		 * Called whenever a message was received from arduino.
+		 * 
+		 * @param buffer
+		 *            the message read, only valid during this call
+		 * @throws IOException
+		 */
+		void received(ByteBuffer buffer) throws IOException;
+
+		/**
+		 * Called whenever a message was sent to the arduino.
+		 * 
+		 * @param buffer
+		 *            the message sent, only valid during this call
+		 * @throws IOException
+		 */
+		void sent(ByteBuffer buffer) throws IOException;
+
+	}
+
+	/**
+	 * Connections able to write messages held by a {@link ByteBuffer} without
+	 * copying them into a new byte array implement this interface.
+	 */
+	interface ByteBufferWriter {
+
+		/**
+		 * Writes the bytes between the buffer's position and its limit. The
+		 * buffer is passed to the listeners afterwards (see
+		 * {@link ByteBufferListener#sent(ByteBuffer)}), so callers should pass
+		 * a read-only buffer.
+		 * 
+		 * @param buffer
+		 *            the message to send, its position and limit are not
+		 *            changed
+		 * @throws IOException
+		 */
+		void write(ByteBuffer buffer) throws IOException;
+
+	}
+
+	class ByteBufferListenerAdapter implements ByteBufferListener {
+
+		@Override
+		public final void received(byte[] bytes) throws IOException {
+			received(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+		}
+
+		@Override
+		public final void sent(byte[] bytes) throws IOException {
+			sent(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+		}
+
+		@Override
+		public void received(ByteBuffer buffer) throws IOException {
+			// do nothing
+		}
+
+		@Override
+		public void sent(ByteBuffer buffer) throws IOException {
+			// do nothing
+		}
+
+	}
+
 	void write(byte[] bytes) throws IOException;
 
 	void addListener(Listener listener);
@@ -29,7 +29,6 @@ import org.ardulink.core.proto.api.ToArduinoStopListening;
 import org.ardulink.core.proto.impl.DefaultToArduinoCustomMessage;
 import org.ardulink.core.proto.impl.DefaultToArduinoKeyPressEvent;
 import org.ardulink.core.proto.impl.DefaultToArduinoNoTone;
-import org.ardulink.core.proto.impl.DefaultToArduinoPinEvent;
 import org.ardulink.core.proto.impl.DefaultToArduinoStartListening;
 import org.ardulink.core.proto.impl.DefaultToArduinoStopListening;
 import org.ardulink.core.proto.impl.DefaultToArduinoTone;
@@ -51,6 +50,16 @@ public class ConnectionBasedLink extends AbstractConnectionBasedLink {
 		super(connection, protocol);
 	}
 
+	/**
+	 * Creates a link sending its messages using an {@link OutboundQueue} with
+	 * the passed capacity. Pending analog and digital pin switches are
+	 * conflated per pin so only the latest value of a pin is sent.
+	 */
+	public ConnectionBasedLink(Connection connection, Protocol protocol,
+			int outboundQueueCapacity) {
+		super(connection, protocol, outboundQueueCapacity);
+	}
+
 	@Override
 	public void startListening(Pin pin) throws IOException {
 		logger.info("Starting listening on pin {}", pin);
@@ -103,16 +112,4 @@ public class ConnectionBasedLink extends AbstractConnectionBasedLink {
 				new DefaultToArduinoCustomMessage(messages)));
 	}
 
-	private void send(AnalogPin pin, int value) throws IOException {
-		send(getProtocol().toArduino(new DefaultToArduinoPinEvent(pin, value)));
-	}
-
-	private void send(DigitalPin pin, boolean value) throws IOException {
-		send(getProtocol().toArduino(new DefaultToArduinoPinEvent(pin, value)));
-	}
-
-	private void send(byte[] bytes) throws IOException {
-		getConnection().write(bytes);
-	}
-
 }
@@ -0,0 +1,264 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static org.ardulink.util.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Splits a stream of bytes into frames divided by a delimiter. Bytes are read
+ * in bulk into a reusable buffer which is searched for the delimiter bytes, so
+ * unlike a {@link java.util.Scanner} there are no regular expressions and no
+ * charset conversions involved. Bytes already searched are not searched again
+ * when more bytes arrive. The buffer grows if a frame does not fit into it,
+ * but frames exceeding the maximum frame length are dropped: the bytes
+ * received are discarded up to the next delimiter, where framing resumes.
+ * Empty frames (consecutive delimiters) are skipped. Frames can either be
+ * retrieved as copies ({@link #next()}) or as views on the buffer
+ * ({@link #nextBuffer()}).
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class DelimiterFramer {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int DEFAULT_MAX_FRAME_LENGTH = 64 * 1024;
+
+	private final byte[] delimiter;
+	private final int maxFrameLength;
+	private byte[] buffer;
+	private ByteBuffer view;
+	private ByteBuffer writable;
+	// bytes between start (inclusive) and end (exclusive) are unconsumed
+	private int start;
+	private int end;
+	// position the next search for the delimiter starts at
+	private int searchFrom;
+	// bounds of the frame found by the last call to findNext
+	private int frameStart;
+	private int frameEnd;
+	// whether the bytes up to the next delimiter belong to a dropped frame
+	private boolean dropping;
+	private long droppedFrames;
+
+	public DelimiterFramer(byte[] delimiter) {
+		this(delimiter, DEFAULT_CAPACITY);
+	}
+
+	public DelimiterFramer(byte[] delimiter, int initialCapacity) {
+		this(delimiter, initialCapacity, DEFAULT_MAX_FRAME_LENGTH);
+	}
+
+	public DelimiterFramer(byte[] delimiter, int initialCapacity,
+			int maxFrameLength) {
+		checkArgument(delimiter.length > 0, "delimiter must not be empty");
+		checkArgument(initialCapacity > 0,
+				"initialCapacity must be positive but was %s", initialCapacity);
+		checkArgument(maxFrameLength > 0,
+				"maxFrameLength must be positive but was %s", maxFrameLength);
+		this.delimiter = delimiter.clone();
+		this.maxFrameLength = maxFrameLength;
+		this.buffer = new byte[initialCapacity];
+		this.view = ByteBuffer.wrap(buffer).asReadOnlyBuffer();
+		this.writable = ByteBuffer.wrap(buffer);
+	}
+
+	/**
+	 * Reads the bytes available (but at least one byte, so this method blocks
+	 * if there are none) from the passed stream into the buffer.
+	 * 
+	 * @param inputStream
+	 *            the stream to read from
+	 * @return the number of bytes read or <code>-1</code> if the end of the
+	 *         stream has been reached
+	 * @throws IOException
+	 */
+	public int fill(InputStream inputStream) throws IOException {
+		makeRoom();
+		int read = inputStream.read(buffer, end, buffer.length - end);
+		if (read > 0) {
+			end += read;
+		}
+		return read;
+	}
+
+	/**
+	 * Reads the bytes available from the passed channel into the buffer. If
+	 * the channel is in non-blocking mode this method returns <code>0</code>
+	 * if there are no bytes available.
+	 * 
+	 * @param channel
+	 *            the channel to read from
+	 * @return the number of bytes read or <code>-1</code> if the end of the
+	 *         stream has been reached
+	 * @throws IOException
+	 */
+	public int fill(ReadableByteChannel channel) throws IOException {
+		makeRoom();
+		writable.limit(buffer.length);
+		writable.position(end);
+		int read = channel.read(writable);
+		if (read > 0) {
+			end += read;
+		}
+		return read;
+	}
+
+	/**
+	 * Returns the next complete frame (without the delimiter).
+	 * 
+	 * @return next frame or <code>null</code> if the buffer does not contain a
+	 *         complete frame
+	 */
+	public byte[] next() {
+		return findNext() ? Arrays.copyOfRange(buffer, frameStart, frameEnd)
+				: null;
+	}
+
+	/**
+	 * Returns the next complete frame (without the delimiter) as the remaining
+	 * bytes of a read-only view on the internal buffer. The view is reused and
+	 * its content is only valid until the next call to
+	 * {@link #fill(InputStream)} or {@link #fill(ReadableByteChannel)}.
+	 * 
+	 * @return next frame or <code>null</code> if the buffer does not contain a
+	 *         complete frame
+	 */
+	public ByteBuffer nextBuffer() {
+		if (!findNext()) {
+			return null;
+		}
+		view.clear();
+		view.limit(frameEnd);
+		view.position(frameStart);
+		return view;
+	}
+
+	private boolean findNext() {
+		int idx;
+		while ((idx = indexOfDelimiter()) >= 0) {
+			frameStart = start;
+			frameEnd = idx;
+			start = idx + delimiter.length;
+			searchFrom = start;
+			if (dropping) {
+				// the tail of a dropped frame
+				dropping = false;
+			} else if (frameEnd > frameStart) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of frames dropped since they exceeded the maximum
+	 * frame length.
+	 * 
+	 * @return number of frames dropped
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames;
+	}
+
+	/**
+	 * Returns and consumes the bytes following the last delimiter. Should be
+	 * called when the end of the stream has been reached.
+	 * 
+	 * @return the remaining bytes or <code>null</code> if there are none
+	 */
+	public byte[] remaining() {
+		byte[] remaining = start == end || dropping ? null : Arrays
+				.copyOfRange(buffer, start, end);
+		start = end = searchFrom = 0;
+		dropping = false;
+		return remaining;
+	}
+
+	private int indexOfDelimiter() {
+		byte first = delimiter[0];
+		int last = end - delimiter.length;
+		for (int i = searchFrom; i <= last; i++) {
+			if (buffer[i] == first && matchesDelimiter(i)) {
+				return i;
+			}
+		}
+		// the delimiter could start within the last bytes
+		searchFrom = Math.max(start, last + 1);
+		return -1;
+	}
+
+	private boolean matchesDelimiter(int offset) {
+		for (int i = 1; i < delimiter.length; i++) {
+			if (buffer[offset + i] != delimiter[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Moves the unconsumed bytes to the front of the buffer and grows the
+	 * buffer if it is full. If the buffer cannot grow any further the frame is
+	 * dropped.
+	 */
+	private void makeRoom() {
+		if (start > 0) {
+			System.arraycopy(buffer, start, buffer, 0, end - start);
+			end -= start;
+			searchFrom -= start;
+			start = 0;
+		}
+		if (end == buffer.length) {
+			int capacity = maxFrameLength + delimiter.length;
+			if (buffer.length < capacity) {
+				buffer = Arrays.copyOf(buffer,
+						Math.min(2 * buffer.length, capacity));
+				view = ByteBuffer.wrap(buffer).asReadOnlyBuffer();
+				writable = ByteBuffer.wrap(buffer);
+			} else if (indexOfDelimiter() < 0) {
+				dropFrame();
+			}
+		}
+	}
+
+	/**
+	 * Discards the bytes of the frame, except the last ones which could be
+	 * the start of the delimiter.
+	 */
+	private void dropFrame() {
+		int keep = delimiter.length - 1;
+		System.arraycopy(buffer, end - keep, buffer, 0, keep);
+		end = keep;
+		searchFrom = 0;
+		if (!dropping) {
+			dropping = true;
+			droppedFrames++;
+		}
+	}
+
+}
@@ -0,0 +1,235 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Preconditions.checkState;
+import static org.ardulink.util.Threads.startDaemonThread;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Bounded queue of messages written to a {@link Connection} by a sender
+ * thread. Messages can be queued using a key (e.g. the {@link Pin} they
+ * switch): if a message with the same key is still pending it is replaced
+ * (conflated) by the newer one, so only the freshest value is sent. Messages
+ * are sent in the order they were queued, the newer message takes the
+ * position of the message it replaces. So a key updated continuously is not
+ * pushed back behind messages queued later.
+ * <p>
+ * If the queue is full callers block until the sender thread has written a
+ * message. Since the messages are written asynchronously a failure writing to
+ * the connection is thrown by the next call queuing a message.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class OutboundQueue implements Closeable {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(OutboundQueue.class);
+
+	private final Connection connection;
+	private final int capacity;
+	private final Map<Object, byte[]> pending = new LinkedHashMap<Object, byte[]>();
+	private final Lock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final AtomicLong conflated = new AtomicLong();
+	private final Thread thread;
+	private volatile IOException failure;
+	private boolean closed;
+
+	public OutboundQueue(Connection connection, int capacity) {
+		checkArgument(capacity > 0, "capacity must be positive but was %s",
+				capacity);
+		this.connection = checkNotNull(connection,
+				"connection must not be null");
+		this.capacity = capacity;
+		this.thread = startDaemonThread(new Runnable() {
+
+			@Override
+			public void run() {
+				sendUntilClosed();
+			}
+
+		});
+	}
+
+	/**
+	 * Queues a message that must not be conflated.
+	 * 
+	 * @param bytes
+	 *            the message to send
+	 * @throws IOException
+	 *             if sending a previous message failed
+	 */
+	public void add(byte[] bytes) throws IOException {
+		put(new Object(), bytes);
+	}
+
+	/**
+	 * Queues a message replacing the pending message queued with the same key
+	 * (if any).
+	 * 
+	 * @param key
+	 *            the key of the message
+	 * @param bytes
+	 *            the message to send
+	 * @throws IOException
+	 *             if sending a previous message failed
+	 */
+	public void put(Object key, byte[] bytes) throws IOException {
+		checkNotNull(bytes, "bytes must not be null");
+		lock.lock();
+		try {
+			while (true) {
+				checkFailure();
+				checkState(!closed, "Queue closed");
+				if (pending.containsKey(key)) {
+					conflated.incrementAndGet();
+					break;
+				}
+				if (pending.size() < capacity) {
+					break;
+				}
+				notFull.await();
+			}
+			// replacing the value of an existing key keeps its position
+			pending.put(key, bytes);
+			notEmpty.signal();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while queuing");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of messages that have been dropped because a newer
+	 * message with the same key has been queued before they were sent.
+	 * 
+	 * @return number of conflated messages
+	 */
+	public long getConflatedCount() {
+		return conflated.get();
+	}
+
+	/**
+	 * Returns the number of messages waiting to be sent.
+	 * 
+	 * @return number of pending messages
+	 */
+	public int size() {
+		lock.lock();
+		try {
+			return pending.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		IOException locFailure = failure;
+		if (locFailure != null) {
+			throw new IOException("Sending to connection failed", locFailure);
+		}
+	}
+
+	private void sendUntilClosed() {
+		try {
+			byte[] bytes;
+			while ((bytes = take()) != null) {
+				connection.write(bytes);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			logger.error("Error sending to connection", e);
+			failure = e;
+		} finally {
+			lock.lock();
+			try {
+				closed = true;
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private byte[] take() throws InterruptedException {
+		lock.lock();
+		try {
+			while (pending.isEmpty()) {
+				if (closed) {
+					return null;
+				}
+				notEmpty.await();
+			}
+			Iterator<byte[]> iterator = pending.values().iterator();
+			byte[] bytes = iterator.next();
+			iterator.remove();
+			notFull.signal();
+			return bytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sends all messages queued and stops the sender thread. The connection is
+	 * not closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			thread.join(TimeUnit.SECONDS.toMillis(1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread.interrupt();
+	}
+
+}
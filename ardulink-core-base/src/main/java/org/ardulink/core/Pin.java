@@ -30,6 +30,27 @@ public abstract class Pin {
 		ANALOG, DIGITAL;
 	}
 
+	/**
+	 * Pins with numbers below this value are interned so
+	 * {@link #analogPin(int)} and {@link #digitalPin(int)} do not allocate new
+	 * instances for them.
+	 */
+	private static final int CACHED_PINS = 256;
+
+	private static final class Cache {
+
+		private static final AnalogPin[] ANALOG_PINS = new AnalogPin[CACHED_PINS];
+		private static final DigitalPin[] DIGITAL_PINS = new DigitalPin[CACHED_PINS];
+
+		static {
+			for (int i = 0; i < CACHED_PINS; i++) {
+				ANALOG_PINS[i] = new AnalogPin(i);
+				DIGITAL_PINS[i] = new DigitalPin(i);
+			}
+		}
+
+	}
+
 	private final int num;
 
 	protected Pin(int num) {
@@ -88,11 +109,13 @@ public abstract class Pin {
 	}
 
 	public static AnalogPin analogPin(int num) {
-		return new AnalogPin(num);
+		return num >= 0 && num < CACHED_PINS ? Cache.ANALOG_PINS[num]
+				: new AnalogPin(num);
 	}
 
 	public static DigitalPin digitalPin(int num) {
-		return new DigitalPin(num);
+		return num >= 0 && num < CACHED_PINS ? Cache.DIGITAL_PINS[num]
+				: new DigitalPin(num);
 	}
 
 	public boolean is(Type type) {
@@ -0,0 +1,139 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static org.ardulink.util.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ardulink.core.Pin.Type;
+import org.ardulink.core.events.EventListener;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Registry of {@link EventListener}s indexed by the type and the number of
+ * the pin they listen to. The listeners of a pin are looked up by array index
+ * so firing an event only visits the listeners of the event's pin. Arrays are
+ * copied on modification (like {@link java.util.concurrent.CopyOnWriteArrayList})
+ * so lookups need no locking. Pins with numbers beyond the size of the arrays
+ * (which are not expected on real boards) are held in a map.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+final class PinListenerIndex {
+
+	private static final EventListener[] NONE = new EventListener[0];
+
+	private static final int MAX_INDEXED_PIN = 1023;
+
+	// indexed by pin type ordinal and pin number
+	private volatile EventListener[][][] listeners = new EventListener[Type
+			.values().length][0][];
+
+	// pins not fitting into the arrays
+	private volatile Map<Pin, EventListener[]> others = Collections.emptyMap();
+
+	public synchronized void add(Pin pin, EventListener listener) {
+		checkArgument(pin.pinNum() >= 0,
+				"Pin number must not be negative but was %s", pin.pinNum());
+		EventListener[] old = get(pin);
+		EventListener[] row = Arrays.copyOf(old, old.length + 1);
+		row[old.length] = listener;
+		set(pin, row);
+	}
+
+	public synchronized boolean remove(Pin pin, EventListener listener) {
+		EventListener[] old = get(pin);
+		for (int i = 0; i < old.length; i++) {
+			if (old[i].equals(listener)) {
+				EventListener[] row = new EventListener[old.length - 1];
+				System.arraycopy(old, 0, row, 0, i);
+				System.arraycopy(old, i + 1, row, i, row.length - i);
+				set(pin, row.length == 0 ? null : row);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void set(Pin pin, EventListener[] row) {
+		int num = pin.pinNum();
+		if (num > MAX_INDEXED_PIN) {
+			Map<Pin, EventListener[]> copy = new HashMap<Pin, EventListener[]>(
+					others);
+			if (row == null) {
+				copy.remove(pin);
+			} else {
+				copy.put(pin, row);
+			}
+			others = copy;
+		} else {
+			EventListener[][][] copy = listeners.clone();
+			int type = pin.getType().ordinal();
+			EventListener[][] byNum = copy[type];
+			copy[type] = num < byNum.length ? byNum.clone() : Arrays.copyOf(
+					byNum, num + 1);
+			copy[type][num] = row;
+			listeners = copy;
+		}
+	}
+
+	/**
+	 * Returns the listeners of the passed pin. The array returned must not be
+	 * modified.
+	 */
+	public EventListener[] get(Pin pin) {
+		int num = pin.pinNum();
+		EventListener[] row;
+		if (num > MAX_INDEXED_PIN) {
+			row = others.get(pin);
+		} else {
+			EventListener[][] byNum = listeners[pin.getType().ordinal()];
+			row = num >= 0 && num < byNum.length ? byNum[num] : null;
+		}
+		return row == null ? NONE : row;
+	}
+
+	public boolean hasListeners(Pin pin) {
+		return get(pin).length > 0;
+	}
+
+	public List<EventListener> all() {
+		List<EventListener> all = new ArrayList<EventListener>();
+		for (EventListener[][] byNum : listeners) {
+			for (EventListener[] row : byNum) {
+				if (row != null) {
+					all.addAll(Arrays.asList(row));
+				}
+			}
+		}
+		for (EventListener[] row : others.values()) {
+			all.addAll(Arrays.asList(row));
+		}
+		return all;
+	}
+
+}
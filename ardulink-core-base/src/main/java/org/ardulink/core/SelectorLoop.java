@@ -0,0 +1,268 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Preconditions.checkState;
+import static org.ardulink.util.Threads.startDaemonThread;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * A single thread servicing many non-blocking channels using a
+ * {@link Selector}. Channels are registered with a {@link Handler} which gets
+ * called by the loop's thread whenever its channel is readable or writable,
+ * so there is no need for a reader thread per connection. Handlers must not
+ * block.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class SelectorLoop implements Closeable {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(SelectorLoop.class);
+
+	public interface Handler {
+
+		/**
+		 * Called if the channel is readable.
+		 * 
+		 * @return <code>false</code> if the end of the stream has been reached
+		 * @throws IOException
+		 */
+		boolean readable() throws IOException;
+
+		/**
+		 * Called if the channel is writable and write interest has been set
+		 * using {@link SelectorLoop#setWriteInterest(SelectionKey, boolean)}.
+		 * 
+		 * @throws IOException
+		 */
+		void writable() throws IOException;
+
+		/**
+		 * Called once when the channel has been deregistered due to the end
+		 * of the stream or a failure.
+		 */
+		void closed();
+
+	}
+
+	private static class Shared {
+		private static final SelectorLoop instance = newShared();
+
+		private static SelectorLoop newShared() {
+			try {
+				return new SelectorLoop();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private final Selector selector;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private final Thread thread;
+	private volatile boolean closed;
+
+	public SelectorLoop() throws IOException {
+		this.selector = Selector.open();
+		this.thread = startDaemonThread(new Runnable() {
+			@Override
+			public void run() {
+				selectUntilClosed();
+			}
+		});
+	}
+
+	/**
+	 * Returns the loop shared by all connections not using a loop of their
+	 * own. It is started on first use and never closed.
+	 * 
+	 * @return the shared loop
+	 */
+	public static SelectorLoop shared() {
+		return Shared.instance;
+	}
+
+	/**
+	 * Registers the channel for reads, the channel is switched to non-blocking
+	 * mode.
+	 * 
+	 * @param channel
+	 *            the channel to register
+	 * @param handler
+	 *            the handler to call
+	 * @return the key of the channel
+	 * @throws IOException
+	 *             if the channel could not be registered
+	 */
+	public SelectionKey register(final SelectableChannel channel,
+			final Handler handler) throws IOException {
+		checkNotNull(handler, "handler must not be null");
+		checkState(!closed, "Loop closed");
+		channel.configureBlocking(false);
+		if (Thread.currentThread() == thread) {
+			return channel.register(selector, SelectionKey.OP_READ, handler);
+		}
+		final CountDownLatch registered = new CountDownLatch(1);
+		final SelectionKey[] key = new SelectionKey[1];
+		final IOException[] failure = new IOException[1];
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					key[0] = channel.register(selector, SelectionKey.OP_READ,
+							handler);
+				} catch (IOException e) {
+					failure[0] = e;
+				} finally {
+					registered.countDown();
+				}
+			}
+		});
+		try {
+			registered.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while registering " + channel);
+		}
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+		return key[0];
+	}
+
+	/**
+	 * Sets or clears the interest in the key's channel becoming writable.
+	 * Can be called by any thread.
+	 */
+	public void setWriteInterest(final SelectionKey key,
+			final boolean interested) {
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				if (key.isValid()) {
+					int ops = key.interestOps();
+					key.interestOps(interested ? ops | SelectionKey.OP_WRITE
+							: ops & ~SelectionKey.OP_WRITE);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Runs the passed task on the loop's thread.
+	 */
+	public void execute(Runnable task) {
+		if (Thread.currentThread() == thread) {
+			task.run();
+		} else {
+			tasks.add(task);
+			selector.wakeup();
+		}
+	}
+
+	private void selectUntilClosed() {
+		while (!closed) {
+			try {
+				runTasks();
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys()
+						.iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					handle(key);
+				}
+			} catch (IOException e) {
+				logger.error("Selecting failed", e);
+			}
+		}
+		for (SelectionKey key : selector.keys()) {
+			if (key.isValid()) {
+				closed(key);
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			logger.debug("Closing selector failed", e);
+		}
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				logger.error("Task {} failure", task, e);
+			}
+		}
+	}
+
+	private void handle(SelectionKey key) {
+		Handler handler = (Handler) key.attachment();
+		try {
+			if (key.isWritable()) {
+				handler.writable();
+			}
+			if (key.isReadable() && !handler.readable()) {
+				closed(key);
+			}
+		} catch (CancelledKeyException e) {
+			logger.debug("Key of {} cancelled", key.channel());
+		} catch (IOException e) {
+			logger.debug("Channel {} failed", key.channel(), e);
+			closed(key);
+		}
+	}
+
+	private void closed(SelectionKey key) {
+		key.cancel();
+		try {
+			((Handler) key.attachment()).closed();
+		} catch (RuntimeException e) {
+			logger.error("Handler {} failure", key.attachment(), e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.closed = true;
+		this.selector.wakeup();
+	}
+
+}
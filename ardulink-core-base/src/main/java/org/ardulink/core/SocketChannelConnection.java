@@ -0,0 +1,225 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Threads.daemonThreadFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.ardulink.core.proto.api.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * A connection reading from and writing to a non-blocking
+ * {@link SocketChannel} serviced by a {@link SelectorLoop}. Other than
+ * {@link StreamConnection} there is no thread per connection: many
+ * connections can share one loop. The frames received are split by the
+ * protocol's separator, so protocols reading frames on their own (
+ * {@link org.ardulink.core.proto.api.FrameReader}) are not supported.
+ * <p>
+ * The listeners are not called by the loop's thread, so a slow listener does
+ * not stall the other connections sharing the loop: the frames read are
+ * handed to a dispatcher calling the listeners in the order the frames have
+ * been received. By default each connection has its own dispatcher whose
+ * thread is only kept while there are frames to deliver.
+ * <p>
+ * Writes not completing immediately are queued and finished by the loop's
+ * thread once the channel becomes writable.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class SocketChannelConnection extends AbstractConnection {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(SocketChannelConnection.class);
+
+	private final SocketChannel channel;
+	private final SelectorLoop loop;
+	private final DelimiterFramer framer;
+	private final Queue<ByteBuffer> pendingWrites = new LinkedList<ByteBuffer>();
+	private final SelectionKey key;
+	private final Executor dispatcher;
+	private final ExecutorService ownedDispatcher;
+
+	public SocketChannelConnection(SocketChannel channel, Protocol protocol)
+			throws IOException {
+		this(channel, protocol, SelectorLoop.shared());
+	}
+
+	public SocketChannelConnection(SocketChannel channel, Protocol protocol,
+			SelectorLoop loop) throws IOException {
+		this(channel, protocol, loop, null);
+	}
+
+	/**
+	 * Creates a connection whose listeners get called by the passed
+	 * dispatcher.
+	 * 
+	 * @param channel
+	 *            the channel to read from and to write to
+	 * @param protocol
+	 *            the protocol whose separator splits the frames
+	 * @param loop
+	 *            the loop servicing the channel
+	 * @param dispatcher
+	 *            the executor calling the listeners, must run the tasks in
+	 *            the order submitted. If <code>null</code> the connection
+	 *            uses a dispatcher of its own
+	 * @throws IOException
+	 */
+	public SocketChannelConnection(SocketChannel channel, Protocol protocol,
+			SelectorLoop loop, Executor dispatcher) throws IOException {
+		checkArgument(protocol.getSeparator().length > 0,
+				"%s has no separator", protocol.getName());
+		this.channel = checkNotNull(channel, "channel must not be null");
+		this.loop = checkNotNull(loop, "loop must not be null");
+		this.framer = new DelimiterFramer(protocol.getSeparator());
+		this.ownedDispatcher = dispatcher == null ? newDispatcher() : null;
+		this.dispatcher = dispatcher == null ? ownedDispatcher : dispatcher;
+		this.key = loop.register(channel, new SelectorLoop.Handler() {
+
+			@Override
+			public boolean readable() throws IOException {
+				return read();
+			}
+
+			@Override
+			public void writable() throws IOException {
+				writePending();
+			}
+
+			@Override
+			public void closed() {
+				logger.debug("Channel {} closed", SocketChannelConnection.this.channel);
+			}
+
+		});
+	}
+
+	private static ExecutorService newDispatcher() {
+		// at most one thread so the frames are delivered in order, the thread
+		// terminates if there is nothing to deliver
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				daemonThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private boolean read() throws IOException {
+		List<byte[]> frames = new ArrayList<byte[]>();
+		int read;
+		while ((read = framer.fill(channel)) > 0) {
+			byte[] frame;
+			while ((frame = framer.next()) != null) {
+				frames.add(frame);
+			}
+		}
+		if (read < 0) {
+			byte[] remaining = framer.remaining();
+			if (remaining != null) {
+				frames.add(remaining);
+			}
+		}
+		dispatch(frames);
+		return read >= 0;
+	}
+
+	private void dispatch(final List<byte[]> frames) {
+		if (frames.isEmpty()) {
+			return;
+		}
+		try {
+			dispatcher.execute(new Runnable() {
+				@Override
+				public void run() {
+					for (byte[] frame : frames) {
+						contactListeners4Received(frame);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			logger.debug("Connection closed, dropping {} frame(s)",
+					frames.size());
+		}
+	}
+
+	@Override
+	public void write(byte[] bytes) throws IOException {
+		logger.debug("Channel write {}", bytes);
+		ByteBuffer buffer = ByteBuffer.wrap(checkNotNull(bytes,
+				"bytes must not be null"));
+		synchronized (pendingWrites) {
+			if (pendingWrites.isEmpty()) {
+				channel.write(buffer);
+			}
+			if (buffer.hasRemaining()) {
+				if (pendingWrites.isEmpty()) {
+					loop.setWriteInterest(key, true);
+				}
+				pendingWrites.add(buffer);
+			}
+		}
+		contactListeners4Sent(bytes);
+	}
+
+	private void writePending() throws IOException {
+		synchronized (pendingWrites) {
+			ByteBuffer buffer;
+			while ((buffer = pendingWrites.peek()) != null) {
+				channel.write(buffer);
+				if (buffer.hasRemaining()) {
+					return;
+				}
+				pendingWrites.remove();
+			}
+			loop.setWriteInterest(key, false);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		key.cancel();
+		channel.close();
+		if (ownedDispatcher != null) {
+			// frames already read still get delivered
+			ownedDispatcher.shutdown();
+		}
+	}
+
+}
@@ -21,7 +21,11 @@ import static org.ardulink.util.Preconditions.checkNotNull;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
 
+import org.ardulink.core.Connection.ByteBufferWriter;
+import org.ardulink.core.proto.api.FrameReader;
 import org.ardulink.core.proto.api.Protocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,41 +38,126 @@ import org.slf4j.LoggerFactory;
  * [adsense]
  *
  */
-public class StreamConnection extends AbstractConnection {
+public class StreamConnection extends AbstractConnection implements
+		ByteBufferWriter {
 
 	private static final Logger logger = LoggerFactory
 			.getLogger(StreamConnection.class);
 
 	private final StreamReader streamReader;
 	private final OutputStream outputStream;
+	private final CoalescingWriter writer;
+	/**
+	 * Copy of buffers not backed by an array, guarded by the output stream.
+	 */
+	private byte[] writeArray = new byte[0];
 
 	public StreamConnection(InputStream inputStream, OutputStream outputStream,
 			Protocol protocol) {
+		this(inputStream, outputStream, protocol, false, 0, null);
+	}
+
+	/**
+	 * Creates a connection whose messages are written by a writer thread that
+	 * gathers all pending messages and writes them at once (see
+	 * {@link CoalescingWriter}).
+	 * 
+	 * @param maxLatency
+	 *            the time the writer thread gathers further messages after a
+	 *            write before writing the next batch, <code>0</code> to write
+	 *            the messages pending without waiting
+	 */
+	public StreamConnection(InputStream inputStream, OutputStream outputStream,
+			Protocol protocol, long maxLatency, TimeUnit timeUnit) {
+		this(inputStream, outputStream, protocol, true, maxLatency, timeUnit);
+	}
+
+	private StreamConnection(InputStream inputStream,
+			OutputStream outputStream, Protocol protocol, boolean coalescing,
+			long maxLatency, TimeUnit timeUnit) {
 		this.outputStream = outputStream;
+		this.writer = coalescing ? new CoalescingWriter(outputStream,
+				maxLatency, timeUnit) {
+			@Override
+			protected void written(byte[] bytes) {
+				contactListeners4Sent(bytes);
+			}
+		} : null;
 		this.streamReader = new StreamReader(inputStream) {
 			@Override
 			protected void received(byte[] bytes) throws Exception {
 				contactListeners4Received(bytes);
 			}
+
+			@Override
+			protected void received(ByteBuffer buffer) throws Exception {
+				contactListeners4Received(buffer);
+			}
 		};
 		if (inputStream != null) {
-			String delimiter = new String(protocol.getSeparator());
-			streamReader.runReaderThread(delimiter);
+			if (protocol instanceof FrameReader) {
+				streamReader.runReaderThread((FrameReader) protocol);
+			} else {
+				streamReader.runReaderThread(protocol.getSeparator());
+			}
 		}
 	}
 
 	@Override
 	public void write(byte[] bytes) throws IOException {
 		logger.debug("Stream write {}", bytes);
+		if (writer == null) {
+			synchronized (outputStream) {
+				outputStream.write(checkNotNull(bytes, "bytes must not be null"));
+				outputStream.flush();
+			}
+			contactListeners4Sent(bytes);
+		} else {
+			// listeners are contacted once the message has been written
+			writer.write(bytes);
+		}
+	}
+
+	/**
+	 * Writes the buffer without creating any garbage: the array of array
+	 * backed buffers is written directly, other buffers are copied into an
+	 * array reused by this connection. If messages are written by a
+	 * {@link CoalescingWriter} the message has to be copied since the writer
+	 * keeps it until it is written.
+	 */
+	@Override
+	public void write(ByteBuffer buffer) throws IOException {
+		if (writer != null) {
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.duplicate().get(bytes);
+			write(bytes);
+			return;
+		}
+		int position = buffer.position();
+		int length = buffer.remaining();
 		synchronized (outputStream) {
-			outputStream.write(checkNotNull(bytes, "bytes must not be null"));
+			if (buffer.hasArray()) {
+				outputStream.write(buffer.array(), buffer.arrayOffset()
+						+ position, length);
+			} else {
+				if (writeArray.length < length) {
+					writeArray = new byte[length];
+				}
+				for (int i = 0; i < length; i++) {
+					writeArray[i] = buffer.get(position + i);
+				}
+				outputStream.write(writeArray, 0, length);
+			}
 			outputStream.flush();
 		}
-		contactListeners4Sent(bytes);
+		contactListeners4Sent(buffer);
 	}
 
 	@Override
 	public void close() throws IOException {
+		if (this.writer != null) {
+			this.writer.close();
+		}
 		this.outputStream.close();
 		this.streamReader.close();
 	}
@@ -16,11 +16,15 @@ limitations under the License.
 
 package org.ardulink.core;
 
+import static org.ardulink.util.Threads.startDaemonThread;
+
+import java.io.BufferedInputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Scanner;
+import java.nio.ByteBuffer;
 
+import org.ardulink.core.proto.api.FrameReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,43 +52,105 @@ public abstract class StreamReader implements Closeable {
 		return inputStream;
 	}
 
-	public void runReaderThread(final String delimiter) {
-		this.thread = new Thread() {
+	public void runReaderThread(String delimiter) {
+		runReaderThread(delimiter.getBytes());
+	}
 
-			{
-				setDaemon(true);
-				start();
-			}
+	public void runReaderThread(final byte[] delimiter) {
+		this.thread = startDaemonThread(new Runnable() {
 
 			@Override
 			public void run() {
 				readUntilClosed(delimiter);
 			}
 
-		};
+		});
+	}
+
+	public void runReaderThread(final FrameReader frameReader) {
+		this.thread = startDaemonThread(new Runnable() {
+
+			@Override
+			public void run() {
+				readUntilClosed(frameReader);
+			}
+
+		});
 	}
 
 	public void readUntilClosed(String delimiter) {
-		Scanner scanner = new Scanner(inputStream);
+		readUntilClosed(delimiter.getBytes());
+	}
+
+	public void readUntilClosed(byte[] delimiter) {
+		DelimiterFramer framer = new DelimiterFramer(delimiter);
 		try {
-			scanner.useDelimiter(delimiter);
-			while (scanner.hasNext()) {
-				try {
-					logger.debug("Waiting for data");
-					byte[] bytes = scanner.next().getBytes();
-					logger.debug("Stream read {}", bytes);
-					received(bytes);
-				} catch (Exception e) {
-					logger.error("Error while retrieving data", e);
+			logger.debug("Waiting for data");
+			while (framer.fill(inputStream) >= 0) {
+				ByteBuffer buffer;
+				while ((buffer = framer.nextBuffer()) != null) {
+					received0(buffer);
 				}
 			}
-		} finally {
-			scanner.close();
+			byte[] remaining = framer.remaining();
+			if (remaining != null) {
+				received0(remaining);
+			}
+		} catch (IOException e) {
+			logger.debug("Stream closed", e);
+		}
+	}
+
+	public void readUntilClosed(FrameReader frameReader) {
+		InputStream bufferedStream = new BufferedInputStream(inputStream);
+		try {
+			byte[] bytes;
+			while ((bytes = frameReader.readFrame(bufferedStream)) != null) {
+				received0(bytes);
+			}
+		} catch (IOException e) {
+			logger.debug("Stream closed", e);
+		}
+	}
+
+	private void received0(byte[] bytes) {
+		try {
+			logger.debug("Stream read {}", bytes);
+			received(bytes);
+		} catch (Exception e) {
+			logger.error("Error while retrieving data", e);
+		}
+	}
+
+	private void received0(ByteBuffer buffer) {
+		try {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Stream read {} bytes", buffer.remaining());
+			}
+			received(buffer);
+		} catch (Exception e) {
+			logger.error("Error while retrieving data", e);
 		}
 	}
 
 	protected abstract void received(byte[] bytes) throws Exception;
 
+	/**
+	 * Called for frames read using a delimiter. The buffer is a read-only view
+	 * on the reader's buffer and is only valid during this call. Subclasses
+	 * that can process buffers should override this method, the default
+	 * implementation copies the bytes and calls {@link #received(byte[])}.
+	 * 
+	 * @param buffer
+	 *            the frame read (the buffer's remaining bytes)
+	 * @throws Exception
+	 */
+	protected void received(ByteBuffer buffer) throws Exception {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		received(bytes);
+	}
+
 	@Override
 	public void close() throws IOException {
 		Thread locThread = this.thread;
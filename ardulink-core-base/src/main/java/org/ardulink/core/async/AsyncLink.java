@@ -0,0 +1,61 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.async;
+
+import java.io.Closeable;
+
+import org.ardulink.core.Pin;
+import org.ardulink.core.Pin.AnalogPin;
+import org.ardulink.core.Pin.DigitalPin;
+import org.ardulink.core.Tone;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Asynchronous variant of the sending methods of {@link org.ardulink.core.Link}.
+ * The methods return immediately, the returned {@link ReplyFuture} is
+ * completed when the arduino confirmed the message (see
+ * {@link AsyncLinks#asyncLink(org.ardulink.core.Link)}).
+ * <p>
+ * Closing an AsyncLink cancels all pending futures but does not close the
+ * link it has been created for.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public interface AsyncLink extends Closeable {
+
+	ReplyFuture startListening(Pin pin);
+
+	ReplyFuture stopListening(Pin pin);
+
+	ReplyFuture switchAnalogPin(AnalogPin analogPin, int value);
+
+	ReplyFuture switchDigitalPin(DigitalPin digitalPin, boolean value);
+
+	ReplyFuture sendKeyPressEvent(char keychar, int keycode, int keylocation,
+			int keymodifiers, int keymodifiersex);
+
+	ReplyFuture sendTone(Tone tone);
+
+	ReplyFuture sendNoTone(AnalogPin analogPin);
+
+	ReplyFuture sendCustomMessage(String... messages);
+
+}
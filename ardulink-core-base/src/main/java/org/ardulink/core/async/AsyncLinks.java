@@ -0,0 +1,72 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.async;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+
+import org.ardulink.core.AbstractConnectionBasedLink;
+import org.ardulink.core.Link;
+import org.ardulink.core.convenience.LinkDelegate;
+import org.ardulink.core.qos.ConnectionBasedQosLink;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public final class AsyncLinks {
+
+	private AsyncLinks() {
+		super();
+	}
+
+	/**
+	 * Creates an {@link AsyncLink} for the passed link. If the link is based
+	 * on a connection the messages are sent with message ids and the futures
+	 * are completed by the arduino's replies (see
+	 * {@link ConnectionBasedAsyncLink}), {@link ConnectionBasedQosLink}s
+	 * provide their own view respecting their window (see
+	 * {@link ConnectionBasedQosLink#async()}). Otherwise the link's
+	 * synchronous methods are called by a sender thread (see
+	 * {@link LinkAsyncAdapter}).
+	 * 
+	 * @param link
+	 *            the link to send the messages
+	 * @return AsyncLink for the passed link
+	 * @throws IOException
+	 */
+	public static AsyncLink asyncLink(Link link) throws IOException {
+		Link root = link;
+		while (root instanceof LinkDelegate) {
+			root = ((LinkDelegate) root).getDelegate();
+		}
+		if (root instanceof ConnectionBasedQosLink) {
+			return ((ConnectionBasedQosLink) root).async();
+		}
+		if (root instanceof AbstractConnectionBasedLink) {
+			return new ConnectionBasedAsyncLink(
+					(AbstractConnectionBasedLink) root, 5, SECONDS);
+		}
+		return new LinkAsyncAdapter(link);
+	}
+
+}
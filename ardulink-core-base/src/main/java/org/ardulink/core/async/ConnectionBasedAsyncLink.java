@@ -0,0 +1,216 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.async;
+
+import static org.ardulink.core.proto.api.MessageIdHolders.addMessageId;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Threads.daemonThreadFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.ardulink.core.AbstractConnectionBasedLink;
+import org.ardulink.core.Pin;
+import org.ardulink.core.Pin.AnalogPin;
+import org.ardulink.core.Pin.DigitalPin;
+import org.ardulink.core.Tone;
+import org.ardulink.core.events.RplyEvent;
+import org.ardulink.core.events.RplyListener;
+import org.ardulink.core.proto.api.Protocol;
+import org.ardulink.core.proto.impl.DefaultToArduinoCustomMessage;
+import org.ardulink.core.proto.impl.DefaultToArduinoKeyPressEvent;
+import org.ardulink.core.proto.impl.DefaultToArduinoNoTone;
+import org.ardulink.core.proto.impl.DefaultToArduinoPinEvent;
+import org.ardulink.core.proto.impl.DefaultToArduinoStartListening;
+import org.ardulink.core.proto.impl.DefaultToArduinoStopListening;
+import org.ardulink.core.proto.impl.DefaultToArduinoTone;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * {@link AsyncLink} sending messages with message ids using the connection of
+ * an {@link AbstractConnectionBasedLink}. The futures are completed by the
+ * reply with the message's id, so any number of messages can be outstanding
+ * without a thread waiting for each of them. The ids are allocated by the
+ * link, so several async views (and the link's own messages) can share the
+ * connection. The messages are sent using the link's outbound queue (if any). Futures not completed within the
+ * timeout fail with a {@link TimeoutException}, replies that are not ok fail
+ * with an {@link IllegalStateException}.
+ * <p>
+ * Like {@link org.ardulink.core.qos.ConnectionBasedQosLink} this requires
+ * firmware replying to each message carrying an id.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class ConnectionBasedAsyncLink implements AsyncLink {
+
+	private static final ScheduledExecutorService timeouts = Executors
+			.newSingleThreadScheduledExecutor(daemonThreadFactory());
+
+	private final AbstractConnectionBasedLink link;
+	private final long timeout;
+	private final TimeUnit timeUnit;
+	private final ConcurrentMap<Long, ReplyFuture> pending = new ConcurrentHashMap<Long, ReplyFuture>();
+
+	private final RplyListener rplyListener = new RplyListener() {
+		@Override
+		public void rplyReceived(RplyEvent event) {
+			ReplyFuture future = pending.remove(event.getId());
+			if (future != null) {
+				if (event.isOk()) {
+					future.complete(event);
+				} else {
+					future.fail(new IllegalStateException(
+							"Response status is not ok"));
+				}
+			}
+		}
+	};
+
+	public ConnectionBasedAsyncLink(AbstractConnectionBasedLink link,
+			long timeout, TimeUnit timeUnit) throws IOException {
+		this.link = checkNotNull(link, "link must not be null");
+		this.timeout = timeout;
+		this.timeUnit = timeUnit;
+		link.addRplyListener(rplyListener);
+	}
+
+	@Override
+	public ReplyFuture startListening(Pin pin) {
+		long messageId = nextId();
+		return send(messageId, protocol().toArduino(
+				addMessageId(new DefaultToArduinoStartListening(pin),
+						messageId)));
+	}
+
+	@Override
+	public ReplyFuture stopListening(Pin pin) {
+		long messageId = nextId();
+		return send(messageId, protocol().toArduino(
+				addMessageId(new DefaultToArduinoStopListening(pin),
+						messageId)));
+	}
+
+	@Override
+	public ReplyFuture switchAnalogPin(AnalogPin analogPin, int value) {
+		long messageId = nextId();
+		return send(messageId, protocol().toArduino(
+				addMessageId(new DefaultToArduinoPinEvent(analogPin, value),
+						messageId)));
+	}
+
+	@Override
+	public ReplyFuture switchDigitalPin(DigitalPin digitalPin, boolean value) {
+		long messageId = nextId();
+		return send(messageId, protocol().toArduino(
+				addMessageId(new DefaultToArduinoPinEvent(digitalPin, value),
+						messageId)));
+	}
+
+	@Override
+	public ReplyFuture sendKeyPressEvent(char keychar, int keycode,
+			int keylocation, int keymodifiers, int keymodifiersex) {
+		long messageId = nextId();
+		return send(messageId, protocol().toArduino(
+				addMessageId(new DefaultToArduinoKeyPressEvent(keychar,
+						keycode, keylocation, keymodifiers, keymodifiersex),
+						messageId)));
+	}
+
+	@Override
+	public ReplyFuture sendTone(Tone tone) {
+		long messageId = nextId();
+		return send(messageId, protocol().toArduino(
+				addMessageId(new DefaultToArduinoTone(tone), messageId)));
+	}
+
+	@Override
+	public ReplyFuture sendNoTone(AnalogPin analogPin) {
+		long messageId = nextId();
+		return send(messageId, protocol().toArduino(
+				addMessageId(new DefaultToArduinoNoTone(analogPin), messageId)));
+	}
+
+	@Override
+	public ReplyFuture sendCustomMessage(String... messages) {
+		long messageId = nextId();
+		return send(messageId, protocol().toArduino(
+				addMessageId(new DefaultToArduinoCustomMessage(messages),
+						messageId)));
+	}
+
+	/**
+	 * Returns the number of messages sent but not replied (yet).
+	 * 
+	 * @return number of pending messages
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	private Protocol protocol() {
+		return link.getProtocol();
+	}
+
+	private long nextId() {
+		return link.nextMessageId();
+	}
+
+	private ReplyFuture send(final long messageId, byte[] bytes) {
+		final ReplyFuture future = new ReplyFuture();
+		pending.put(messageId, future);
+		timeouts.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (pending.remove(messageId, future)) {
+					link.abandonReply(messageId);
+					future.fail(new TimeoutException(String.format(
+							"No response received for messageId %s within %s %s",
+							messageId, timeout, timeUnit)));
+				}
+			}
+		}, timeout, timeUnit);
+		try {
+			link.sendAwaitingReply(messageId, bytes);
+		} catch (IOException e) {
+			pending.remove(messageId, future);
+			future.fail(e);
+		}
+		return future;
+	}
+
+	@Override
+	public void close() throws IOException {
+		link.removeRplyListener(rplyListener);
+		for (Long messageId : pending.keySet()) {
+			ReplyFuture future = pending.remove(messageId);
+			if (future != null) {
+				link.abandonReply(messageId);
+				future.cancel(false);
+			}
+		}
+	}
+
+}
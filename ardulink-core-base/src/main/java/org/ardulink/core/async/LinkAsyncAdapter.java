@@ -0,0 +1,183 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.async;
+
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Threads.daemonThreadFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ardulink.core.Link;
+import org.ardulink.core.Pin;
+import org.ardulink.core.Pin.AnalogPin;
+import org.ardulink.core.Pin.DigitalPin;
+import org.ardulink.core.Tone;
+import org.ardulink.core.events.DefaultRplyEvent;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * {@link AsyncLink} calling the synchronous methods of any {@link Link} using
+ * a single sender thread, so the messages are sent in the order they were
+ * passed. The futures are completed when the link's method returned. Since
+ * the link does not expose the message ids the replies are completed using
+ * <code>-1</code> as id.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class LinkAsyncAdapter implements AsyncLink {
+
+	private interface Call {
+		void call(Link link) throws IOException;
+	}
+
+	private final Link link;
+	private final ExecutorService executor = Executors
+			.newSingleThreadExecutor(daemonThreadFactory());
+
+	public LinkAsyncAdapter(Link link) {
+		this.link = checkNotNull(link, "link must not be null");
+	}
+
+	@Override
+	public ReplyFuture startListening(final Pin pin) {
+		return submit(new Call() {
+			@Override
+			public void call(Link link) throws IOException {
+				link.startListening(pin);
+			}
+		});
+	}
+
+	@Override
+	public ReplyFuture stopListening(final Pin pin) {
+		return submit(new Call() {
+			@Override
+			public void call(Link link) throws IOException {
+				link.stopListening(pin);
+			}
+		});
+	}
+
+	@Override
+	public ReplyFuture switchAnalogPin(final AnalogPin analogPin,
+			final int value) {
+		return submit(new Call() {
+			@Override
+			public void call(Link link) throws IOException {
+				link.switchAnalogPin(analogPin, value);
+			}
+		});
+	}
+
+	@Override
+	public ReplyFuture switchDigitalPin(final DigitalPin digitalPin,
+			final boolean value) {
+		return submit(new Call() {
+			@Override
+			public void call(Link link) throws IOException {
+				link.switchDigitalPin(digitalPin, value);
+			}
+		});
+	}
+
+	@Override
+	public ReplyFuture sendKeyPressEvent(final char keychar,
+			final int keycode, final int keylocation, final int keymodifiers,
+			final int keymodifiersex) {
+		return submit(new Call() {
+			@Override
+			public void call(Link link) throws IOException {
+				link.sendKeyPressEvent(keychar, keycode, keylocation,
+						keymodifiers, keymodifiersex);
+			}
+		});
+	}
+
+	@Override
+	public ReplyFuture sendTone(final Tone tone) {
+		return submit(new Call() {
+			@Override
+			public void call(Link link) throws IOException {
+				link.sendTone(tone);
+			}
+		});
+	}
+
+	@Override
+	public ReplyFuture sendNoTone(final AnalogPin analogPin) {
+		return submit(new Call() {
+			@Override
+			public void call(Link link) throws IOException {
+				link.sendNoTone(analogPin);
+			}
+		});
+	}
+
+	@Override
+	public ReplyFuture sendCustomMessage(final String... messages) {
+		return submit(new Call() {
+			@Override
+			public void call(Link link) throws IOException {
+				link.sendCustomMessage(messages);
+			}
+		});
+	}
+
+	private ReplyFuture submit(Call call) {
+		Task task = new Task(call);
+		executor.execute(task);
+		return task.future;
+	}
+
+	private class Task implements Runnable {
+
+		private final Call call;
+		private final ReplyFuture future = new ReplyFuture();
+
+		private Task(Call call) {
+			this.call = call;
+		}
+
+		@Override
+		public void run() {
+			if (future.isCancelled()) {
+				return;
+			}
+			try {
+				call.call(link);
+				future.complete(new DefaultRplyEvent(true, -1));
+			} catch (Exception e) {
+				future.fail(e);
+			}
+		}
+
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Runnable task : executor.shutdownNow()) {
+			((Task) task).future.cancel(false);
+		}
+	}
+
+}
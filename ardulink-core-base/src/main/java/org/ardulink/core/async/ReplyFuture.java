@@ -0,0 +1,166 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.ardulink.core.events.RplyEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * {@link Future} of a message sent by an {@link AsyncLink}. Besides blocking
+ * using {@link #get()} callers can register {@link Callback}s which are called
+ * once the future is done, so no thread has to wait for the reply.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class ReplyFuture implements Future<RplyEvent> {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(ReplyFuture.class);
+
+	public interface Callback {
+		/**
+		 * Called once the future is done, either by the thread completing the
+		 * future or, if the future already is done, by the thread registering
+		 * the callback.
+		 * 
+		 * @param future
+		 *            the future that is done
+		 */
+		void done(ReplyFuture future);
+	}
+
+	private final CountDownLatch latch = new CountDownLatch(1);
+	private final List<Callback> callbacks = new ArrayList<Callback>();
+	private boolean done;
+	private boolean cancelled;
+	private RplyEvent result;
+	private Throwable failure;
+
+	/**
+	 * Completes this future with the reply passed.
+	 * 
+	 * @return <code>false</code> if this future already was done
+	 */
+	public boolean complete(RplyEvent event) {
+		return finish(event, null, false);
+	}
+
+	/**
+	 * Completes this future with the failure passed.
+	 * 
+	 * @return <code>false</code> if this future already was done
+	 */
+	public boolean fail(Throwable throwable) {
+		return finish(null, throwable, false);
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return finish(null, null, true);
+	}
+
+	private boolean finish(RplyEvent result, Throwable failure,
+			boolean cancelled) {
+		List<Callback> toCall;
+		synchronized (this) {
+			if (done) {
+				return false;
+			}
+			this.done = true;
+			this.result = result;
+			this.failure = failure;
+			this.cancelled = cancelled;
+			toCall = new ArrayList<Callback>(callbacks);
+			callbacks.clear();
+		}
+		latch.countDown();
+		for (Callback callback : toCall) {
+			call(callback);
+		}
+		return true;
+	}
+
+	public void addCallback(Callback callback) {
+		synchronized (this) {
+			if (!done) {
+				callbacks.add(callback);
+				return;
+			}
+		}
+		call(callback);
+	}
+
+	private void call(Callback callback) {
+		try {
+			callback.done(this);
+		} catch (RuntimeException e) {
+			logger.error("Callback {} failure", callback, e);
+		}
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public synchronized boolean isDone() {
+		return done;
+	}
+
+	@Override
+	public RplyEvent get() throws InterruptedException, ExecutionException {
+		latch.await();
+		return result();
+	}
+
+	@Override
+	public RplyEvent get(long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		if (!latch.await(timeout, unit)) {
+			throw new TimeoutException("No reply within " + timeout + " "
+					+ unit);
+		}
+		return result();
+	}
+
+	private synchronized RplyEvent result() throws ExecutionException {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		if (failure != null) {
+			throw new ExecutionException(failure);
+		}
+		return result;
+	}
+
+}
@@ -16,11 +16,28 @@ limitations under the License.
 
 package org.ardulink.core.convenience;
 
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.ardulink.core.Link;
 
 /**
  * [ardulinktitle] [ardulinkversion]
  * 
+ * A cached link and the number of its users. The usage counter is modified
+ * lock-free, once it has been closed (see {@link #tryClose()}) the value can
+ * no longer be acquired and has to be replaced by a new one.
+ * <p>
+ * The {@link LinkDelegate} handed out to the users is only referenced weakly
+ * so a delegate that is not closed by its users can be garbage collected. Its
+ * {@link PhantomReference} is enqueued then so the link can be closed. While
+ * the unused link lingers (see {@link #startLinger(long, LinkDelegate)}) the
+ * delegate is referenced strongly so it is not mistaken for a leaked one.
+ * 
  * project Ardulink http://www.ardulink.org/
  * 
  * [adsense]
@@ -28,23 +45,177 @@ import org.ardulink.core.Link;
  */
 class CacheValue {
 
-	private final Link link;
-	private int usageCounter;
+	static class LeakedLink extends PhantomReference<LinkDelegate> {
 
-	public CacheValue(Link link) {
-		this.link = link;
+		private final CacheValue cacheValue;
+
+		LeakedLink(LinkDelegate delegate, CacheValue cacheValue,
+				ReferenceQueue<? super LinkDelegate> queue) {
+			super(delegate, queue);
+			this.cacheValue = cacheValue;
+		}
+
+		CacheValue getCacheValue() {
+			return cacheValue;
+		}
+
+	}
+
+	private static class Lingering {
+
+		private final long release;
+		private final LinkDelegate delegate;
+
+		Lingering(long release, LinkDelegate delegate) {
+			this.release = release;
+			this.delegate = delegate;
+		}
+
+	}
+
+	private static final int CLOSED = -1;
+
+	private final Object key;
+	private final AtomicInteger usageCounter = new AtomicInteger();
+	private final AtomicLong releases = new AtomicLong();
+	private volatile Link link;
+	private volatile WeakReference<LinkDelegate> delegate;
+	// keeps the phantom reference reachable as long as the value is cached
+	private LeakedLink leakedLink;
+	private final AtomicReference<Lingering> lingering = new AtomicReference<Lingering>();
+
+	public CacheValue(Object key) {
+		this.key = key;
+	}
+
+	public Object getKey() {
+		return key;
 	}
 
 	public Link getLink() {
 		return link;
 	}
 
-	public int increaseUsageCounter() {
-		return ++usageCounter;
+	/**
+	 * Returns the delegate handed out to the users.
+	 * 
+	 * @return the delegate or <code>null</code> if the link has not been set
+	 *         yet or the delegate has been garbage collected
+	 */
+	public LinkDelegate getDelegate() {
+		WeakReference<LinkDelegate> reference = delegate;
+		return reference == null ? null : reference.get();
+	}
+
+	/**
+	 * Sets the link and the delegate handed out for it. This is done once by
+	 * the user creating the link.
+	 */
+	public void setLink(Link link, LinkDelegate delegate,
+			ReferenceQueue<? super LinkDelegate> queue) {
+		this.link = link;
+		this.leakedLink = new LeakedLink(delegate, this, queue);
+		this.delegate = new WeakReference<LinkDelegate>(delegate);
+	}
+
+	/**
+	 * Increases the usage counter unless the value has been closed.
+	 * 
+	 * @return <code>true</code> if the counter was increased
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			int usages = usageCounter.get();
+			if (usages == CLOSED) {
+				return false;
+			}
+			if (usageCounter.compareAndSet(usages, usages + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Decreases the usage counter if it is positive.
+	 * 
+	 * @return the number of releases that brought the counter down to zero
+	 *         (identifying this idle period) or <code>-1</code> if the value
+	 *         is still in use
+	 */
+	public long release() {
+		while (true) {
+			int usages = usageCounter.get();
+			if (usages <= 0) {
+				return CLOSED;
+			}
+			if (usageCounter.compareAndSet(usages, usages - 1)) {
+				return usages == 1 ? releases.incrementAndGet() : CLOSED;
+			}
+		}
+	}
+
+	/**
+	 * Keeps the delegate referenced strongly while the value lingers unused
+	 * after the passed release.
+	 * 
+	 * @param release
+	 *            the value returned by {@link #release()}
+	 * @param delegate
+	 *            the delegate released
+	 */
+	public void startLinger(long release, LinkDelegate delegate) {
+		Lingering newLingering = new Lingering(release, delegate);
+		while (true) {
+			Lingering current = lingering.get();
+			if (current != null && current.release > release) {
+				return;
+			}
+			if (lingering.compareAndSet(current, newLingering)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Drops the strong reference to the delegate unless the value has been
+	 * released again since the passed release.
+	 * 
+	 * @param release
+	 *            the value passed to {@link #startLinger(long, LinkDelegate)}
+	 */
+	public void endLinger(long release) {
+		Lingering current = lingering.get();
+		if (current != null && current.release == release) {
+			lingering.compareAndSet(current, null);
+		}
+	}
+
+	public boolean isClosed() {
+		return usageCounter.get() == CLOSED;
+	}
+
+	/**
+	 * Closes the value if it is (still) unused and has not been acquired
+	 * since the passed release.
+	 * 
+	 * @param release
+	 *            the value returned by {@link #release()}
+	 * @return <code>true</code> if the value has been closed by this call
+	 */
+	public boolean tryClose(long release) {
+		return releases.get() == release
+				&& usageCounter.compareAndSet(0, CLOSED);
 	}
 
-	public int decreaseUsageCounter() {
-		return --usageCounter;
+	/**
+	 * Closes the value regardless of its usage counter.
+	 * 
+	 * @return <code>true</code> if the value has been closed by this call
+	 */
+	public boolean forceClose() {
+		leakedLink = null;
+		lingering.set(null);
+		return usageCounter.getAndSet(CLOSED) != CLOSED;
 	}
 
 }
@@ -16,38 +16,85 @@ limitations under the License.
 
 package org.ardulink.core.convenience;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.ardulink.core.linkmanager.LinkManager.extractNameFromURI;
-import static org.ardulink.util.Throwables.propagate;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Threads.daemonThreadFactory;
+import static org.ardulink.util.Threads.startDaemonThread;
 
 import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
 import java.net.URI;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.ardulink.core.Link;
+import org.ardulink.core.convenience.CacheValue.LeakedLink;
 import org.ardulink.core.linkmanager.LinkManager;
 import org.ardulink.core.linkmanager.LinkManager.ConfigAttribute;
 import org.ardulink.core.linkmanager.LinkManager.Configurer;
 import org.ardulink.util.URIs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * [ardulinktitle] [ardulinkversion]
  * 
  * This is a convenience layer for retrieving links. Links retrieved via this
  * class are cached and shared.
+ * <p>
+ * Looking up a cached link does not lock. When the last user closed the link
+ * it is kept open for the linger period (see
+ * {@link #setLinger(long, TimeUnit)}, defaults to the milliseconds of the
+ * system property <code>ardulink.links.linger</code> or <code>0</code>) so a
+ * user retrieving it again does not have to wait for the arduino to reboot.
+ * Links that are garbage collected without having been closed are closed
+ * when their collection is detected.
  * 
  * [adsense]
  */
 public final class Links {
 
-	// TODO use a WeakHashMap and use PhantomReferences to close GCed Links
-	private static final Map<Object, CacheValue> cache = new HashMap<Object, CacheValue>();
+	public static final String LINGER_PROPERTY = "ardulink.links.linger";
+
+	private static final Logger logger = LoggerFactory.getLogger(Links.class);
+
+	private static final ConcurrentMap<Object, CacheValue> cache = new ConcurrentHashMap<Object, CacheValue>();
+
+	private static final ReferenceQueue<LinkDelegate> leakedLinks = reaper(new ReferenceQueue<LinkDelegate>());
+
+	private static final ScheduledExecutorService lingerTimer = Executors
+			.newSingleThreadScheduledExecutor(daemonThreadFactory());
+
+	private static volatile long lingerMillis = Long.getLong(
+			LINGER_PROPERTY, 0);
 
 	private Links() {
 		super();
 	}
 
+	/**
+	 * Sets the period links are kept open after their last user closed them.
+	 * 
+	 * @param linger
+	 *            the period, <code>0</code> to close the links immediately
+	 * @param timeUnit
+	 *            the unit of <code>linger</code>
+	 */
+	public static void setLinger(long linger, TimeUnit timeUnit) {
+		checkArgument(linger >= 0, "linger must not be negative but was %s",
+				linger);
+		lingerMillis = timeUnit.toMillis(linger);
+	}
+
+	public static long getLinger(TimeUnit timeUnit) {
+		return timeUnit.convert(lingerMillis, MILLISECONDS);
+	}
+
 	/**
 	 * Returns the default Link which is a connection to the first serial port.
 	 * 
@@ -99,36 +146,137 @@ public final class Links {
 	}
 
 	public static Link getLink(Configurer configurer) {
-		final Object cacheKey = configurer.uniqueIdentifier();
-		synchronized (cache) {
+		Object cacheKey = configurer.uniqueIdentifier();
+		while (true) {
 			CacheValue cacheValue = cache.get(cacheKey);
 			if (cacheValue == null) {
-				cache.put(
-						cacheKey,
-						(cacheValue = new CacheValue(newDelegate(cacheKey,
-								configurer.newLink()))));
+				CacheValue newValue = new CacheValue(cacheKey);
+				cacheValue = cache.putIfAbsent(cacheKey, newValue);
+				if (cacheValue == null) {
+					cacheValue = newValue;
+				}
+			}
+			if (cacheValue.tryAcquire()) {
+				LinkDelegate delegate = cacheValue.getDelegate();
+				if (delegate == null) {
+					delegate = createLink(cacheValue, configurer);
+				}
+				if (delegate != null) {
+					return delegate;
+				}
 			}
-			cacheValue.increaseUsageCounter();
-			return cacheValue.getLink();
+			// closed concurrently, replace it by a new value
+			cache.remove(cacheKey, cacheValue);
 		}
 	}
 
-	private static LinkDelegate newDelegate(final Object cacheKey, Link link) {
+	/**
+	 * Creates the link of the passed value unless another user did so. The
+	 * first user of a value creates the link while the others wait for it.
+	 * 
+	 * @return the delegate or <code>null</code> if the delegate has been
+	 *         garbage collected or the value has been closed
+	 */
+	private static LinkDelegate createLink(CacheValue cacheValue,
+			Configurer configurer) {
+		synchronized (cacheValue) {
+			if (cacheValue.isClosed()) {
+				// creating the link failed while we were waiting
+				return null;
+			}
+			if (cacheValue.getLink() == null) {
+				try {
+					LinkDelegate delegate = newDelegate(cacheValue,
+							configurer.newLink());
+					cacheValue.setLink(delegate.getDelegate(), delegate,
+							leakedLinks);
+					return delegate;
+				} catch (RuntimeException e) {
+					cacheValue.forceClose();
+					cache.remove(cacheValue.getKey(), cacheValue);
+					throw e;
+				}
+			}
+		}
+		LinkDelegate delegate = cacheValue.getDelegate();
+		if (delegate == null) {
+			// the users of the delegate did not close it
+			close(cacheValue);
+		}
+		return delegate;
+	}
+
+	private static LinkDelegate newDelegate(final CacheValue cacheValue,
+			Link link) {
 		return new LinkDelegate(link) {
 			@Override
 			public void close() throws IOException {
-				synchronized (cache) {
-					CacheValue cacheValue = cache.get(cacheKey);
-					if (cacheValue != null
-							&& cacheValue.decreaseUsageCounter() == 0) {
-						cache.remove(cacheKey);
-						super.close();
-					}
+				long release = cacheValue.release();
+				if (release >= 0) {
+					closeUnused(cacheValue, release, this);
 				}
 			}
 		};
 	}
 
+	private static void closeUnused(final CacheValue cacheValue,
+			final long release, LinkDelegate delegate) throws IOException {
+		long linger = lingerMillis;
+		if (linger == 0) {
+			if (cacheValue.tryClose(release)) {
+				cache.remove(cacheValue.getKey(), cacheValue);
+				cacheValue.getLink().close();
+			}
+		} else {
+			cacheValue.startLinger(release, delegate);
+			lingerTimer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					if (cacheValue.tryClose(release)) {
+						cache.remove(cacheValue.getKey(), cacheValue);
+						closeQuietly(cacheValue.getLink());
+					}
+					cacheValue.endLinger(release);
+				}
+			}, linger, MILLISECONDS);
+		}
+	}
+
+	private static void close(CacheValue cacheValue) {
+		if (cacheValue.forceClose()) {
+			logger.warn("Closing link {} that has not been closed by its users",
+					cacheValue.getKey());
+			cache.remove(cacheValue.getKey(), cacheValue);
+			closeQuietly(cacheValue.getLink());
+		}
+	}
+
+	private static void closeQuietly(Link link) {
+		try {
+			link.close();
+		} catch (IOException e) {
+			logger.error("Error closing link", e);
+		}
+	}
+
+	private static ReferenceQueue<LinkDelegate> reaper(
+			final ReferenceQueue<LinkDelegate> queue) {
+		startDaemonThread(new Runnable() {
+			@Override
+			public void run() {
+				while (true) {
+					try {
+						close(((LeakedLink) queue.remove()).getCacheValue());
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+			}
+		});
+		return queue;
+	}
+
 	public static Configurer setChoiceValues(Configurer configurer) {
 		for (String key : configurer.getAttributes()) {
 			ConfigAttribute attribute = configurer.getAttribute(key);
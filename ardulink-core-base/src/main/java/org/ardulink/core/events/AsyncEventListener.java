@@ -0,0 +1,291 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.events;
+
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Threads.daemonThreadFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Decouples an {@link EventListener} from the thread firing the events. Events
+ * are put into a bounded queue which is drained by an {@link Executor}, so a
+ * slow listener does not stall the thread reading from the arduino. The
+ * events of one listener are delivered in order and never concurrently, even
+ * if the executor passed has more than one thread. If the queue is full the
+ * {@link OverflowPolicy} decides what happens.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class AsyncEventListener implements EventListener, Closeable {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(AsyncEventListener.class);
+
+	public enum OverflowPolicy {
+		/**
+		 * The thread firing the event waits until there is room in the queue.
+		 */
+		BLOCK,
+		/**
+		 * The event fired is dropped.
+		 */
+		DROP_NEWEST,
+		/**
+		 * The oldest event queued is dropped.
+		 */
+		DROP_OLDEST;
+	}
+
+	private static final int MAX_EVENTS_PER_RUN = 64;
+
+	private static final class Entry {
+
+		private final PinValueChangedEvent event;
+		private final long queued;
+
+		private Entry(PinValueChangedEvent event) {
+			this.event = event;
+			this.queued = System.nanoTime();
+		}
+
+	}
+
+	private final EventListener delegate;
+	private final BlockingQueue<Entry> queue;
+	private final OverflowPolicy overflowPolicy;
+	private final Executor executor;
+	private final ExecutorService ownedExecutor;
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong maxLagNanos = new AtomicLong();
+	private volatile boolean closed;
+
+	private final Runnable drain = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	/**
+	 * Creates a listener delivering the events using its own thread.
+	 */
+	public AsyncEventListener(EventListener delegate, int capacity,
+			OverflowPolicy overflowPolicy) {
+		this(delegate, capacity, overflowPolicy, null);
+	}
+
+	/**
+	 * Creates a listener delivering the events using the passed executor.
+	 */
+	public AsyncEventListener(EventListener delegate, int capacity,
+			OverflowPolicy overflowPolicy, Executor executor) {
+		checkArgument(capacity > 0, "capacity must be positive but was %s",
+				capacity);
+		this.delegate = checkNotNull(delegate, "delegate must not be null");
+		this.overflowPolicy = checkNotNull(overflowPolicy,
+				"overflowPolicy must not be null");
+		this.queue = new ArrayBlockingQueue<Entry>(capacity);
+		this.ownedExecutor = executor == null ? Executors
+				.newSingleThreadExecutor(daemonThreadFactory()) : null;
+		this.executor = executor == null ? ownedExecutor : executor;
+	}
+
+	public EventListener getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public void stateChanged(AnalogPinValueChangedEvent event) {
+		queue(new Entry(event));
+	}
+
+	@Override
+	public void stateChanged(DigitalPinValueChangedEvent event) {
+		queue(new Entry(event));
+	}
+
+	private void queue(Entry entry) {
+		switch (overflowPolicy) {
+		case BLOCK:
+			try {
+				queue.put(entry);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				dropped.incrementAndGet();
+			}
+			break;
+		case DROP_NEWEST:
+			if (!queue.offer(entry)) {
+				dropped.incrementAndGet();
+			}
+			break;
+		case DROP_OLDEST:
+			while (!queue.offer(entry)) {
+				if (queue.poll() != null) {
+					dropped.incrementAndGet();
+				}
+			}
+			break;
+		default:
+			throw new IllegalStateException("Unknown policy " + overflowPolicy);
+		}
+		schedule();
+	}
+
+	/**
+	 * Schedules a drain unless one is scheduled already.
+	 * 
+	 * @return <code>false</code> if the executor rejected the drain
+	 */
+	private boolean schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			try {
+				executor.execute(drain);
+			} catch (RejectedExecutionException e) {
+				scheduled.set(false);
+				logger.debug("{} closed, {} events not delivered", this,
+						queue.size());
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void drain() {
+		try {
+			Entry entry;
+			int delivered = 0;
+			// once closed there might be no further run, so deliver all
+			while ((delivered++ < MAX_EVENTS_PER_RUN || closed)
+					&& (entry = queue.poll()) != null) {
+				updateMaxLag(System.nanoTime() - entry.queued);
+				deliver(entry.event);
+			}
+		} finally {
+			scheduled.set(false);
+			if (!queue.isEmpty() && !schedule() && closed) {
+				// the executor has been shut down meanwhile
+				deliverRemaining();
+			}
+		}
+	}
+
+	private void deliverRemaining() {
+		if (scheduled.compareAndSet(false, true)) {
+			try {
+				Entry entry;
+				while ((entry = queue.poll()) != null) {
+					updateMaxLag(System.nanoTime() - entry.queued);
+					deliver(entry.event);
+				}
+			} finally {
+				scheduled.set(false);
+			}
+		}
+	}
+
+	private void deliver(PinValueChangedEvent event) {
+		try {
+			if (event instanceof AnalogPinValueChangedEvent) {
+				delegate.stateChanged((AnalogPinValueChangedEvent) event);
+			} else {
+				delegate.stateChanged((DigitalPinValueChangedEvent) event);
+			}
+		} catch (Exception e) {
+			logger.error("EventListener {} failure", delegate, e);
+		}
+	}
+
+	private void updateMaxLag(long lag) {
+		long max;
+		while (lag > (max = maxLagNanos.get())
+				&& !maxLagNanos.compareAndSet(max, lag)) {
+			// retry
+		}
+	}
+
+	/**
+	 * Returns the number of events waiting to be delivered.
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns the number of events dropped because the queue was full.
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the time the oldest event not yet delivered is waiting.
+	 * 
+	 * @return the current lag or <code>0</code> if no event is waiting
+	 */
+	public long getLag(TimeUnit timeUnit) {
+		Entry oldest = queue.peek();
+		return oldest == null ? 0 : timeUnit.convert(System.nanoTime()
+				- oldest.queued, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Returns the longest time an event delivered so far has been waiting.
+	 */
+	public long getMaxLag(TimeUnit timeUnit) {
+		return timeUnit.convert(maxLagNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stops the thread of this listener (if it has its own one). Events still
+	 * queued are delivered.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdown();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncEventListener [delegate=" + delegate + "]";
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.events;
+
+import org.ardulink.core.Pin.AnalogPin;
+import org.ardulink.core.Pin.DigitalPin;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Hands out the same (immutable) event instance for the same pin and value,
+ * so firing events for samples read from the arduino does not allocate new
+ * events. Events are cached for pins up to {@value #MAX_PIN} and analog values
+ * from <code>0</code> to {@value #MAX_ANALOG_VALUE}, events for other pins or
+ * values are created on each call.
+ * <p>
+ * Instances can be shared between threads: in the worst case two threads
+ * create an event for the same pin and value concurrently and one of them is
+ * cached.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class EventCache {
+
+	public static final int MAX_PIN = 127;
+
+	public static final int MAX_ANALOG_VALUE = 1023;
+
+	private final AnalogPinValueChangedEvent[][] analogEvents = new AnalogPinValueChangedEvent[MAX_PIN + 1][];
+	private final DigitalPinValueChangedEvent[][] digitalEvents = new DigitalPinValueChangedEvent[MAX_PIN + 1][];
+
+	public AnalogPinValueChangedEvent analogEvent(AnalogPin pin, int value) {
+		int num = pin.pinNum();
+		if (num < 0 || num > MAX_PIN || value < 0 || value > MAX_ANALOG_VALUE) {
+			return new DefaultAnalogPinValueChangedEvent(pin, value);
+		}
+		AnalogPinValueChangedEvent[] events = analogEvents[num];
+		if (events == null) {
+			events = analogEvents[num] = new AnalogPinValueChangedEvent[MAX_ANALOG_VALUE + 1];
+		}
+		AnalogPinValueChangedEvent event = events[value];
+		if (event == null) {
+			event = events[value] = new DefaultAnalogPinValueChangedEvent(pin,
+					value);
+		}
+		return event;
+	}
+
+	public DigitalPinValueChangedEvent digitalEvent(DigitalPin pin,
+			boolean value) {
+		int num = pin.pinNum();
+		if (num < 0 || num > MAX_PIN) {
+			return new DefaultDigitalPinValueChangedEvent(pin, value);
+		}
+		DigitalPinValueChangedEvent[] events = digitalEvents[num];
+		if (events == null) {
+			events = digitalEvents[num] = new DigitalPinValueChangedEvent[2];
+		}
+		int index = value ? 1 : 0;
+		DigitalPinValueChangedEvent event = events[index];
+		if (event == null) {
+			event = events[index] = new DefaultDigitalPinValueChangedEvent(
+					pin, value);
+		}
+		return event;
+	}
+
+}
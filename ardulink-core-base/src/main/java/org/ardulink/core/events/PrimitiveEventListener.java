@@ -0,0 +1,59 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.events;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Receives pin changes as primitive values so no event objects have to be
+ * created and no values have to be boxed. Implementations are called on the
+ * thread reading from the arduino and should return quickly.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public interface PrimitiveEventListener {
+
+	/**
+	 * Called when the value of an analog pin changed.
+	 * 
+	 * @param pin
+	 *            the pin's number
+	 * @param value
+	 *            the new value
+	 * @param nanoTime
+	 *            the value of {@link System#nanoTime()} when the change was
+	 *            received
+	 */
+	void onAnalog(int pin, int value, long nanoTime);
+
+	/**
+	 * Called when the value of a digital pin changed.
+	 * 
+	 * @param pin
+	 *            the pin's number
+	 * @param value
+	 *            the new value
+	 * @param nanoTime
+	 *            the value of {@link System#nanoTime()} when the change was
+	 *            received
+	 */
+	void onDigital(int pin, boolean value, long nanoTime);
+
+}
@@ -0,0 +1,207 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.core.linkmanager;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.ardulink.util.Threads.daemonThreadFactory;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * The last known choice values of an attribute. They are shared by all
+ * configurers of the same link config class as long as the attributes the
+ * choice depends on have equal values. Values older than the TTL are
+ * refreshed in the background while the last known ones are returned if the
+ * loader is thread-safe, otherwise they are reloaded by the calling thread.
+ * <p>
+ * Values neither used within the TTL (but at least a minute) nor listened to
+ * are dropped when new values are added, so the values (and the link config
+ * classes referenced by the keys) are not kept forever.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+final class ChoiceValues {
+
+	interface Loader {
+		Object[] load() throws Exception;
+	}
+
+	interface Listener {
+		void choiceValuesChanged(Object[] choiceValues);
+	}
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(ChoiceValues.class);
+
+	private static final Object[] NO_VALUES = new Object[0];
+
+	private static final long MIN_IDLE_MILLIS = 60000;
+
+	private static final ConcurrentMap<List<Object>, ChoiceValues> choiceValues = new ConcurrentHashMap<List<Object>, ChoiceValues>();
+
+	private static final ExecutorService loaders = Executors
+			.newCachedThreadPool(daemonThreadFactory());
+
+	private static volatile long ttlMillis = Long.getLong(
+			LinkManager.CHOICE_VALUES_TTL_PROPERTY, 10000);
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private final AtomicBoolean loading = new AtomicBoolean();
+	private volatile Object[] values;
+	private volatile long loadedAt;
+	private volatile long usedAt = System.nanoTime();
+
+	private ChoiceValues() {
+		super();
+	}
+
+	/**
+	 * Returns the choice values for the passed key.
+	 * 
+	 * @param key
+	 *            the link config class, the attribute's name and the values
+	 *            of the attributes the choice depends on
+	 */
+	static ChoiceValues forKey(List<Object> key) {
+		ChoiceValues result = choiceValues.get(key);
+		if (result == null) {
+			ChoiceValues newValues = new ChoiceValues();
+			result = choiceValues.putIfAbsent(key, newValues);
+			if (result == null) {
+				result = newValues;
+				purge();
+			}
+		}
+		result.usedAt = System.nanoTime();
+		return result;
+	}
+
+	private static void purge() {
+		for (Iterator<ChoiceValues> it = choiceValues.values().iterator(); it
+				.hasNext();) {
+			ChoiceValues next = it.next();
+			if (next.isUnused()) {
+				it.remove();
+			}
+		}
+	}
+
+	static void setTtl(long ttlMillis) {
+		ChoiceValues.ttlMillis = ttlMillis;
+	}
+
+	static long getTtl() {
+		return ttlMillis;
+	}
+
+	/**
+	 * Returns the last known values. If there are none or they are older than
+	 * the TTL they are loaded: a thread-safe loader is called in the
+	 * background (returning the last known values without blocking), any
+	 * other loader by the calling thread. The listeners are notified if the
+	 * values changed.
+	 * 
+	 * @param threadSafe
+	 *            whether the loader may be called by a background thread
+	 * @return the last known values or an empty array if the values have not
+	 *         been loaded yet
+	 */
+	Object[] get(final Loader loader, boolean threadSafe) throws Exception {
+		Object[] current = values;
+		if (current == null || isExpired()) {
+			if (!threadSafe) {
+				return load(loader);
+			}
+			refresh(loader);
+		}
+		return current == null ? NO_VALUES : current.clone();
+	}
+
+	/**
+	 * Loads the values in the calling thread.
+	 */
+	Object[] load(Loader loader) throws Exception {
+		Object[] loaded = loader.load();
+		update(loaded);
+		return loaded.clone();
+	}
+
+	void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	private boolean isUnused() {
+		return listeners.isEmpty()
+				&& !loading.get()
+				&& System.nanoTime() - usedAt >= MILLISECONDS.toNanos(Math.max(
+						ttlMillis, MIN_IDLE_MILLIS));
+	}
+
+	private boolean isExpired() {
+		return System.nanoTime() - loadedAt >= MILLISECONDS
+				.toNanos(ttlMillis);
+	}
+
+	private void refresh(final Loader loader) {
+		if (loading.compareAndSet(false, true)) {
+			loaders.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						update(loader.load());
+					} catch (Exception e) {
+						logger.warn("Error loading choice values", e);
+					} finally {
+						loading.set(false);
+					}
+				}
+			});
+		}
+	}
+
+	private void update(Object[] loaded) {
+		Object[] previous = values;
+		values = loaded.clone();
+		loadedAt = System.nanoTime();
+		if (previous == null || !Arrays.equals(previous, loaded)) {
+			for (Listener listener : listeners) {
+				listener.choiceValuesChanged(loaded.clone());
+			}
+		}
+	}
+
+}
@@ -55,6 +55,18 @@ public interface LinkConfig {
 		 * @return attributes this attribute depends on
 		 */
 		String[] dependsOn() default {};
+
+		/**
+		 * Whether the method may be called by a background thread while the
+		 * link config is used by other threads (e.g. it does not modify the
+		 * link config's state). Only then the choice values are refreshed in
+		 * the background (see
+		 * {@link LinkManager.ConfigAttribute#getCachedChoiceValues()}),
+		 * otherwise they are reloaded by the calling thread.
+		 * 
+		 * @return <code>true</code> if the method is thread-safe
+		 */
+		boolean threadSafe() default false;
 	}
 
 	@Retention(RUNTIME)
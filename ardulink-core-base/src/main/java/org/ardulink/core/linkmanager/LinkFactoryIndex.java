@@ -0,0 +1,143 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.core.linkmanager;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import org.ardulink.core.beans.BeanProperties;
+import org.ardulink.core.classloader.ModuleClassLoader;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * The {@link LinkFactory}s found by the {@link ServiceLoader} indexed by their
+ * name. Loading the factories means creating a {@link ModuleClassLoader} and
+ * scanning all jars so the index is built once and reused as long as the
+ * context class loader, the module directory and the jars in it (by name,
+ * size and modification time) stay the same.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+final class LinkFactoryIndex {
+
+	static final String MODULE_DIR_PROPERTY = "ardulink.module.dir";
+
+	private static volatile LinkFactoryIndex current;
+
+	private final ClassLoader parent;
+	private final File moduleDir;
+	private final long fingerprint;
+	private final Map<String, LinkFactory<?>> factories;
+
+	private LinkFactoryIndex(ClassLoader parent, File moduleDir,
+			long fingerprint) {
+		this.parent = parent;
+		this.moduleDir = moduleDir;
+		this.fingerprint = fingerprint;
+		Map<String, LinkFactory<?>> factories = new LinkedHashMap<String, LinkFactory<?>>();
+		for (LinkFactory<?> factory : ServiceLoader.load(LinkFactory.class,
+				new ModuleClassLoader(parent, moduleDir))) {
+			if (!factories.containsKey(factory.getName())) {
+				factories.put(factory.getName(), factory);
+			}
+		}
+		this.factories = Collections.unmodifiableMap(factories);
+	}
+
+	/**
+	 * Returns the index for the current thread's context class loader and
+	 * module directory, loading it if the cached one is outdated.
+	 */
+	static LinkFactoryIndex get() {
+		ClassLoader parent = Thread.currentThread().getContextClassLoader();
+		File moduleDir = new File(System.getProperty(MODULE_DIR_PROPERTY, "."));
+		long fingerprint = fingerprint(moduleDir);
+		LinkFactoryIndex index = current;
+		return index != null && index.isFor(parent, moduleDir, fingerprint) ? index
+				: load(parent, moduleDir, fingerprint);
+	}
+
+	/**
+	 * Discards the cached index so the next call to {@link #get()} loads the
+	 * factories again.
+	 */
+	static synchronized void reload() {
+		current = null;
+		BeanProperties.clearCaches();
+	}
+
+	private static synchronized LinkFactoryIndex load(ClassLoader parent,
+			File moduleDir, long fingerprint) {
+		LinkFactoryIndex index = current;
+		if (index == null || !index.isFor(parent, moduleDir, fingerprint)) {
+			if (index != null) {
+				// the beans of the replaced index' class loader are cached
+				BeanProperties.clearCaches();
+			}
+			current = index = new LinkFactoryIndex(parent, moduleDir,
+					fingerprint);
+		}
+		return index;
+	}
+
+	private boolean isFor(ClassLoader parent, File moduleDir, long fingerprint) {
+		return this.parent == parent && this.moduleDir.equals(moduleDir)
+				&& this.fingerprint == fingerprint;
+	}
+
+	/**
+	 * Calculates a value that changes whenever a jar is added to, removed from
+	 * or replaced in the passed directory.
+	 */
+	private static long fingerprint(File moduleDir) {
+		File[] jars = moduleDir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.toLowerCase().endsWith(".jar");
+			}
+		});
+		if (jars == null) {
+			return -1;
+		}
+		// order independent since the order of the listing is unspecified
+		long fingerprint = jars.length;
+		for (File jar : jars) {
+			long hash = 31 * (31 * jar.getName().hashCode() + jar.length())
+					+ jar.lastModified();
+			fingerprint += hash ^ (hash >>> 29);
+		}
+		return fingerprint;
+	}
+
+	LinkFactory<?> getFactory(String name) {
+		return factories.get(name);
+	}
+
+	Collection<LinkFactory<?>> getFactories() {
+		return factories.values();
+	}
+
+}
@@ -19,6 +19,7 @@ package org.ardulink.core.linkmanager;
 import static java.lang.Integer.MAX_VALUE;
 import static java.lang.Integer.MIN_VALUE;
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.ardulink.core.beans.finder.impl.FindByAnnotation.propertyAnnotated;
 import static org.ardulink.util.Preconditions.checkArgument;
 import static org.ardulink.util.Preconditions.checkNotNull;
@@ -39,7 +40,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
-import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
@@ -47,11 +49,9 @@ import javax.validation.constraints.Min;
 import org.ardulink.core.Link;
 import org.ardulink.core.beans.Attribute;
 import org.ardulink.core.beans.BeanProperties;
-import org.ardulink.core.classloader.ModuleClassLoader;
 import org.ardulink.core.linkmanager.LinkConfig.ChoiceFor;
 import org.ardulink.core.linkmanager.LinkConfig.I18n;
 import org.ardulink.core.linkmanager.LinkConfig.Named;
-import org.ardulink.util.Lists;
 import org.ardulink.util.Optional;
 import org.ardulink.util.Primitive;
 import org.ardulink.util.Throwables;
@@ -67,6 +67,16 @@ import org.ardulink.util.URIs;
  */
 public abstract class LinkManager {
 
+	public static final String CHOICE_VALUES_TTL_PROPERTY = "ardulink.choicevalues.ttl";
+
+	/**
+	 * Is notified when the choice values of an attribute changed.
+	 */
+	public interface ChoiceValuesListener {
+		void choiceValuesChanged(ConfigAttribute attribute,
+				Object[] choiceValues);
+	}
+
 	public interface NumberValidationInfo extends ValidationInfo {
 		double min();
 
@@ -147,6 +157,27 @@ public abstract class LinkManager {
 		 */
 		Object[] getChoiceValues();
 
+		/**
+		 * Returns the last known choice values of this attribute. The values
+		 * are shared by all configurers of the same link type as long as the
+		 * attributes the choice depends on have equal values. Values older
+		 * than the TTL (see
+		 * {@link LinkManager#setChoiceValuesTtl(long, TimeUnit)}) are
+		 * refreshed and the {@link ChoiceValuesListener}s are notified if they
+		 * changed. Only if the choice is {@link ChoiceFor#threadSafe()} this
+		 * is done in the background without blocking, otherwise the values
+		 * are reloaded by the calling thread.
+		 * 
+		 * @return the last known choice values, an empty array if they have
+		 *         not been determined yet
+		 * @see #hasChoiceValues()
+		 */
+		Object[] getCachedChoiceValues();
+
+		void addChoiceValuesListener(ChoiceValuesListener listener);
+
+		void removeChoiceValuesListener(ChoiceValuesListener listener);
+
 		ValidationInfo getValidationInfo();
 
 	}
@@ -172,6 +203,11 @@ public abstract class LinkManager {
 	private static class DefaultConfigurer<T extends LinkConfig> implements
 			Configurer {
 
+		private static final Min minValueProvider = annotationProxy(Min.class,
+				"value", MIN_VALUE);
+		private static final Max maxValueProvider = annotationProxy(Max.class,
+				"value", MAX_VALUE);
+
 		public class ConfigAttributeAdapter<T extends LinkConfig> implements
 				ConfigAttribute {
 
@@ -180,23 +216,39 @@ public abstract class LinkManager {
 			private final List<ConfigAttribute> dependsOn;
 			private List<Object> cachedChoiceValues;
 			private final ResourceBundle nls;
-
-			private final Min minValueProvider = annotationProxy(Min.class,
-					"value", MIN_VALUE);
-			private final Max maxValueProvider = annotationProxy(Max.class,
-					"value", MAX_VALUE);
+			private final Class<?> linkConfigType;
+			private final List<ChoiceValuesListener> choiceValuesListeners = new CopyOnWriteArrayList<ChoiceValuesListener>();
+			private ChoiceValues subscribed;
+
+			private final ChoiceValues.Loader choiceValuesLoader = new ChoiceValues.Loader() {
+				@Override
+				public Object[] load() throws Exception {
+					return loadChoiceValues();
+				}
+			};
+
+			private final ChoiceValues.Listener choiceValuesDispatcher = new ChoiceValues.Listener() {
+				@Override
+				public void choiceValuesChanged(Object[] choiceValues) {
+					for (ChoiceValuesListener listener : choiceValuesListeners) {
+						listener.choiceValuesChanged(
+								ConfigAttributeAdapter.this,
+								choiceValues.clone());
+					}
+				}
+			};
 
 			public ConfigAttributeAdapter(T linkConfig,
 					BeanProperties beanProperties, String key) {
 				this.attribute = beanProperties.getAttribute(key);
 				checkArgument(attribute != null,
 						"Could not determine attribute %s", key);
-				this.getChoicesFor = BeanProperties.builder(linkConfig)
-						.using(propertyAnnotated(ChoiceFor.class)).build()
-						.getAttribute(attribute.getName());
+				this.getChoicesFor = choiceProperties.getAttribute(attribute
+						.getName());
 				this.dependsOn = this.getChoicesFor == null ? Collections
 						.<ConfigAttribute> emptyList()
 						: resolveDeps(this.getChoicesFor);
+				this.linkConfigType = linkConfig.getClass();
 				I18n nls = linkConfig.getClass().getAnnotation(I18n.class);
 				this.nls = nls == null ? null : ResourceBundle.getBundle(nls
 						.value(), Locale.getDefault(), linkConfig.getClass()
@@ -271,7 +323,8 @@ public abstract class LinkManager {
 						"attribute does not have choiceValues");
 				try {
 					if (this.cachedChoiceValues == null || changed) {
-						Object[] value = loadChoiceValues();
+						Object[] value = choiceValues().load(
+								choiceValuesLoader);
 						this.cachedChoiceValues = Arrays.asList(value);
 						changed = false;
 					}
@@ -282,6 +335,62 @@ public abstract class LinkManager {
 				}
 			}
 
+			@Override
+			public Object[] getCachedChoiceValues() {
+				checkState(hasChoiceValues(),
+						"attribute does not have choiceValues");
+				try {
+					return choiceValues().get(
+							choiceValuesLoader,
+							getChoicesFor.getAnnotation(ChoiceFor.class)
+									.threadSafe());
+				} catch (Exception e) {
+					throw propagate(e);
+				}
+			}
+
+			@Override
+			public void addChoiceValuesListener(ChoiceValuesListener listener) {
+				checkState(hasChoiceValues(),
+						"attribute does not have choiceValues");
+				choiceValuesListeners.add(listener);
+				choiceValues();
+			}
+
+			@Override
+			public void removeChoiceValuesListener(
+					ChoiceValuesListener listener) {
+				choiceValuesListeners.remove(listener);
+				if (choiceValuesListeners.isEmpty() && subscribed != null) {
+					subscribed.removeListener(choiceValuesDispatcher);
+					subscribed = null;
+				}
+			}
+
+			/**
+			 * Returns the shared choice values for the current values of the
+			 * attributes the choice depends on. While there are listeners
+			 * they are subscribed to them.
+			 */
+			private ChoiceValues choiceValues() {
+				List<Object> key = new ArrayList<Object>(2 + dependsOn.size());
+				key.add(linkConfigType);
+				key.add(attribute.getName());
+				for (ConfigAttribute dependency : dependsOn) {
+					key.add(dependency.getValue());
+				}
+				ChoiceValues choiceValues = ChoiceValues.forKey(key);
+				if (choiceValues != subscribed
+						&& !choiceValuesListeners.isEmpty()) {
+					if (subscribed != null) {
+						subscribed.removeListener(choiceValuesDispatcher);
+					}
+					choiceValues.addListener(choiceValuesDispatcher);
+					subscribed = choiceValues;
+				}
+				return choiceValues;
+			}
+
 			private Object[] loadChoiceValues() throws Exception {
 				Object value = checkNotNull(
 						this.getChoicesFor.readValue(),
@@ -309,23 +418,6 @@ public abstract class LinkManager {
 				return ValidationInfo.NULL;
 			}
 
-			private <S> S annotationProxy(Class<S> clazz,
-					final String methodName, final long value) {
-				return clazz.cast(Proxy.newProxyInstance(getClass()
-						.getClassLoader(), new Class<?>[] { clazz },
-						new InvocationHandler() {
-							@Override
-							public Object invoke(Object proxy, Method method,
-									Object[] args) throws Throwable {
-								if (methodName.equals(method.getName())) {
-									return value;
-								}
-								throw new UnsupportedOperationException(
-										"Method " + method + " not supported");
-							}
-						}));
-			}
-
 			private <S extends Annotation> Optional<S> find(
 					Annotation[] annotations, Class<S> annoClass) {
 				for (Annotation annotation : annotations) {
@@ -357,6 +449,7 @@ public abstract class LinkManager {
 		private final LinkFactory<T> linkFactory;
 		private final T linkConfig;
 		private BeanProperties beanProperties;
+		private final BeanProperties choiceProperties;
 		private final Map<String, ConfigAttributeAdapter<T>> cache = new HashMap<String, ConfigAttributeAdapter<T>>();
 		private boolean changed = true;
 
@@ -365,6 +458,25 @@ public abstract class LinkManager {
 			this.linkConfig = linkFactory.newLinkConfig();
 			this.beanProperties = BeanProperties.builder(linkConfig)
 					.using(propertyAnnotated(Named.class)).build();
+			this.choiceProperties = BeanProperties.builder(linkConfig)
+					.using(propertyAnnotated(ChoiceFor.class)).build();
+		}
+
+		private static <S> S annotationProxy(Class<S> clazz,
+				final String methodName, final long value) {
+			return clazz.cast(Proxy.newProxyInstance(
+					DefaultConfigurer.class.getClassLoader(),
+					new Class<?>[] { clazz }, new InvocationHandler() {
+						@Override
+						public Object invoke(Object proxy, Method method,
+								Object[] args) throws Throwable {
+							if (methodName.equals(method.getName())) {
+								return value;
+							}
+							throw new UnsupportedOperationException("Method "
+									+ method + " not supported");
+						}
+					}));
 		}
 
 		class CacheKey {
@@ -498,7 +610,8 @@ public abstract class LinkManager {
 
 			@Override
 			public List<URI> listURIs() {
-				List<LinkFactory> factories = getConnectionFactories();
+				Collection<LinkFactory<?>> factories = LinkFactoryIndex.get()
+						.getFactories();
 				List<URI> result = new ArrayList<URI>(factories.size());
 				for (LinkFactory<?> factory : factories) {
 					result.add(URIs.newURI(format("%s://%s", SCHEMA,
@@ -508,28 +621,8 @@ public abstract class LinkManager {
 			}
 
 			private Optional<LinkFactory<?>> getConnectionFactory(String name) {
-				for (LinkFactory<?> connectionFactory : getConnectionFactories()) {
-					if (connectionFactory.getName().equals(name)) {
-						return Optional.<LinkFactory<?>> of(connectionFactory);
-					}
-				}
-				return Optional.<LinkFactory<?>> absent();
-			}
-
-			private List<LinkFactory> getConnectionFactories() {
-				return Lists.newArrayList(ServiceLoader.load(LinkFactory.class,
-						classloader()).iterator());
-			}
-
-			private ClassLoader classloader() {
-				ClassLoader classLoader = Thread.currentThread()
-						.getContextClassLoader();
-				return new ModuleClassLoader(classLoader, systemProperty(
-						"ardulink.module.dir").or("."));
-			}
-
-			private Optional<String> systemProperty(String propertyName) {
-				return Optional.ofNullable(System.getProperty(propertyName));
+				return Optional.<LinkFactory<?>> ofNullable(LinkFactoryIndex
+						.get().getFactory(name));
 			}
 
 			@Override
@@ -569,6 +662,36 @@ public abstract class LinkManager {
 		};
 	}
 
+	/**
+	 * Discards the cached {@link LinkFactory}s so they are loaded again on
+	 * next access. Normally this is not needed since the factories are
+	 * reloaded when the jars in the module directory (system property
+	 * <code>ardulink.module.dir</code>) change.
+	 */
+	public static void reloadLinkFactories() {
+		LinkFactoryIndex.reload();
+	}
+
+	/**
+	 * Sets the time after that cached choice values are refreshed (see
+	 * {@link ConfigAttribute#getCachedChoiceValues()}). Defaults to the
+	 * milliseconds of the system property
+	 * <code>ardulink.choicevalues.ttl</code> or 10 seconds.
+	 * 
+	 * @param ttl
+	 *            the time to live, <code>0</code> to refresh on each access
+	 * @param timeUnit
+	 *            the unit of <code>ttl</code>
+	 */
+	public static void setChoiceValuesTtl(long ttl, TimeUnit timeUnit) {
+		checkArgument(ttl >= 0, "ttl must not be negative but was %s", ttl);
+		ChoiceValues.setTtl(timeUnit.toMillis(ttl));
+	}
+
+	public static long getChoiceValuesTtl(TimeUnit timeUnit) {
+		return timeUnit.convert(ChoiceValues.getTtl(), MILLISECONDS);
+	}
+
 	public static String extractNameFromURI(URI uri) {
 		return checkSchema(uri).getHost();
 	}
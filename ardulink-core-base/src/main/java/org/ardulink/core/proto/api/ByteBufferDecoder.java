@@ -0,0 +1,49 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.proto.api;
+
+import java.nio.ByteBuffer;
+
+import org.ardulink.core.proto.api.Protocol.FromArduino;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Protocols able to decode the frames sent by the arduino from a
+ * {@link ByteBuffer} implement this interface, so links can decode the frames
+ * in the read buffer of their connection without copying them (see
+ * {@link org.ardulink.core.Connection.ByteBufferListener}).
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public interface ByteBufferDecoder {
+
+	/**
+	 * Decodes the frame between the buffer's position and its limit like
+	 * {@link Protocol#fromArduino(byte[])} does.
+	 * 
+	 * @param buffer
+	 *            the frame, only valid during this call
+	 * @return the message decoded or <code>null</code> if the protocol skips
+	 *         frames it cannot decode
+	 */
+	FromArduino fromArduino(ByteBuffer buffer);
+
+}
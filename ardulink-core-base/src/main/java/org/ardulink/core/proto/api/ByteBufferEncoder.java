@@ -0,0 +1,70 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.proto.api;
+
+import java.nio.ByteBuffer;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Protocols able to encode pin switches into a caller supplied
+ * {@link ByteBuffer} implement this interface, so links can send them without
+ * creating any event objects or byte arrays (see
+ * {@link org.ardulink.core.Connection.ByteBufferWriter}).
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public interface ByteBufferEncoder {
+
+	/**
+	 * Returns the number of bytes a buffer needs to hold any message encoded
+	 * by this encoder.
+	 * 
+	 * @return maximum frame length including the separator
+	 */
+	int getMaxFrameLength();
+
+	/**
+	 * Writes the frame switching the analog pin like
+	 * {@link Protocol#toArduino(ToArduinoPinEvent)} does.
+	 * 
+	 * @param buffer
+	 *            the buffer to write to
+	 * @param pin
+	 *            the pin's number
+	 * @param value
+	 *            the value to set
+	 */
+	void switchAnalogPin(ByteBuffer buffer, int pin, int value);
+
+	/**
+	 * Writes the frame switching the digital pin like
+	 * {@link Protocol#toArduino(ToArduinoPinEvent)} does.
+	 * 
+	 * @param buffer
+	 *            the buffer to write to
+	 * @param pin
+	 *            the pin's number
+	 * @param value
+	 *            the value to set
+	 */
+	void switchDigitalPin(ByteBuffer buffer, int pin, boolean value);
+
+}
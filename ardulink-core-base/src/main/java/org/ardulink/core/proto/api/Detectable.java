@@ -0,0 +1,62 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.proto.api;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Protocols whose frames sent by the arduino can be recognized by their first
+ * byte implement this interface so they can be detected automatically (see
+ * {@link org.ardulink.core.proto.impl.NegotiatingProtocol}).
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public interface Detectable {
+
+	/**
+	 * Returns whether a frame sent by the arduino can start with the passed
+	 * byte.
+	 * 
+	 * @param b
+	 *            the byte read (0-255)
+	 * @return <code>true</code> if <code>b</code> can be the first byte of a
+	 *         frame of this protocol
+	 */
+	boolean isFrameStart(int b);
+
+	/**
+	 * Returns whether the frame can be decoded by this protocol. Other than
+	 * {@link Protocol#fromArduino(byte[])} this method must not throw if the
+	 * frame cannot be decoded and must not count it as malformed.
+	 * 
+	 * @param frame
+	 *            the frame read
+	 * @return <code>true</code> if the frame can be decoded
+	 */
+	boolean accepts(byte[] frame);
+
+	/**
+	 * Discards the bytes and frames this protocol buffered while reading
+	 * frames. Called when a frame probed was not accepted and the stream is
+	 * reset to read the same bytes again.
+	 */
+	void discardBuffered();
+
+}
@@ -0,0 +1,50 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.proto.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Protocols whose messages are not divided by a separator (see
+ * {@link Protocol#getSeparator()}), e.g. binary protocols using length
+ * prefixed frames, implement this interface to read their frames from the
+ * stream themselves.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public interface FrameReader {
+
+	/**
+	 * Reads the next frame from the passed stream. The stream passed is
+	 * buffered so reading single bytes is cheap.
+	 * 
+	 * @param inputStream
+	 *            the stream to read from
+	 * @return the frame read (to be passed to
+	 *         {@link Protocol#fromArduino(byte[])}) or <code>null</code> if
+	 *         the end of the stream has been reached
+	 * @throws IOException
+	 */
+	byte[] readFrame(InputStream inputStream) throws IOException;
+
+}
@@ -24,9 +24,18 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 
+import org.ardulink.core.Pin;
+import org.ardulink.core.Pin.AnalogPin;
+import org.ardulink.core.Tone;
+
 /**
  * [ardulinktitle] [ardulinkversion]
  * 
+ * Adds message ids to the messages sent to the arduino. For the message types
+ * of {@link Protocol} concrete wrappers carrying the id are created, so
+ * protocols can read the id and the message's values without any reflection.
+ * All other types are wrapped by a dynamic proxy.
+ * 
  * project Ardulink http://www.ardulink.org/
  * 
  * [adsense]
@@ -69,6 +78,157 @@ public final class MessageIdHolders {
 
 	}
 
+	private abstract static class AbstractMessageIdHolder<T> implements
+			MessageIdHolder {
+
+		protected final T delegate;
+		private final long messageId;
+
+		protected AbstractMessageIdHolder(T delegate, long messageId) {
+			this.delegate = delegate;
+			this.messageId = messageId;
+		}
+
+		@Override
+		public long getId() {
+			return messageId;
+		}
+
+	}
+
+	private static class StartListeningWithId extends
+			AbstractMessageIdHolder<ToArduinoStartListening> implements
+			ToArduinoStartListening {
+
+		private StartListeningWithId(ToArduinoStartListening delegate,
+				long messageId) {
+			super(delegate, messageId);
+		}
+
+		@Override
+		public Pin getPin() {
+			return delegate.getPin();
+		}
+
+	}
+
+	private static class StopListeningWithId extends
+			AbstractMessageIdHolder<ToArduinoStopListening> implements
+			ToArduinoStopListening {
+
+		private StopListeningWithId(ToArduinoStopListening delegate,
+				long messageId) {
+			super(delegate, messageId);
+		}
+
+		@Override
+		public Pin getPin() {
+			return delegate.getPin();
+		}
+
+	}
+
+	private static class PinEventWithId extends
+			AbstractMessageIdHolder<ToArduinoPinEvent> implements
+			ToArduinoPinEvent {
+
+		private PinEventWithId(ToArduinoPinEvent delegate, long messageId) {
+			super(delegate, messageId);
+		}
+
+		@Override
+		public Pin getPin() {
+			return delegate.getPin();
+		}
+
+		@Override
+		public Object getValue() {
+			return delegate.getValue();
+		}
+
+	}
+
+	private static class KeyPressEventWithId extends
+			AbstractMessageIdHolder<ToArduinoKeyPressEvent> implements
+			ToArduinoKeyPressEvent {
+
+		private KeyPressEventWithId(ToArduinoKeyPressEvent delegate,
+				long messageId) {
+			super(delegate, messageId);
+		}
+
+		@Override
+		public char getKeychar() {
+			return delegate.getKeychar();
+		}
+
+		@Override
+		public int getKeycode() {
+			return delegate.getKeycode();
+		}
+
+		@Override
+		public int getKeylocation() {
+			return delegate.getKeylocation();
+		}
+
+		@Override
+		public int getKeymodifiers() {
+			return delegate.getKeymodifiers();
+		}
+
+		@Override
+		public int getKeymodifiersex() {
+			return delegate.getKeymodifiersex();
+		}
+
+	}
+
+	private static class ToneWithId extends
+			AbstractMessageIdHolder<ToArduinoTone> implements ToArduinoTone {
+
+		private ToneWithId(ToArduinoTone delegate, long messageId) {
+			super(delegate, messageId);
+		}
+
+		@Override
+		public Tone getTone() {
+			return delegate.getTone();
+		}
+
+	}
+
+	private static class NoToneWithId extends
+			AbstractMessageIdHolder<ToArduinoNoTone> implements
+			ToArduinoNoTone {
+
+		private NoToneWithId(ToArduinoNoTone delegate, long messageId) {
+			super(delegate, messageId);
+		}
+
+		@Override
+		public AnalogPin getAnalogPin() {
+			return delegate.getAnalogPin();
+		}
+
+	}
+
+	private static class CustomMessageWithId extends
+			AbstractMessageIdHolder<ToArduinoCustomMessage> implements
+			ToArduinoCustomMessage {
+
+		private CustomMessageWithId(ToArduinoCustomMessage delegate,
+				long messageId) {
+			super(delegate, messageId);
+		}
+
+		@Override
+		public String[] getMessages() {
+			return delegate.getMessages();
+		}
+
+	}
+
 	private static Method getMessageIdHolderGetIdMethod() {
 		try {
 			return MessageIdHolder.class.getMethod("getId");
@@ -102,6 +262,47 @@ public final class MessageIdHolders {
 				new MessageIdHolderInvocationHandler(delegateTo, messageId));
 	}
 
+	/**
+	 * Wraps the passed message into a {@link MessageIdHolder} carrying the
+	 * passed <code>messageId</code>. Unlike {@link #addMessageId(Object, long)}
+	 * no reflection is involved, the overloads for the other message types
+	 * behave the same.
+	 */
+	public static ToArduinoStartListening addMessageId(
+			ToArduinoStartListening delegateTo, long messageId) {
+		return new StartListeningWithId(delegateTo, messageId);
+	}
+
+	public static ToArduinoStopListening addMessageId(
+			ToArduinoStopListening delegateTo, long messageId) {
+		return new StopListeningWithId(delegateTo, messageId);
+	}
+
+	public static ToArduinoPinEvent addMessageId(ToArduinoPinEvent delegateTo,
+			long messageId) {
+		return new PinEventWithId(delegateTo, messageId);
+	}
+
+	public static ToArduinoKeyPressEvent addMessageId(
+			ToArduinoKeyPressEvent delegateTo, long messageId) {
+		return new KeyPressEventWithId(delegateTo, messageId);
+	}
+
+	public static ToArduinoTone addMessageId(ToArduinoTone delegateTo,
+			long messageId) {
+		return new ToneWithId(delegateTo, messageId);
+	}
+
+	public static ToArduinoNoTone addMessageId(ToArduinoNoTone delegateTo,
+			long messageId) {
+		return new NoToneWithId(delegateTo, messageId);
+	}
+
+	public static ToArduinoCustomMessage addMessageId(
+			ToArduinoCustomMessage delegateTo, long messageId) {
+		return new CustomMessageWithId(delegateTo, messageId);
+	}
+
 	private static <T> T[] insertInto(Class<T> type, T toAdd, T[] src) {
 		T[] newArray = newArray(type, src.length + 1);
 		newArray[0] = toAdd;
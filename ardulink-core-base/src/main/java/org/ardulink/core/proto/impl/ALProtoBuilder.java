@@ -56,6 +56,10 @@ public class ALProtoBuilder {
 			this.proto = proto;
 		}
 
+		String getProto() {
+			return proto;
+		}
+
 		public static Optional<ALPProtocolKey> fromString(String string) {
 			for (ALPProtocolKey alpProtocolKeys : values()) {
 				if (alpProtocolKeys.proto.equals(string)) {
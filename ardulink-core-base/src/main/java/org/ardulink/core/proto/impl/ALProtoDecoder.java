@@ -0,0 +1,344 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+ */
+package org.ardulink.core.proto.impl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Decodes ALP frames (e.g. <code>alp://ared/3/512</code>) directly from the
+ * received bytes without creating any Strings, arrays or boxed numbers. The
+ * decoded values are passed to a {@link Handler}, frames that cannot be decoded
+ * are counted (see {@link #getMalformedFrames()}) instead of throwing
+ * exceptions.
+ * <p>
+ * Besides replies to single messages (<code>alp://rply/ok?id=42</code>)
+ * cumulative replies are supported: <code>alp://rply/ok?upto=42&amp;nack=7,9</code>
+ * replies all messages up to (and including) id 42 where the optional nack
+ * list names the ids that failed. Only the nack list allocates an array.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class ALProtoDecoder {
+
+	/**
+	 * Receives the values of successfully decoded frames.
+	 *
+	 * @param <T>
+	 *            the type returned by the handler and passed through by
+	 *            {@link ALProtoDecoder#decode(byte[], int, int, Handler)}
+	 */
+	public interface Handler<T> {
+
+		T analogPinRead(int pin, int value);
+
+		T digitalPinRead(int pin, boolean value);
+
+		T reply(boolean ok, long id);
+
+		/**
+		 * Called for cumulative replies.
+		 *
+		 * @param ok
+		 *            the status of all messages up to <code>upToId</code> not
+		 *            contained in <code>nackIds</code>
+		 * @param upToId
+		 *            the highest message id replied
+		 * @param nackIds
+		 *            the ids of the messages that failed, never
+		 *            <code>null</code>
+		 */
+		T cumulativeReply(boolean ok, long upToId, long[] nackIds);
+
+		T ready();
+
+	}
+
+	private static final byte[] PREFIX = bytes("alp://");
+	private static final byte[] ANALOG_PIN_READ = bytes("ared");
+	private static final byte[] DIGITAL_PIN_READ = bytes("dred");
+	private static final byte[] RPLY = bytes("rply");
+	private static final byte[] READY = bytes("ready");
+	private static final byte[] OK = bytes("ok");
+	private static final byte[] ID_PARAM = bytes("?id=");
+	private static final byte[] UPTO_PARAM = bytes("?upto=");
+	private static final byte[] NACK_PARAM = bytes("&nack=");
+	private static final long[] NO_IDS = new long[0];
+
+	private static final byte SLASH = '/';
+	private static final byte QUESTION_MARK = '?';
+	private static final byte AMPERSAND = '&';
+	private static final byte COMMA = ',';
+
+	/**
+	 * Marker for "no number could be parsed". Numbers are parsed into longs,
+	 * so any value outside the long range can be used.
+	 */
+	private static final long NO_NUMBER = Long.MIN_VALUE;
+
+	private final AtomicLong malformedFrames = new AtomicLong();
+
+	/**
+	 * Decodes the frame held by the passed array.
+	 *
+	 * @return the handler's return value or <code>null</code> if the frame
+	 *         could not be decoded
+	 */
+	public <T> T decode(byte[] bytes, Handler<T> handler) {
+		return decode(bytes, 0, bytes.length, handler);
+	}
+
+	/**
+	 * Decodes the frame between the buffer's position and its limit. The bytes
+	 * are read using absolute gets, so read-only and direct buffers are
+	 * decoded without copying them and neither the position nor the limit of
+	 * the passed buffer are modified.
+	 *
+	 * @return the handler's return value or <code>null</code> if the frame
+	 *         could not be decoded
+	 */
+	public <T> T decode(ByteBuffer buffer, Handler<T> handler) {
+		return decode(buffer, buffer.position(), buffer.limit(), handler);
+	}
+
+	/**
+	 * Decodes the frame of <code>length</code> bytes starting at
+	 * <code>offset</code>. The array is wrapped into a buffer which is the
+	 * only object this method creates.
+	 *
+	 * @return the handler's return value or <code>null</code> if the frame
+	 *         could not be decoded
+	 */
+	public <T> T decode(byte[] in, int offset, int length, Handler<T> handler) {
+		return decode(ByteBuffer.wrap(in), offset, offset + length, handler);
+	}
+
+	private <T> T decode(ByteBuffer in, int offset, int end, Handler<T> handler) {
+		if (!startsWith(in, offset, end, PREFIX)) {
+			return malformed();
+		}
+		int cmdStart = offset + PREFIX.length;
+		int cmdEnd = cmdStart;
+		while (cmdEnd < end && isLowerCaseLetter(in.get(cmdEnd))) {
+			cmdEnd++;
+		}
+		if (cmdEnd == cmdStart || cmdEnd >= end || in.get(cmdEnd) != SLASH) {
+			return malformed();
+		}
+		int dataStart = cmdEnd + 1;
+		int dataEnd = dataStart;
+		while (dataEnd < end && in.get(dataEnd) != QUESTION_MARK) {
+			dataEnd++;
+		}
+		long id = NO_NUMBER;
+		long upToId = NO_NUMBER;
+		long[] nackIds = NO_IDS;
+		if (dataEnd < end) {
+			if (startsWith(in, dataEnd, end, ID_PARAM)) {
+				id = parseUnsigned(in, dataEnd + ID_PARAM.length, end);
+				if (id == NO_NUMBER) {
+					return malformed();
+				}
+			} else if (startsWith(in, dataEnd, end, UPTO_PARAM)) {
+				int upToStart = dataEnd + UPTO_PARAM.length;
+				int ampersand = indexOf(in, upToStart, end, AMPERSAND);
+				upToId = parseUnsigned(in, upToStart, ampersand < 0 ? end
+						: ampersand);
+				if (upToId == NO_NUMBER) {
+					return malformed();
+				}
+				if (ampersand >= 0) {
+					if (!startsWith(in, ampersand, end, NACK_PARAM)) {
+						return malformed();
+					}
+					nackIds = parseUnsignedList(in, ampersand
+							+ NACK_PARAM.length, end);
+					if (nackIds == null) {
+						return malformed();
+					}
+				}
+			} else {
+				return malformed();
+			}
+		}
+
+		if (equals(in, cmdStart, cmdEnd, ANALOG_PIN_READ)) {
+			int separator = indexOf(in, dataStart, dataEnd, SLASH);
+			long pin = parseInt(in, dataStart, separator);
+			long value = parseInt(in, separator + 1, dataEnd);
+			return separator < 0 || pin == NO_NUMBER || value == NO_NUMBER ? this
+					.<T> malformed() : handler.analogPinRead((int) pin,
+					(int) value);
+		} else if (equals(in, cmdStart, cmdEnd, DIGITAL_PIN_READ)) {
+			int separator = indexOf(in, dataStart, dataEnd, SLASH);
+			long pin = parseInt(in, dataStart, separator);
+			long value = parseInt(in, separator + 1, dataEnd);
+			return separator < 0 || pin == NO_NUMBER || value == NO_NUMBER ? this
+					.<T> malformed() : handler.digitalPinRead((int) pin,
+					value == 1);
+		} else if (equals(in, cmdStart, cmdEnd, RPLY)) {
+			boolean ok = equalsIgnoreCase(in, dataStart, dataEnd, OK);
+			if (upToId != NO_NUMBER) {
+				return handler.cumulativeReply(ok, upToId, nackIds);
+			}
+			return id == NO_NUMBER ? this.<T> malformed() : handler.reply(ok,
+					id);
+		} else if (equals(in, cmdStart, cmdEnd, READY)) {
+			return handler.ready();
+		}
+		return malformed();
+	}
+
+	/**
+	 * Returns the number of frames that could not be decoded by this decoder.
+	 *
+	 * @return number of malformed frames
+	 */
+	public long getMalformedFrames() {
+		return malformedFrames.get();
+	}
+
+	private <T> T malformed() {
+		malformedFrames.incrementAndGet();
+		return null;
+	}
+
+	private static boolean isLowerCaseLetter(byte b) {
+		return b >= 'a' && b <= 'z';
+	}
+
+	private static boolean startsWith(ByteBuffer in, int from, int to,
+			byte[] prefix) {
+		if (to - from < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (in.get(from + i) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean equals(ByteBuffer in, int from, int to, byte[] other) {
+		return to - from == other.length && startsWith(in, from, to, other);
+	}
+
+	private static boolean equalsIgnoreCase(ByteBuffer in, int from, int to,
+			byte[] lowerCase) {
+		if (to - from != lowerCase.length) {
+			return false;
+		}
+		for (int i = 0; i < lowerCase.length; i++) {
+			byte b = in.get(from + i);
+			if (b != lowerCase[i] && b + ('a' - 'A') != lowerCase[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int indexOf(ByteBuffer in, int from, int to, byte b) {
+		for (int i = from; i < to; i++) {
+			if (in.get(i) == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Parses an optionally signed decimal int in the range of
+	 * <code>from</code> (inclusive) and <code>to</code> (exclusive).
+	 *
+	 * @return the parsed value or {@link #NO_NUMBER}
+	 */
+	private static long parseInt(ByteBuffer in, int from, int to) {
+		if (from < 0 || from >= to) {
+			return NO_NUMBER;
+		}
+		byte first = in.get(from);
+		boolean negative = first == '-';
+		long value = parseUnsigned(in, negative || first == '+' ? from + 1
+				: from, to);
+		if (value == NO_NUMBER) {
+			return NO_NUMBER;
+		}
+		value = negative ? -value : value;
+		return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? NO_NUMBER
+				: value;
+	}
+
+	/**
+	 * Parses an unsigned decimal long in the range of <code>from</code>
+	 * (inclusive) and <code>to</code> (exclusive).
+	 *
+	 * @return the parsed value or {@link #NO_NUMBER}
+	 */
+	private static long parseUnsigned(ByteBuffer in, int from, int to) {
+		if (from >= to) {
+			return NO_NUMBER;
+		}
+		long value = 0;
+		for (int i = from; i < to; i++) {
+			int digit = in.get(i) - '0';
+			if (digit < 0 || digit > 9
+					|| value > (Long.MAX_VALUE - digit) / 10) {
+				return NO_NUMBER;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Parses a non-empty comma separated list of unsigned decimal longs in the
+	 * range of <code>from</code> (inclusive) and <code>to</code> (exclusive).
+	 *
+	 * @return the parsed values or <code>null</code>
+	 */
+	private static long[] parseUnsignedList(ByteBuffer in, int from, int to) {
+		int count = 1;
+		for (int i = from; i < to; i++) {
+			if (in.get(i) == COMMA) {
+				count++;
+			}
+		}
+		long[] values = new long[count];
+		int start = from;
+		for (int i = 0; i < count; i++) {
+			int comma = indexOf(in, start, to, COMMA);
+			int valueEnd = comma < 0 ? to : comma;
+			values[i] = parseUnsigned(in, start, valueEnd);
+			if (values[i] == NO_NUMBER) {
+				return null;
+			}
+			start = valueEnd + 1;
+		}
+		return values;
+	}
+
+	private static byte[] bytes(String string) {
+		return string.getBytes();
+	}
+
+}
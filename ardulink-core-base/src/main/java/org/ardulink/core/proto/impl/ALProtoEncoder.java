@@ -0,0 +1,163 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+ */
+package org.ardulink.core.proto.impl;
+
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.POWER_PIN_INTENSITY;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.POWER_PIN_SWITCH;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.START_LISTENING_ANALOG;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.START_LISTENING_DIGITAL;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LISTENING_ANALOG;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LISTENING_DIGITAL;
+
+import java.nio.ByteBuffer;
+
+import org.ardulink.core.Pin;
+import org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Writes ALP frames (including the trailing separator) directly into a caller
+ * supplied {@link ByteBuffer}. The command prefixes (e.g.
+ * <code>alp://ppin/</code>) are encoded once and numbers are written as ASCII
+ * digits without creating intermediate Strings, so encoding a frame does not
+ * produce any garbage. If the buffer has not enough space left a
+ * {@link java.nio.BufferOverflowException} is thrown, {@link #MAX_FRAME_LENGTH}
+ * bytes are always sufficient.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public final class ALProtoEncoder {
+
+	/**
+	 * The maximum number of bytes a frame written by this encoder can occupy.
+	 */
+	public static final int MAX_FRAME_LENGTH = 64;
+
+	/**
+	 * Use this messageId to write frames without any messageId.
+	 */
+	public static final long NO_MESSAGE_ID = -1;
+
+	private static final byte[][] prefixes = prefixes();
+
+	private static final byte SLASH = '/';
+	private static final byte SEPARATOR = '\n';
+	private static final byte[] ID_PARAM = "?id=".getBytes();
+
+	private ALProtoEncoder() {
+		super();
+	}
+
+	public static ByteBuffer startListening(ByteBuffer buffer, Pin pin) {
+		return writePin(buffer, pin.is(ANALOG) ? START_LISTENING_ANALOG
+				: START_LISTENING_DIGITAL, pin.pinNum());
+	}
+
+	public static ByteBuffer stopListening(ByteBuffer buffer, Pin pin) {
+		return writePin(buffer, pin.is(ANALOG) ? STOP_LISTENING_ANALOG
+				: STOP_LISTENING_DIGITAL, pin.pinNum());
+	}
+
+	public static ByteBuffer switchAnalogPin(ByteBuffer buffer, int pin,
+			int value) {
+		return switchAnalogPin(buffer, pin, value, NO_MESSAGE_ID);
+	}
+
+	public static ByteBuffer switchAnalogPin(ByteBuffer buffer, int pin,
+			int value, long messageId) {
+		return writePinValue(buffer, POWER_PIN_INTENSITY, pin, value,
+				messageId);
+	}
+
+	public static ByteBuffer switchDigitalPin(ByteBuffer buffer, int pin,
+			boolean value) {
+		return switchDigitalPin(buffer, pin, value, NO_MESSAGE_ID);
+	}
+
+	public static ByteBuffer switchDigitalPin(ByteBuffer buffer, int pin,
+			boolean value, long messageId) {
+		return writePinValue(buffer, POWER_PIN_SWITCH, pin, value ? 1 : 0,
+				messageId);
+	}
+
+	private static ByteBuffer writePin(ByteBuffer buffer, ALPProtocolKey key,
+			int pin) {
+		checkPin(pin);
+		buffer.put(prefixes[key.ordinal()]);
+		writeNumber(buffer, pin);
+		return buffer.put(SEPARATOR);
+	}
+
+	private static ByteBuffer writePinValue(ByteBuffer buffer,
+			ALPProtocolKey key, int pin, int value, long messageId) {
+		checkPin(pin);
+		buffer.put(prefixes[key.ordinal()]);
+		writeNumber(buffer, pin);
+		buffer.put(SLASH);
+		writeNumber(buffer, value);
+		if (messageId != NO_MESSAGE_ID) {
+			buffer.put(ID_PARAM);
+			writeNumber(buffer, messageId);
+		}
+		return buffer.put(SEPARATOR);
+	}
+
+	private static void checkPin(int pin) {
+		// no Preconditions#checkArgument here, its varargs would box the pin
+		if (pin < 0) {
+			throw new IllegalArgumentException(
+					"Pin must not be negative but was " + pin);
+		}
+	}
+
+	/**
+	 * Writes the decimal ASCII representation of the passed value.
+	 */
+	private static void writeNumber(ByteBuffer buffer, long value) {
+		if (value < 0) {
+			buffer.put((byte) '-');
+		} else {
+			value = -value;
+		}
+		// value is negative now, so Long.MIN_VALUE can be handled, too
+		long divisor = 1;
+		while (value / divisor <= -10) {
+			divisor *= 10;
+		}
+		while (divisor != 0) {
+			buffer.put((byte) ('0' - value / divisor));
+			value %= divisor;
+			divisor /= 10;
+		}
+	}
+
+	private static byte[][] prefixes() {
+		ALPProtocolKey[] keys = ALPProtocolKey.values();
+		byte[][] prefixes = new byte[keys.length][];
+		for (ALPProtocolKey key : keys) {
+			prefixes[key.ordinal()] = ("alp://" + key.getProto() + "/")
+					.getBytes();
+		}
+		return prefixes;
+	}
+
+}
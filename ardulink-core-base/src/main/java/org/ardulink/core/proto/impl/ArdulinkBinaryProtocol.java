@@ -0,0 +1,568 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.proto.impl;
+
+import static java.lang.Boolean.TRUE;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.core.Pin.Type.DIGITAL;
+import static org.ardulink.util.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.ardulink.core.Pin;
+import org.ardulink.core.Tone;
+import org.ardulink.core.proto.api.Detectable;
+import org.ardulink.core.proto.api.FrameReader;
+import org.ardulink.core.proto.api.MessageIdHolder;
+import org.ardulink.core.proto.api.Protocol;
+import org.ardulink.core.proto.api.ToArduinoCustomMessage;
+import org.ardulink.core.proto.api.ToArduinoKeyPressEvent;
+import org.ardulink.core.proto.api.ToArduinoNoTone;
+import org.ardulink.core.proto.api.ToArduinoPinEvent;
+import org.ardulink.core.proto.api.ToArduinoStartListening;
+import org.ardulink.core.proto.api.ToArduinoStopListening;
+import org.ardulink.core.proto.api.ToArduinoTone;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Compact binary alternative to {@link ArdulinkProtocol2}. Each frame is
+ *
+ * <pre>
+ * SYNC(0xA5) LENGTH(varint) OPCODE [MESSAGEID(varint)] FIELDS... [CRC-8]
+ * </pre>
+ *
+ * where LENGTH is the number of bytes following the length field. Bit 7 of the
+ * opcode signals an appended CRC-8 (polynomial 0x07) calculated over opcode,
+ * message id and fields, bit 6 signals the presence of a message id. Pins and
+ * message ids are written as unsigned varints, values as zigzag encoded
+ * varints. The SYNC byte allows resynchronizing after garbage on the line.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class ArdulinkBinaryProtocol implements Protocol, FrameReader,
+		Detectable {
+
+	public static final byte SYNC = (byte) 0xA5;
+
+	/**
+	 * Frames announcing a length greater than this are treated as garbage.
+	 */
+	public static final int MAX_FRAME_LENGTH = 1024;
+
+	private static final long END_OF_STREAM = -1;
+	private static final byte[] MALFORMED = new byte[0];
+
+	private static final int FLAG_CRC = 0x80;
+	private static final int FLAG_MESSAGE_ID = 0x40;
+	private static final int OPCODE_MASK = 0x3F;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * The opcodes of the messages, messages from the arduino start at 0x20.
+	 * {@link #RPLY_UPTO} is a cumulative reply: its message id is the highest
+	 * id replied, the fields are the ok flag, the number of failed messages
+	 * and their ids.
+	 */
+	public enum Opcode {
+
+		POWER_PIN_SWITCH(0x01), POWER_PIN_INTENSITY(0x02), START_LISTENING_DIGITAL(
+				0x03), START_LISTENING_ANALOG(0x04), STOP_LISTENING_DIGITAL(
+				0x05), STOP_LISTENING_ANALOG(0x06), CHAR_PRESSED(0x07), TONE(
+				0x08), NOTONE(0x09), CUSTOM_MESSAGE(0x0A), DIGITAL_PIN_READ(
+				0x20), ANALOG_PIN_READ(0x21), RPLY(0x22), READY(0x23), RPLY_UPTO(
+				0x24);
+
+		private static final Opcode[] byCode = byCode();
+
+		private final int code;
+
+		private Opcode(int code) {
+			this.code = code;
+		}
+
+		public int getCode() {
+			return code;
+		}
+
+		private static Opcode[] byCode() {
+			Opcode[] byCode = new Opcode[OPCODE_MASK + 1];
+			for (Opcode opcode : values()) {
+				byCode[opcode.code] = opcode;
+			}
+			return byCode;
+		}
+
+		/**
+		 * Returns the opcode or <code>null</code> if the code is unknown.
+		 */
+		private static Opcode fromCode(int code) {
+			return byCode[code & OPCODE_MASK];
+		}
+
+	}
+
+	private static final ArdulinkBinaryProtocol instance = new ArdulinkBinaryProtocol();
+
+	private final byte[] separator = new byte[0];
+	private final boolean crc;
+
+	public static Protocol instance() {
+		return instance;
+	}
+
+	public ArdulinkBinaryProtocol() {
+		this(true);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param crc
+	 *            whether the frames sent to the arduino should carry a CRC.
+	 *            Frames received are verified if they carry a CRC regardless of
+	 *            this setting.
+	 */
+	public ArdulinkBinaryProtocol(boolean crc) {
+		this.crc = crc;
+	}
+
+	@Override
+	public String getName() {
+		return "ardulinkbinary";
+	}
+
+	/**
+	 * Binary frames are length prefixed and not divided by a separator, so
+	 * this method returns an empty array.
+	 *
+	 * @see #readFrame(InputStream)
+	 */
+	@Override
+	public byte[] getSeparator() {
+		return separator;
+	}
+
+	@Override
+	public boolean isFrameStart(int b) {
+		return b == (SYNC & 0xFF);
+	}
+
+	@Override
+	public void discardBuffered() {
+		// frames are read without buffering
+	}
+
+	/**
+	 * Checks the frame's CRC (if any) and whether its opcode is one sent by the
+	 * arduino, the fields are not parsed.
+	 */
+	@Override
+	public boolean accepts(byte[] frame) {
+		if (frame.length == 0) {
+			return false;
+		}
+		int opcodeByte = frame[0] & 0xFF;
+		int end = frame.length;
+		if ((opcodeByte & FLAG_CRC) != 0) {
+			end--;
+			if (end == 0 || crc8(frame, 0, end) != frame[end]) {
+				return false;
+			}
+		}
+		Opcode opcode = Opcode.fromCode(opcodeByte);
+		if (opcode == null) {
+			return false;
+		}
+		switch (opcode) {
+		case ANALOG_PIN_READ:
+		case DIGITAL_PIN_READ:
+			return end > 1;
+		case RPLY:
+		case RPLY_UPTO:
+			return (opcodeByte & FLAG_MESSAGE_ID) != 0 && end > 2;
+		case READY:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public byte[] toArduino(ToArduinoStartListening startListeningEvent) {
+		Pin pin = startListeningEvent.getPin();
+		return newFrame(
+				pin.is(ANALOG) ? Opcode.START_LISTENING_ANALOG
+						: Opcode.START_LISTENING_DIGITAL, startListeningEvent)
+				.unsigned(pin.pinNum()).toBytes();
+	}
+
+	@Override
+	public byte[] toArduino(ToArduinoStopListening stopListeningEvent) {
+		Pin pin = stopListeningEvent.getPin();
+		return newFrame(
+				pin.is(ANALOG) ? Opcode.STOP_LISTENING_ANALOG
+						: Opcode.STOP_LISTENING_DIGITAL, stopListeningEvent)
+				.unsigned(pin.pinNum()).toBytes();
+	}
+
+	@Override
+	public byte[] toArduino(ToArduinoPinEvent pinEvent) {
+		Pin pin = pinEvent.getPin();
+		if (pin.is(ANALOG)) {
+			return newFrame(Opcode.POWER_PIN_INTENSITY, pinEvent)
+					.unsigned(pin.pinNum())
+					.signed(((Integer) pinEvent.getValue()).intValue())
+					.toBytes();
+		}
+		if (pin.is(DIGITAL)) {
+			return newFrame(Opcode.POWER_PIN_SWITCH, pinEvent)
+					.unsigned(pin.pinNum())
+					.unsigned(TRUE.equals(pinEvent.getValue()) ? 1 : 0)
+					.toBytes();
+		}
+		throw new IllegalStateException("Illegal type " + pin.getType()
+				+ " of pin " + pin);
+	}
+
+	@Override
+	public byte[] toArduino(ToArduinoKeyPressEvent charEvent) {
+		return newFrame(Opcode.CHAR_PRESSED, charEvent)
+				.unsigned(charEvent.getKeychar())
+				.signed(charEvent.getKeycode())
+				.signed(charEvent.getKeylocation())
+				.signed(charEvent.getKeymodifiers())
+				.signed(charEvent.getKeymodifiersex()).toBytes();
+	}
+
+	@Override
+	public byte[] toArduino(ToArduinoTone toArduinoTone) {
+		Tone tone = toArduinoTone.getTone();
+		Long duration = tone.getDurationInMillis();
+		return newFrame(Opcode.TONE, toArduinoTone)
+				.unsigned(tone.getPin().pinNum()).signed(tone.getHertz())
+				.signed(duration == null ? -1 : duration.longValue())
+				.toBytes();
+	}
+
+	@Override
+	public byte[] toArduino(ToArduinoNoTone noTone) {
+		return newFrame(Opcode.NOTONE, noTone).unsigned(
+				noTone.getAnalogPin().pinNum()).toBytes();
+	}
+
+	@Override
+	public byte[] toArduino(ToArduinoCustomMessage customMessage) {
+		String[] messages = customMessage.getMessages();
+		FrameBuilder builder = newFrame(Opcode.CUSTOM_MESSAGE, customMessage)
+				.unsigned(messages.length);
+		for (String message : messages) {
+			builder.string(message);
+		}
+		return builder.toBytes();
+	}
+
+	/**
+	 * Reads the next frame from the stream. Bytes preceding the SYNC byte are
+	 * skipped. The returned frame contains everything following the length
+	 * field (opcode, message id, fields and CRC). If the length field is
+	 * corrupt an empty frame is returned, so the caller can count it as
+	 * malformed, and the next call searches for the next SYNC byte.
+	 */
+	@Override
+	public byte[] readFrame(InputStream inputStream) throws IOException {
+		while (true) {
+			int read;
+			while ((read = inputStream.read()) != (SYNC & 0xFF)) {
+				if (read < 0) {
+					return null;
+				}
+			}
+			long length = readUnsigned(inputStream);
+			if (length == END_OF_STREAM) {
+				return null;
+			}
+			if (length > 0 && length <= MAX_FRAME_LENGTH) {
+				byte[] frame = new byte[(int) length];
+				int offset = 0;
+				while (offset < frame.length) {
+					int n = inputStream.read(frame, offset, frame.length
+							- offset);
+					if (n < 0) {
+						return null;
+					}
+					offset += n;
+				}
+				return frame;
+			}
+			return MALFORMED;
+		}
+	}
+
+	/**
+	 * Decodes the frame.
+	 * 
+	 * @return the message decoded or <code>null</code> if the frame is
+	 *         malformed, e.g. its CRC does not match
+	 */
+	@Override
+	public FromArduino fromArduino(byte[] bytes) {
+		if (bytes.length == 0) {
+			return null;
+		}
+		int opcodeByte = bytes[0] & 0xFF;
+		int end = bytes.length;
+		if ((opcodeByte & FLAG_CRC) != 0) {
+			end--;
+			if (end == 0 || crc8(bytes, 0, end) != bytes[end]) {
+				return null;
+			}
+		}
+		Opcode opcode = Opcode.fromCode(opcodeByte);
+		if (opcode == null) {
+			return null;
+		}
+		FrameParser parser = new FrameParser(bytes, 1, end);
+		long id = (opcodeByte & FLAG_MESSAGE_ID) == 0 ? -1 : parser
+				.unsigned();
+		FromArduino fromArduino = decode(opcode, id, parser);
+		return parser.isMalformed() ? null : fromArduino;
+	}
+
+	private static FromArduino decode(Opcode opcode, long id,
+			FrameParser parser) {
+		switch (opcode) {
+		case ANALOG_PIN_READ:
+			int analogPin = parser.unsignedInt();
+			int analogValue = parser.signedInt();
+			return parser.isMalformed() ? null : new FromArduinoPinStateChanged(
+					analogPin(analogPin), analogValue);
+		case DIGITAL_PIN_READ:
+			int digitalPin = parser.unsignedInt();
+			boolean digitalValue = parser.unsigned() == 1;
+			return parser.isMalformed() ? null : new FromArduinoPinStateChanged(
+					digitalPin(digitalPin), digitalValue);
+		case RPLY:
+			boolean ok = parser.unsigned() == 1;
+			return id < 0 ? null : new FromArduinoReply(ok, id);
+		case RPLY_UPTO:
+			boolean allOk = parser.unsigned() == 1;
+			int nacks = parser.unsignedInt();
+			// each id takes at least one byte
+			if (id < 0 || nacks > parser.remaining()) {
+				return null;
+			}
+			long[] nackIds = new long[nacks];
+			for (int i = 0; i < nackIds.length; i++) {
+				nackIds[i] = parser.unsigned();
+			}
+			return new FromArduinoCumulativeReply(allOk, id, nackIds);
+		case READY:
+			return new FromArduinoReady();
+		default:
+			// opcodes of messages sent to the arduino
+			return null;
+		}
+	}
+
+	private FrameBuilder newFrame(Opcode opcode, Object event) {
+		return event instanceof MessageIdHolder ? new FrameBuilder(opcode,
+				crc, ((MessageIdHolder) event).getId()) : new FrameBuilder(
+				opcode, crc, -1);
+	}
+
+	/**
+	 * Calculates the CRC-8 (polynomial 0x07, initial value 0x00).
+	 */
+	static byte crc8(byte[] bytes, int offset, int end) {
+		int crc = 0;
+		for (int i = offset; i < end; i++) {
+			crc ^= bytes[i] & 0xFF;
+			for (int bit = 0; bit < 8; bit++) {
+				crc = (crc & 0x80) != 0 ? (crc << 1) ^ 0x07 : crc << 1;
+			}
+		}
+		return (byte) crc;
+	}
+
+	/**
+	 * Reads a length field.
+	 * 
+	 * @return the value read, {@link #END_OF_STREAM} or
+	 *         {@link Long#MAX_VALUE} if the varint is corrupt (too long or
+	 *         exceeding the range of long)
+	 */
+	private static long readUnsigned(InputStream inputStream)
+			throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int read = inputStream.read();
+			if (read < 0) {
+				return END_OF_STREAM;
+			}
+			value |= (long) (read & 0x7F) << shift;
+			if ((read & 0x80) == 0) {
+				return value < 0 ? Long.MAX_VALUE : value;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Builds a binary frame, the opcode (and message id) are written on
+	 * creation, sync byte, length and CRC are added in {@link #toBytes()}.
+	 */
+	static class FrameBuilder {
+
+		private byte[] bytes = new byte[16];
+		private int count;
+		private final boolean crc;
+
+		FrameBuilder(Opcode opcode, boolean crc, long messageId) {
+			this.crc = crc;
+			int opcodeByte = opcode.code;
+			if (crc) {
+				opcodeByte |= FLAG_CRC;
+			}
+			if (messageId >= 0) {
+				opcodeByte |= FLAG_MESSAGE_ID;
+			}
+			write(opcodeByte);
+			if (messageId >= 0) {
+				unsigned(messageId);
+			}
+		}
+
+		FrameBuilder unsigned(long value) {
+			checkArgument(value >= 0, "Value must not be negative but was %s",
+					value);
+			while ((value & ~0x7FL) != 0) {
+				write((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			write((int) value);
+			return this;
+		}
+
+		FrameBuilder signed(long value) {
+			return unsigned((value << 1) ^ (value >> 63));
+		}
+
+		FrameBuilder string(String string) {
+			byte[] stringBytes = string.getBytes(UTF8);
+			unsigned(stringBytes.length);
+			for (byte b : stringBytes) {
+				write(b);
+			}
+			return this;
+		}
+
+		private void write(int b) {
+			if (count == bytes.length) {
+				bytes = Arrays.copyOf(bytes, 2 * count);
+			}
+			bytes[count++] = (byte) b;
+		}
+
+		byte[] toBytes() {
+			int length = count + (crc ? 1 : 0);
+			int headerLength = 2;
+			for (int value = length; value > 0x7F; value >>>= 7) {
+				headerLength++;
+			}
+			byte[] frame = new byte[headerLength + length];
+			frame[0] = SYNC;
+			int pos = 1;
+			int value = length;
+			while (value > 0x7F) {
+				frame[pos++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			frame[pos] = (byte) value;
+			System.arraycopy(bytes, 0, frame, headerLength, count);
+			if (crc) {
+				frame[frame.length - 1] = crc8(bytes, 0, count);
+			}
+			return frame;
+		}
+
+	}
+
+	private static class FrameParser {
+
+		private final byte[] bytes;
+		private final int end;
+		private int pos;
+		private boolean malformed;
+
+		FrameParser(byte[] bytes, int offset, int end) {
+			this.bytes = bytes;
+			this.pos = offset;
+			this.end = end;
+		}
+
+		/**
+		 * Reads a varint. If the frame is too short or the varint too long the
+		 * parser is marked malformed and 0 is returned.
+		 */
+		long unsigned() {
+			long value = 0;
+			for (int shift = 0; shift < 64 && pos < end; shift += 7) {
+				int b = bytes[pos++] & 0xFF;
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			malformed = true;
+			return 0;
+		}
+
+		int unsignedInt() {
+			long value = unsigned();
+			if (value < 0 || value > Integer.MAX_VALUE) {
+				malformed = true;
+				return 0;
+			}
+			return (int) value;
+		}
+
+		int signedInt() {
+			long value = unsigned();
+			return (int) ((value >>> 1) ^ -(value & 1));
+		}
+
+		int remaining() {
+			return end - pos;
+		}
+
+		boolean isMalformed() {
+			return malformed;
+		}
+
+	}
+
+}
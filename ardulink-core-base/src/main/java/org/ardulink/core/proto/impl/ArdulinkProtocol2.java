@@ -21,33 +21,23 @@ import static org.ardulink.core.Pin.digitalPin;
 import static org.ardulink.core.Pin.Type.ANALOG;
 import static org.ardulink.core.Pin.Type.DIGITAL;
 import static org.ardulink.core.proto.impl.ALProtoBuilder.alpProtocolMessage;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.ANALOG_PIN_READ;
 import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.CHAR_PRESSED;
 import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.CUSTOM_MESSAGE;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.DIGITAL_PIN_READ;
 import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.NOTONE;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.POWER_PIN_INTENSITY;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.POWER_PIN_SWITCH;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.READY;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.RPLY;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.START_LISTENING_ANALOG;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.START_LISTENING_DIGITAL;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LISTENING_ANALOG;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LISTENING_DIGITAL;
 import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.TONE;
-import static java.lang.Boolean.FALSE;
+import static org.ardulink.core.proto.impl.ALProtoEncoder.MAX_FRAME_LENGTH;
+import static org.ardulink.core.proto.impl.ALProtoEncoder.NO_MESSAGE_ID;
+import static org.ardulink.core.proto.impl.ALProtoEncoder.startListening;
+import static org.ardulink.core.proto.impl.ALProtoEncoder.stopListening;
 import static java.lang.Boolean.TRUE;
 import static java.lang.System.arraycopy;
-import static org.ardulink.util.Integers.tryParse;
-import static org.ardulink.util.Preconditions.checkNotNull;
-import static org.ardulink.util.Preconditions.checkState;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import org.ardulink.util.Longs;
+import java.nio.ByteBuffer;
 
 import org.ardulink.core.Pin;
+import org.ardulink.core.proto.api.ByteBufferDecoder;
+import org.ardulink.core.proto.api.ByteBufferEncoder;
+import org.ardulink.core.proto.api.Detectable;
 import org.ardulink.core.proto.api.MessageIdHolder;
 import org.ardulink.core.proto.api.Protocol;
 import org.ardulink.core.proto.api.ToArduinoCustomMessage;
@@ -58,6 +48,7 @@ import org.ardulink.core.proto.api.ToArduinoStartListening;
 import org.ardulink.core.proto.api.ToArduinoStopListening;
 import org.ardulink.core.proto.api.ToArduinoTone;
 import org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey;
+import org.ardulink.core.proto.impl.ALProtoDecoder.Handler;
 
 /**
  * [ardulinktitle] [ardulinkversion]
@@ -67,16 +58,91 @@ import org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey;
  * [adsense]
  *
  */
-public class ArdulinkProtocol2 implements Protocol {
-
-	private static final Pattern pattern = Pattern
-			.compile("alp:\\/\\/([a-z]+)\\/([^\\?]*)(?:\\?id=(\\d+))?");
+public class ArdulinkProtocol2 implements Protocol, Detectable,
+		ByteBufferDecoder, ByteBufferEncoder {
 
 	private final String name = "ardulink2";
 	private final byte[] separator = "\n".getBytes();
 
+	private final ALProtoDecoder decoder = new ALProtoDecoder();
+
 	private static final ArdulinkProtocol2 instance = new ArdulinkProtocol2();
 
+	/**
+	 * Per thread buffers the {@link ALProtoEncoder} writes into.
+	 */
+	private static final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocate(MAX_FRAME_LENGTH);
+		}
+	};
+
+	private static final Handler<FromArduino> fromArduinoFactory = new Handler<FromArduino>() {
+
+		@Override
+		public FromArduino analogPinRead(int pin, int value) {
+			return new FromArduinoPinStateChanged(analogPin(pin), value);
+		}
+
+		@Override
+		public FromArduino digitalPinRead(int pin, boolean value) {
+			return new FromArduinoPinStateChanged(digitalPin(pin), value);
+		}
+
+		@Override
+		public FromArduino reply(boolean ok, long id) {
+			return new FromArduinoReply(ok, id);
+		}
+
+		@Override
+		public FromArduino cumulativeReply(boolean ok, long upToId,
+				long[] nackIds) {
+			return new FromArduinoCumulativeReply(ok, upToId, nackIds);
+		}
+
+		@Override
+		public FromArduino ready() {
+			return new FromArduinoReady();
+		}
+
+	};
+
+	/**
+	 * Decoder used to probe frames, its malformed frames are not counted as
+	 * malformed frames of the protocol.
+	 */
+	private static final ALProtoDecoder probe = new ALProtoDecoder();
+
+	private static final Handler<Boolean> accepting = new Handler<Boolean>() {
+
+		@Override
+		public Boolean analogPinRead(int pin, int value) {
+			return TRUE;
+		}
+
+		@Override
+		public Boolean digitalPinRead(int pin, boolean value) {
+			return TRUE;
+		}
+
+		@Override
+		public Boolean reply(boolean ok, long id) {
+			return TRUE;
+		}
+
+		@Override
+		public Boolean cumulativeReply(boolean ok, long upToId, long[] nackIds) {
+			return TRUE;
+		}
+
+		@Override
+		public Boolean ready() {
+			return TRUE;
+		}
+
+	};
+
 	public static Protocol instance() {
 		return instance;
 	}
@@ -90,47 +156,68 @@ public class ArdulinkProtocol2 implements Protocol {
 		return separator;
 	}
 
+	/**
+	 * All frames start with <code>alp://</code>.
+	 */
+	@Override
+	public boolean isFrameStart(int b) {
+		return b == 'a';
+	}
+
+	@Override
+	public boolean accepts(byte[] frame) {
+		return probe.decode(frame, accepting) != null;
+	}
+
+	@Override
+	public void discardBuffered() {
+		// frames are read without buffering
+	}
+
+	@Override
+	public int getMaxFrameLength() {
+		return MAX_FRAME_LENGTH;
+	}
+
+	@Override
+	public void switchAnalogPin(ByteBuffer buffer, int pin, int value) {
+		ALProtoEncoder.switchAnalogPin(buffer, pin, value);
+	}
+
+	@Override
+	public void switchDigitalPin(ByteBuffer buffer, int pin, boolean value) {
+		ALProtoEncoder.switchDigitalPin(buffer, pin, value);
+	}
+
 	@Override
 	public byte[] toArduino(ToArduinoStartListening startListeningEvent) {
-		Pin pin = startListeningEvent.getPin();
-		if (startListeningEvent.getPin().is(ANALOG)) {
-			return toBytes(alpProtocolMessage(START_LISTENING_ANALOG).forPin(
-					pin.pinNum()).withoutValue());
-		}
-		if (startListeningEvent.getPin().is(DIGITAL)) {
-			return toBytes(alpProtocolMessage(START_LISTENING_DIGITAL).forPin(
-					pin.pinNum()).withoutValue());
-		}
-		throw illegalPinType(startListeningEvent.getPin());
+		return toBytes(startListening(buffer(), startListeningEvent.getPin()));
 	}
 
 	@Override
 	public byte[] toArduino(ToArduinoStopListening stopListeningEvent) {
-		Pin pin = stopListeningEvent.getPin();
-		if (stopListeningEvent.getPin().is(ANALOG)) {
-			return toBytes(alpProtocolMessage(STOP_LISTENING_ANALOG).forPin(
-					pin.pinNum()).withoutValue());
-		}
-		if (stopListeningEvent.getPin().is(DIGITAL)) {
-			return toBytes(alpProtocolMessage(STOP_LISTENING_DIGITAL).forPin(
-					pin.pinNum()).withoutValue());
-		}
-		throw illegalPinType(stopListeningEvent.getPin());
+		return toBytes(stopListening(buffer(), stopListeningEvent.getPin()));
 	}
 
 	@Override
 	public byte[] toArduino(ToArduinoPinEvent pinEvent) {
-		if (pinEvent.getPin().is(ANALOG)) {
-			return toBytes(builder(pinEvent, POWER_PIN_INTENSITY).forPin(
-					pinEvent.getPin().pinNum()).withValue(
-					(Integer) pinEvent.getValue()));
+		Pin pin = pinEvent.getPin();
+		if (pin.is(ANALOG)) {
+			return toBytes(ALProtoEncoder.switchAnalogPin(buffer(),
+					pin.pinNum(), ((Integer) pinEvent.getValue()).intValue(),
+					messageId(pinEvent)));
 		}
-		if (pinEvent.getPin().is(DIGITAL)) {
-			return toBytes(builder(pinEvent, POWER_PIN_SWITCH).forPin(
-					pinEvent.getPin().pinNum()).withState(
-					(Boolean) pinEvent.getValue()));
+		if (pin.is(DIGITAL)) {
+			return toBytes(ALProtoEncoder.switchDigitalPin(buffer(),
+					pin.pinNum(), ((Boolean) pinEvent.getValue()).booleanValue(),
+					messageId(pinEvent)));
 		}
-		throw illegalPinType(pinEvent.getPin());
+		throw illegalPinType(pin);
+	}
+
+	private static long messageId(Object event) {
+		return event instanceof MessageIdHolder ? ((MessageIdHolder) event)
+				.getId() : NO_MESSAGE_ID;
 	}
 
 	private ALProtoBuilder builder(Object event, ALPProtocolKey key) {
@@ -170,46 +257,26 @@ public class ArdulinkProtocol2 implements Protocol {
 		return toBytes(alpProtocolMessage(CUSTOM_MESSAGE).withValues(messages));
 	}
 
+	/**
+	 * Decodes the frame.
+	 * 
+	 * @return the message decoded or <code>null</code> if the frame could not
+	 *         be decoded
+	 */
 	@Override
 	public FromArduino fromArduino(byte[] bytes) {
-		String in = new String(bytes);
-		Matcher matcher = pattern.matcher(in);
-
-		checkState(matcher.matches(), "No match %s", in);
-		checkState(matcher.groupCount() >= 2, "GroupCount %s",
-				matcher.groupCount());
-		String command = matcher.group(1);
-		ALPProtocolKey key = ALPProtocolKey.fromString(command).getOrThrow(
-				"command %s not known", command);
-
-		if (key == READY) {
-			return new FromArduinoReady();
-		} else if (key == RPLY) {
-			checkState(matcher.groupCount() >= 3, "GroupCount %s",
-					matcher.groupCount());
-			String id = matcher.group(3);
-			return new FromArduinoReply(
-					matcher.group(2).equalsIgnoreCase("ok"), checkNotNull(
-							Longs.tryParse(id), "%s not a long value", id)
-							.longValue());
-		}
-
-		String pinAndState = matcher.group(2);
-		String[] split = pinAndState.split("\\/");
-		checkState(split.length == 2, "Error splitting %s, cannot process %s",
-				pinAndState, in);
+		return decoder.decode(bytes, fromArduinoFactory);
+	}
 
-		Integer pin = tryParse(split[0]);
-		Integer value = tryParse(split[1]);
-		checkState(key != null && pin != null && value != null,
-				"key %s pin %s value %s", key, pin, value);
-		if (key == ANALOG_PIN_READ) {
-			return new FromArduinoPinStateChanged(analogPin(pin), value);
-		} else if (key == DIGITAL_PIN_READ) {
-			return new FromArduinoPinStateChanged(digitalPin(pin),
-					toBoolean(value));
-		}
-		throw new IllegalStateException(key + " " + in);
+	/**
+	 * Decodes the frame.
+	 * 
+	 * @return the message decoded or <code>null</code> if the frame could not
+	 *         be decoded
+	 */
+	@Override
+	public FromArduino fromArduino(ByteBuffer buffer) {
+		return decoder.decode(buffer, fromArduinoFactory);
 	}
 
 	private IllegalStateException illegalPinType(Pin pin) {
@@ -217,8 +284,24 @@ public class ArdulinkProtocol2 implements Protocol {
 				+ " of pin " + pin);
 	}
 
-	private static Boolean toBoolean(Integer value) {
-		return value.intValue() == 1 ? TRUE : FALSE;
+	private static ByteBuffer buffer() {
+		ByteBuffer buffer = buffers.get();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Copies the frame written to the passed buffer into a new byte[].
+	 * 
+	 * @param buffer
+	 *            the buffer the frame was written to
+	 * @return byte[] holding the frame including the protocol's divider
+	 */
+	private static byte[] toBytes(ByteBuffer buffer) {
+		buffer.flip();
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return bytes;
 	}
 
 	/**
@@ -0,0 +1,488 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+ */
+package org.ardulink.core.proto.impl;
+
+import static java.lang.Boolean.TRUE;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.core.Pin.Type.DIGITAL;
+import static org.ardulink.util.Preconditions.checkArgument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Queue;
+
+import org.ardulink.core.Pin;
+import org.ardulink.core.Tone;
+import org.ardulink.core.proto.api.Detectable;
+import org.ardulink.core.proto.api.FrameReader;
+import org.ardulink.core.proto.api.Protocol;
+import org.ardulink.core.proto.api.ToArduinoCustomMessage;
+import org.ardulink.core.proto.api.ToArduinoKeyPressEvent;
+import org.ardulink.core.proto.api.ToArduinoNoTone;
+import org.ardulink.core.proto.api.ToArduinoPinEvent;
+import org.ardulink.core.proto.api.ToArduinoStartListening;
+import org.ardulink.core.proto.api.ToArduinoStopListening;
+import org.ardulink.core.proto.api.ToArduinoTone;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Speaks the <a href="https://github.com/firmata/protocol">Firmata</a>
+ * protocol so that arduinos running StandardFirmata can be used without
+ * flashing the Ardulink sketch.
+ * <ul>
+ * <li>digital pins are listened to using digital port reports, the port
+ * messages received are split into one change per listened pin</li>
+ * <li>analog pins are listened to using analog reports</li>
+ * <li>pin modes (input, output, PWM) are set automatically the first time a
+ * pin is used in a different mode</li>
+ * <li>analog values are written using analog (PWM) messages or extended analog
+ * sysex messages for pins above 15</li>
+ * <li>custom messages are sent as STRING_DATA sysex (messages joined by
+ * <code>/</code>), tones as TONE_DATA sysex and key presses as user defined
+ * sysex 0x01</li>
+ * </ul>
+ * Firmata does neither know message ids nor replies, so this protocol cannot
+ * be used with QoS links. Because pin modes and port states have to be
+ * tracked each connection needs its own instance of this protocol.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class FirmataProtocol implements Protocol, FrameReader, Detectable {
+
+	// message types, the lower nibble holds port/pin of the first three
+	private static final int DIGITAL_MESSAGE = 0x90;
+	private static final int ANALOG_MESSAGE = 0xE0;
+	private static final int REPORT_ANALOG = 0xC0;
+	private static final int REPORT_DIGITAL = 0xD0;
+	private static final int SET_PIN_MODE = 0xF4;
+	private static final int SET_DIGITAL_PIN_VALUE = 0xF5;
+	private static final int REPORT_VERSION = 0xF9;
+	private static final int START_SYSEX = 0xF0;
+	private static final int END_SYSEX = 0xF7;
+
+	// sysex commands
+	private static final int KEY_PRESS = 0x01;
+	private static final int TONE_DATA = 0x5F;
+	private static final int EXTENDED_ANALOG = 0x6F;
+	private static final int STRING_DATA = 0x71;
+
+	private static final int TONE_TONE = 0x00;
+	private static final int TONE_NO_TONE = 0x01;
+
+	// pin modes
+	private static final int INPUT = 0x00;
+	private static final int OUTPUT = 0x01;
+	private static final int PWM = 0x03;
+
+	private static final int PORTS = 16;
+	private static final int PINS = 8 * PORTS;
+	private static final int MAX_14_BIT = 0x3FFF;
+	private static final int UNKNOWN = -1;
+
+	/**
+	 * Sysex messages longer than this are treated as garbage.
+	 */
+	private static final int MAX_SYSEX_LENGTH = 1024;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final byte[] separator = new byte[0];
+
+	private final int[] pinModes = filled(new int[PINS], UNKNOWN);
+	private final int[] outputPorts = new int[PORTS];
+	private final int[] listenedPins = new int[PORTS];
+	private final int[] inputPorts = filled(new int[PORTS], UNKNOWN);
+
+	// only accessed by the thread reading the frames
+	private final Queue<byte[]> pendingFrames = new LinkedList<byte[]>();
+	private int pushedBack = UNKNOWN;
+
+	@Override
+	public String getName() {
+		return "firmata";
+	}
+
+	/**
+	 * Firmata messages are not divided by a separator, so this method returns
+	 * an empty array.
+	 *
+	 * @see #readFrame(InputStream)
+	 */
+	@Override
+	public byte[] getSeparator() {
+		return separator;
+	}
+
+	/**
+	 * StandardFirmata sends digital, analog, version and sysex messages.
+	 */
+	@Override
+	public boolean isFrameStart(int b) {
+		int type = b & 0xF0;
+		return type == DIGITAL_MESSAGE || type == ANALOG_MESSAGE
+				|| b == REPORT_VERSION || b == START_SYSEX;
+	}
+
+	@Override
+	public synchronized byte[] toArduino(
+			ToArduinoStartListening startListeningEvent) {
+		Pin pin = startListeningEvent.getPin();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (pin.is(ANALOG)) {
+			out.write(REPORT_ANALOG | channel(pin));
+			out.write(1);
+		} else {
+			int pinNum = checkPin(pin.pinNum());
+			int port = pinNum / 8;
+			setPinMode(out, pinNum, INPUT);
+			listenedPins[port] |= bit(pinNum);
+			// forget the state so the port message sent in response to the
+			// report request contains the state of the newly listened pin
+			inputPorts[port] = UNKNOWN;
+			out.write(REPORT_DIGITAL | port);
+			out.write(1);
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public synchronized byte[] toArduino(
+			ToArduinoStopListening stopListeningEvent) {
+		Pin pin = stopListeningEvent.getPin();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (pin.is(ANALOG)) {
+			out.write(REPORT_ANALOG | channel(pin));
+			out.write(0);
+		} else {
+			int pinNum = checkPin(pin.pinNum());
+			int port = pinNum / 8;
+			listenedPins[port] &= ~bit(pinNum);
+			// the port is reported as a whole, so keep reporting as long as
+			// any other pin of the port is listened to
+			if (listenedPins[port] == 0) {
+				out.write(REPORT_DIGITAL | port);
+				out.write(0);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public synchronized byte[] toArduino(ToArduinoPinEvent pinEvent) {
+		Pin pin = pinEvent.getPin();
+		int pinNum = checkPin(pin.pinNum());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (pin.is(ANALOG)) {
+			int value = ((Integer) pinEvent.getValue()).intValue();
+			checkArgument(value >= 0, "Value must not be negative but was %s",
+					value);
+			setPinMode(out, pinNum, PWM);
+			if (pinNum < 16 && value <= MAX_14_BIT) {
+				out.write(ANALOG_MESSAGE | pinNum);
+				write14Bit(out, value);
+			} else {
+				out.write(START_SYSEX);
+				out.write(EXTENDED_ANALOG);
+				out.write(pinNum);
+				do {
+					out.write(value & 0x7F);
+					value >>>= 7;
+				} while (value != 0);
+				out.write(END_SYSEX);
+			}
+		} else if (pin.is(DIGITAL)) {
+			int port = pinNum / 8;
+			setPinMode(out, pinNum, OUTPUT);
+			if (TRUE.equals(pinEvent.getValue())) {
+				outputPorts[port] |= bit(pinNum);
+			} else {
+				outputPorts[port] &= ~bit(pinNum);
+			}
+			out.write(DIGITAL_MESSAGE | port);
+			write14Bit(out, outputPorts[port]);
+		} else {
+			throw new IllegalStateException("Illegal type " + pin.getType()
+					+ " of pin " + pin);
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public byte[] toArduino(ToArduinoKeyPressEvent charEvent) {
+		return sysex(
+				KEY_PRESS,
+				String.format("chr%scod%sloc%smod%smex%s",
+						charEvent.getKeychar(), charEvent.getKeycode(),
+						charEvent.getKeylocation(),
+						charEvent.getKeymodifiers(),
+						charEvent.getKeymodifiersex()));
+	}
+
+	@Override
+	public byte[] toArduino(ToArduinoTone toArduinoTone) {
+		Tone tone = toArduinoTone.getTone();
+		Long duration = tone.getDurationInMillis();
+		int hertz = tone.getHertz();
+		checkArgument(hertz >= 0 && hertz <= MAX_14_BIT,
+				"Frequency must be in range 0-%s but was %s", MAX_14_BIT, hertz);
+		checkArgument(duration == null || duration.longValue() <= MAX_14_BIT,
+				"Duration must not exceed %s but was %s", MAX_14_BIT, duration);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(START_SYSEX);
+		out.write(TONE_DATA);
+		out.write(TONE_TONE);
+		out.write(checkPin(tone.getPin().pinNum()));
+		write14Bit(out, hertz);
+		write14Bit(out, duration == null ? 0 : duration.intValue());
+		out.write(END_SYSEX);
+		return out.toByteArray();
+	}
+
+	@Override
+	public byte[] toArduino(ToArduinoNoTone noTone) {
+		return new byte[] { (byte) START_SYSEX, TONE_DATA, TONE_NO_TONE,
+				(byte) checkPin(noTone.getAnalogPin().pinNum()),
+				(byte) END_SYSEX };
+	}
+
+	@Override
+	public byte[] toArduino(ToArduinoCustomMessage customMessage) {
+		StringBuilder sb = new StringBuilder();
+		for (String message : customMessage.getMessages()) {
+			if (sb.length() > 0) {
+				sb.append('/');
+			}
+			sb.append(message);
+		}
+		return sysex(STRING_DATA, sb.toString());
+	}
+
+	/**
+	 * Reads the next message the arduino sent. Digital port messages are
+	 * split into one SET_DIGITAL_PIN_VALUE message per listened pin that
+	 * changed its state, messages this protocol has no equivalent for (e.g.
+	 * sysex responses) are skipped.
+	 */
+	@Override
+	public byte[] readFrame(InputStream inputStream) throws IOException {
+		while (pendingFrames.isEmpty()) {
+			int command;
+			// skip data bytes not belonging to any message
+			while ((command = read(inputStream)) >= 0 && !isCommand(command)) {
+				continue;
+			}
+			if (command < 0) {
+				return null;
+			}
+			byte[] message = command == START_SYSEX ? readSysex(inputStream)
+					: readMessage(inputStream, command);
+			// message is null if interrupted by the next command
+			if (message != null) {
+				enqueue(message);
+			}
+		}
+		return pendingFrames.poll();
+	}
+
+	@Override
+	public boolean accepts(byte[] frame) {
+		int command = frame.length == 0 ? UNKNOWN : frame[0] & 0xFF;
+		return ((command & 0xF0) == ANALOG_MESSAGE && frame.length == 3)
+				|| (command == SET_DIGITAL_PIN_VALUE && frame.length == 3)
+				|| command == REPORT_VERSION;
+	}
+
+	@Override
+	public void discardBuffered() {
+		pendingFrames.clear();
+		pushedBack = UNKNOWN;
+	}
+
+	@Override
+	public FromArduino fromArduino(byte[] bytes) {
+		int command = bytes.length == 0 ? UNKNOWN : bytes[0] & 0xFF;
+		if ((command & 0xF0) == ANALOG_MESSAGE && bytes.length == 3) {
+			return new FromArduinoPinStateChanged(analogPin(command & 0x0F),
+					read14Bit(bytes, 1));
+		}
+		if (command == SET_DIGITAL_PIN_VALUE && bytes.length == 3) {
+			return new FromArduinoPinStateChanged(digitalPin(bytes[1]),
+					bytes[2] != 0);
+		}
+		if (command == REPORT_VERSION) {
+			return new FromArduinoReady();
+		}
+		throw new IllegalStateException("Cannot handle "
+				+ Arrays.toString(bytes) + " received from arduino");
+	}
+
+	private void enqueue(byte[] message) {
+		int command = message[0] & 0xFF;
+		if ((command & 0xF0) == DIGITAL_MESSAGE) {
+			int port = command & 0x0F;
+			int value = read14Bit(message, 1);
+			int changed;
+			synchronized (this) {
+				int listened = listenedPins[port];
+				changed = inputPorts[port] == UNKNOWN ? listened
+						: (value ^ inputPorts[port]) & listened;
+				inputPorts[port] = value;
+			}
+			for (int i = 0; i < 8; i++) {
+				if ((changed & (1 << i)) != 0) {
+					pendingFrames.add(new byte[] {
+							(byte) SET_DIGITAL_PIN_VALUE, (byte) (port * 8 + i),
+							(byte) ((value >> i) & 1) });
+				}
+			}
+		} else if ((command & 0xF0) == ANALOG_MESSAGE
+				|| command == REPORT_VERSION) {
+			pendingFrames.add(message);
+		}
+	}
+
+	private byte[] readMessage(InputStream inputStream, int command)
+			throws IOException {
+		byte[] message = new byte[1 + dataLength(command)];
+		message[0] = (byte) command;
+		for (int i = 1; i < message.length; i++) {
+			int read = readData(inputStream);
+			if (read < 0) {
+				return null;
+			}
+			message[i] = (byte) read;
+		}
+		return message;
+	}
+
+	private byte[] readSysex(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream sysex = new ByteArrayOutputStream();
+		sysex.write(START_SYSEX);
+		int read;
+		while ((read = read(inputStream)) != END_SYSEX) {
+			if (read < 0 || isCommand(read)) {
+				pushedBack = read;
+				return null;
+			}
+			if (sysex.size() > MAX_SYSEX_LENGTH) {
+				return null;
+			}
+			sysex.write(read);
+		}
+		sysex.write(END_SYSEX);
+		return sysex.toByteArray();
+	}
+
+	private int readData(InputStream inputStream) throws IOException {
+		int read = read(inputStream);
+		if (read < 0 || isCommand(read)) {
+			pushedBack = read;
+			return UNKNOWN;
+		}
+		return read;
+	}
+
+	private int read(InputStream inputStream) throws IOException {
+		if (pushedBack != UNKNOWN) {
+			int read = pushedBack;
+			pushedBack = UNKNOWN;
+			return read;
+		}
+		return inputStream.read();
+	}
+
+	private static int dataLength(int command) {
+		switch (command & 0xF0) {
+		case DIGITAL_MESSAGE:
+		case ANALOG_MESSAGE:
+			return 2;
+		case REPORT_ANALOG:
+		case REPORT_DIGITAL:
+			return 1;
+		default:
+			return command == SET_PIN_MODE || command == SET_DIGITAL_PIN_VALUE
+					|| command == REPORT_VERSION ? 2 : 0;
+		}
+	}
+
+	private void setPinMode(ByteArrayOutputStream out, int pinNum, int mode) {
+		if (pinModes[pinNum] != mode) {
+			out.write(SET_PIN_MODE);
+			out.write(pinNum);
+			out.write(mode);
+			pinModes[pinNum] = mode;
+		}
+	}
+
+	private static byte[] sysex(int command, String string) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(START_SYSEX);
+		out.write(command);
+		// each byte is sent as two 7 bit bytes
+		for (byte b : string.getBytes(UTF8)) {
+			write14Bit(out, b & 0xFF);
+		}
+		out.write(END_SYSEX);
+		return out.toByteArray();
+	}
+
+	private static void write14Bit(ByteArrayOutputStream out, int value) {
+		out.write(value & 0x7F);
+		out.write((value >> 7) & 0x7F);
+	}
+
+	private static int read14Bit(byte[] bytes, int offset) {
+		return (bytes[offset] & 0x7F) | (bytes[offset + 1] & 0x7F) << 7;
+	}
+
+	private static boolean isCommand(int b) {
+		return (b & 0x80) != 0;
+	}
+
+	private static int channel(Pin pin) {
+		int channel = pin.pinNum();
+		checkArgument(channel >= 0 && channel < 16,
+				"Analog channel must be in range 0-15 but was %s", channel);
+		return channel;
+	}
+
+	private static int checkPin(int pinNum) {
+		checkArgument(pinNum >= 0 && pinNum < PINS,
+				"Pin must be in range 0-%s but was %s", PINS - 1, pinNum);
+		return pinNum;
+	}
+
+	private static int bit(int pinNum) {
+		return 1 << (pinNum % 8);
+	}
+
+	private static int[] filled(int[] array, int value) {
+		Arrays.fill(array, value);
+		return array;
+	}
+
+}
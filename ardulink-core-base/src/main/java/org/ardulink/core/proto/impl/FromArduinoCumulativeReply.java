@@ -0,0 +1,72 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.proto.impl;
+
+import java.util.Arrays;
+
+import org.ardulink.core.proto.api.Protocol.FromArduino;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Reply to all messages up to (and including) the message with id
+ * {@link #getUpToId()}. The ids of messages that failed are listed
+ * explicitly, all others have the status {@link #isOk()}.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class FromArduinoCumulativeReply implements FromArduino {
+
+	private final boolean ok;
+	private final long upToId;
+	private final long[] nackIds;
+
+	public FromArduinoCumulativeReply(boolean ok, long upToId, long... nackIds) {
+		this.ok = ok;
+		this.upToId = upToId;
+		this.nackIds = nackIds.clone();
+		Arrays.sort(this.nackIds);
+	}
+
+	public boolean isOk() {
+		return ok;
+	}
+
+	public long getUpToId() {
+		return upToId;
+	}
+
+	public long[] getNackIds() {
+		return nackIds.clone();
+	}
+
+	/**
+	 * Returns the status of the message with the passed id.
+	 * 
+	 * @param id
+	 *            the message id, has to be less or equal to
+	 *            {@link #getUpToId()}
+	 * @return <code>true</code> if the message was replied ok
+	 */
+	public boolean isOk(long id) {
+		return ok && Arrays.binarySearch(nackIds, id) < 0;
+	}
+
+}
@@ -16,7 +16,12 @@ limitations under the License.
 
 package org.ardulink.core.proto.impl;
 
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.util.Preconditions.checkArgument;
+
 import org.ardulink.core.Pin;
+import org.ardulink.core.Pin.AnalogPin;
+import org.ardulink.core.Pin.DigitalPin;
 import org.ardulink.core.proto.api.Protocol.FromArduino;
 
 /**
@@ -30,19 +35,61 @@ import org.ardulink.core.proto.api.Protocol.FromArduino;
 public class FromArduinoPinStateChanged implements FromArduino {
 
 	private final Pin pin;
-	private final Object value;
+	private final int intValue;
+	private final boolean booleanValue;
+	private Object value;
 
 	public FromArduinoPinStateChanged(Pin pin, Object value) {
+		checkArgument(pin.is(ANALOG) ? value instanceof Integer
+				: value instanceof Boolean, "Illegal value %s for pin %s",
+				value, pin);
 		this.pin = pin;
 		this.value = value;
+		this.intValue = value instanceof Integer ? (Integer) value : 0;
+		this.booleanValue = Boolean.TRUE.equals(value);
+	}
+
+	public FromArduinoPinStateChanged(AnalogPin pin, int value) {
+		this.pin = pin;
+		this.intValue = value;
+		this.booleanValue = false;
+	}
+
+	public FromArduinoPinStateChanged(DigitalPin pin, boolean value) {
+		this.pin = pin;
+		this.intValue = 0;
+		this.booleanValue = value;
 	}
 
 	public Pin getPin() {
 		return this.pin;
 	}
 
+	/**
+	 * Returns the value (boxed on first call if this message was created
+	 * using a primitive value).
+	 */
 	public Object getValue() {
-		return this.value;
+		Object locValue = this.value;
+		if (locValue == null) {
+			locValue = this.value = pin.is(ANALOG) ? Integer
+					.valueOf(intValue) : Boolean.valueOf(booleanValue);
+		}
+		return locValue;
+	}
+
+	/**
+	 * Returns the value of an analog pin without boxing.
+	 */
+	public int intValue() {
+		return intValue;
+	}
+
+	/**
+	 * Returns the value of a digital pin without boxing.
+	 */
+	public boolean booleanValue() {
+		return booleanValue;
 	}
 
 }
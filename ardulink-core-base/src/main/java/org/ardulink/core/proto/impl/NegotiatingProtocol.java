@@ -0,0 +1,369 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+ */
+package org.ardulink.core.proto.impl;
+
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkState;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.ardulink.core.proto.api.Detectable;
+import org.ardulink.core.proto.api.FrameReader;
+import org.ardulink.core.proto.api.Protocol;
+import org.ardulink.core.proto.api.ToArduinoCustomMessage;
+import org.ardulink.core.proto.api.ToArduinoKeyPressEvent;
+import org.ardulink.core.proto.api.ToArduinoNoTone;
+import org.ardulink.core.proto.api.ToArduinoPinEvent;
+import org.ardulink.core.proto.api.ToArduinoStartListening;
+import org.ardulink.core.proto.api.ToArduinoStopListening;
+import org.ardulink.core.proto.api.ToArduinoTone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Detects the protocol the arduino speaks by sniffing the frames it sends and
+ * from then on delegates to that protocol. The candidates are checked in the
+ * order passed, so the densest protocol should come first. By default these
+ * are {@link ArdulinkBinaryProtocol}, {@link FirmataProtocol} and
+ * {@link ArdulinkProtocol2}.
+ * <p>
+ * As long as no protocol has been detected messages are encoded by the last
+ * candidate which should be the most compatible one. The default fallback
+ * {@link ArdulinkProtocol2} is safe to send: its ASCII frames are ignored by
+ * binary and Firmata firmware while the Ardulink sketch responds to the ping
+ * sent by
+ * {@link org.ardulink.core.AbstractConnectionBasedLink#waitForArduinoToBoot(int, java.util.concurrent.TimeUnit)}
+ * so it acts as a probe. Binary and Firmata firmware are detected by the
+ * ready/version message they send when booting.
+ * <p>
+ * Since the detected protocol is per connection each connection needs its own
+ * instance of this protocol.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class NegotiatingProtocol implements Protocol, FrameReader {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(NegotiatingProtocol.class);
+
+	private interface Encoder {
+		byte[] encode(Protocol protocol);
+	}
+
+	/**
+	 * The number of bytes a candidate may read while probing a frame, enough
+	 * for the largest {@link ArdulinkBinaryProtocol} frame.
+	 */
+	private static final int PROBE_LIMIT = ArdulinkBinaryProtocol.MAX_FRAME_LENGTH + 16;
+
+	private final byte[] separator = new byte[0];
+	private final List<Protocol> candidates;
+	private final Protocol fallback;
+	private volatile Protocol detected;
+
+	public NegotiatingProtocol() {
+		this(new ArdulinkBinaryProtocol(), new FirmataProtocol(),
+				new ArdulinkProtocol2());
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param candidates
+	 *            the protocols to detect in the order of preference. Each one
+	 *            has to be {@link Detectable} and must either be a
+	 *            {@link FrameReader} or have a separator.
+	 */
+	public NegotiatingProtocol(Protocol... candidates) {
+		checkArgument(candidates.length > 0, "No candidates given");
+		for (Protocol candidate : candidates) {
+			checkArgument(candidate instanceof Detectable,
+					"%s is not detectable", candidate.getName());
+			checkArgument(candidate instanceof FrameReader
+					|| candidate.getSeparator().length > 0,
+					"%s can neither read frames nor has a separator",
+					candidate.getName());
+		}
+		this.candidates = Collections.unmodifiableList(Arrays
+				.asList(candidates));
+		this.fallback = candidates[candidates.length - 1];
+	}
+
+	@Override
+	public String getName() {
+		return "auto";
+	}
+
+	/**
+	 * Returns the separator of the detected protocol or an empty array if no
+	 * protocol has been detected (yet).
+	 */
+	@Override
+	public byte[] getSeparator() {
+		Protocol protocol = detected;
+		return protocol == null ? separator : protocol.getSeparator();
+	}
+
+	/**
+	 * Returns the protocol detected.
+	 *
+	 * @return the detected protocol or <code>null</code> if the arduino did
+	 *         not send any frame that could be recognized (yet)
+	 */
+	public Protocol getDetected() {
+		return detected;
+	}
+
+	public List<Protocol> getCandidates() {
+		return candidates;
+	}
+
+	@Override
+	public byte[] toArduino(final ToArduinoStartListening startListeningEvent) {
+		return encode(new Encoder() {
+			@Override
+			public byte[] encode(Protocol protocol) {
+				return protocol.toArduino(startListeningEvent);
+			}
+		});
+	}
+
+	@Override
+	public byte[] toArduino(final ToArduinoStopListening stopListeningEvent) {
+		return encode(new Encoder() {
+			@Override
+			public byte[] encode(Protocol protocol) {
+				return protocol.toArduino(stopListeningEvent);
+			}
+		});
+	}
+
+	@Override
+	public byte[] toArduino(final ToArduinoPinEvent pinEvent) {
+		return encode(new Encoder() {
+			@Override
+			public byte[] encode(Protocol protocol) {
+				return protocol.toArduino(pinEvent);
+			}
+		});
+	}
+
+	@Override
+	public byte[] toArduino(final ToArduinoKeyPressEvent charEvent) {
+		return encode(new Encoder() {
+			@Override
+			public byte[] encode(Protocol protocol) {
+				return protocol.toArduino(charEvent);
+			}
+		});
+	}
+
+	@Override
+	public byte[] toArduino(final ToArduinoTone tone) {
+		return encode(new Encoder() {
+			@Override
+			public byte[] encode(Protocol protocol) {
+				return protocol.toArduino(tone);
+			}
+		});
+	}
+
+	@Override
+	public byte[] toArduino(final ToArduinoNoTone noTone) {
+		return encode(new Encoder() {
+			@Override
+			public byte[] encode(Protocol protocol) {
+				return protocol.toArduino(noTone);
+			}
+		});
+	}
+
+	@Override
+	public byte[] toArduino(final ToArduinoCustomMessage customMessage) {
+		return encode(new Encoder() {
+			@Override
+			public byte[] encode(Protocol protocol) {
+				return protocol.toArduino(customMessage);
+			}
+		});
+	}
+
+	/**
+	 * Until a protocol is detected bytes are skipped until one of the
+	 * candidates recognizes the start of a frame. The candidate may read at
+	 * most {@link #PROBE_LIMIT} bytes. If the frame read by the candidate can
+	 * be decoded the candidate becomes the detected protocol, otherwise the
+	 * stream is reset and sniffing continues with the byte after the frame
+	 * start, so a stray byte cannot swallow the frames that follow.
+	 */
+	@Override
+	public byte[] readFrame(InputStream inputStream) throws IOException {
+		Protocol protocol = detected;
+		if (protocol != null) {
+			return readFrame(protocol, inputStream);
+		}
+		checkState(inputStream.markSupported(),
+				"Stream has to support mark/reset");
+		while (true) {
+			inputStream.mark(PROBE_LIMIT);
+			int read = inputStream.read();
+			if (read < 0) {
+				return null;
+			}
+			Protocol candidate = candidateFor(read);
+			if (candidate != null) {
+				inputStream.reset();
+				byte[] frame = readFrame(candidate, new BoundedInputStream(
+						inputStream, PROBE_LIMIT));
+				if (frame != null
+						&& ((Detectable) candidate).accepts(frame)) {
+					logger.info("Detected protocol {}", candidate.getName());
+					detected = candidate;
+					return frame;
+				}
+				logger.debug("{} cannot decode {}", candidate.getName(), frame);
+				((Detectable) candidate).discardBuffered();
+				inputStream.reset();
+				inputStream.read();
+			}
+		}
+	}
+
+	@Override
+	public FromArduino fromArduino(byte[] bytes) {
+		Protocol protocol = detected;
+		checkState(protocol != null, "No protocol detected yet");
+		return protocol.fromArduino(bytes);
+	}
+
+	private byte[] encode(Encoder encoder) {
+		Protocol protocol = detected;
+		return encoder.encode(protocol == null ? fallback : protocol);
+	}
+
+	private Protocol candidateFor(int read) {
+		for (Protocol candidate : candidates) {
+			if (((Detectable) candidate).isFrameStart(read)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	private static byte[] readFrame(Protocol protocol, InputStream inputStream)
+			throws IOException {
+		return protocol instanceof FrameReader ? ((FrameReader) protocol)
+				.readFrame(inputStream) : readUntil(inputStream,
+				protocol.getSeparator());
+	}
+
+	private static byte[] readUntil(InputStream inputStream, byte[] separator)
+			throws IOException {
+		byte[] frame = new byte[64];
+		int length = 0;
+		int read;
+		while ((read = inputStream.read()) >= 0) {
+			if (length == frame.length) {
+				frame = Arrays.copyOf(frame, length * 2);
+			}
+			frame[length++] = (byte) read;
+			if (endsWith(frame, length, separator)) {
+				return Arrays.copyOf(frame, length - separator.length);
+			}
+		}
+		return null;
+	}
+
+	private static boolean endsWith(byte[] bytes, int length, byte[] suffix) {
+		if (length < suffix.length) {
+			return false;
+		}
+		for (int i = 0, offset = length - suffix.length; i < suffix.length; i++) {
+			if (bytes[offset + i] != suffix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Ends after a given number of bytes so a candidate probing a frame cannot
+	 * read beyond the mark of the underlying stream.
+	 */
+	private static class BoundedInputStream extends FilterInputStream {
+
+		private int remaining;
+
+		BoundedInputStream(InputStream inputStream, int limit) {
+			super(inputStream);
+			this.remaining = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int read = super.read();
+			if (read >= 0) {
+				remaining--;
+			}
+			return read;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int read = super.read(b, off, Math.min(len, remaining));
+			if (read > 0) {
+				remaining -= read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return Math.min(super.available(), remaining);
+		}
+
+		@Override
+		public void close() {
+			// the underlying stream stays open
+		}
+
+	}
+
+}
@@ -1,31 +1,14 @@
-/**
-Copyright 2013 project Ardulink http://www.ardulink.org/
- 
-Licensed under the Apache License, Version 2.0 (the "License");
-you may not use this file except in compliance with the License.
-You may obtain a copy of the License at
- 
-    http://www.apache.org/licenses/LICENSE-2.0
- 
-Unless required by applicable law or agreed to in writing, software
-distributed under the License is distributed on an "AS IS" BASIS,
-WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
-See the License for the specific language governing permissions and
-limitations under the License.
-*/
-
 package org.ardulink.core.qos;
 
-import static org.ardulink.core.proto.api.MessageIdHolders.addMessageId;
 import static java.util.concurrent.TimeUnit.SECONDS;
-import static org.ardulink.util.Preconditions.checkNotNull;
-import static org.ardulink.util.Preconditions.checkState;
+import static org.ardulink.core.proto.api.MessageIdHolders.addMessageId;
+import static org.ardulink.util.Throwables.propagate;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +19,9 @@ import org.ardulink.core.Pin;
 import org.ardulink.core.Pin.AnalogPin;
 import org.ardulink.core.Pin.DigitalPin;
 import org.ardulink.core.Tone;
+import org.ardulink.core.async.AsyncLink;
+import org.ardulink.core.async.ReplyFuture;
+import org.ardulink.core.events.DefaultRplyEvent;
 import org.ardulink.core.events.RplyEvent;
 import org.ardulink.core.events.RplyListener;
 import org.ardulink.core.proto.api.Protocol;
@@ -46,12 +32,31 @@ import org.ardulink.core.proto.impl.DefaultToArduinoPinEvent;
 import org.ardulink.core.proto.impl.DefaultToArduinoStartListening;
 import org.ardulink.core.proto.impl.DefaultToArduinoStopListening;
 import org.ardulink.core.proto.impl.DefaultToArduinoTone;
+import org.ardulink.core.proto.impl.FromArduinoCumulativeReply;
 
 /**
  * [ardulinktitle] [ardulinkversion]
- * Arduino sends ok/ko messages directly after receiving the work message. So
- * there is no need for a queue because if the next message read is not the
- * ok/ko response it never will arrive.
+ * Each message is sent with a message id and the arduino has to respond with
+ * an ok/ko message carrying that id. Up to <code>windowSize</code> messages
+ * can be in flight, replies are matched by their id so they can arrive in any
+ * order. With a window size of one (the default) this is strict stop-and-wait.
+ * <p>
+ * The methods of {@link org.ardulink.core.Link} block until the message has
+ * been replied, so a window larger than one pays off for concurrent callers or
+ * callers using {@link #async()} which only blocks while the window is full.
+ * <p>
+ * Optionally messages not replied within a timeout adapting to the measured
+ * round trip times are retransmitted.
+ * <p>
+ * The arduino may confirm several messages by one cumulative reply (see
+ * {@link FromArduinoCumulativeReply}). Each message in flight covered by such
+ * a reply is reported to the {@link RplyListener}s by its own event.
+ * <p>
+ * This link has no {@link org.ardulink.core.OutboundQueue}: each message is
+ * written to the connection by the thread sending it, in the order the
+ * messages are sent. Messages are never conflated since each one carries its
+ * own id awaiting a reply, and the window already bounds the number of
+ * messages pending.
  * 
  * project Ardulink http://www.ardulink.org/
  * 
@@ -62,13 +67,21 @@ public class ConnectionBasedQosLink extends AbstractConnectionBasedLink {
 	private static final Logger logger = LoggerFactory
 			.getLogger(ConnectionBasedQosLink.class);
 
-	private static long messageCounter;
-	private final Lock lock = new ReentrantLock(false);
-	private final Condition condition = lock.newCondition();
-	private RplyEvent event;
+	private abstract static class Message {
+
+		public abstract byte[] encode(long messageId);
+
+		/**
+		 * Returns whether the arduino can process this message twice without
+		 * harm. Only these messages are retransmitted.
+		 */
+		boolean isIdempotent() {
+			return true;
+		}
+
+	}
 
-	private final long timeout;
-	private final TimeUnit timeUnit;
+	private final InFlightMessages inFlight;
 
 	public ConnectionBasedQosLink(Connection connection, Protocol protocol)
 			throws IOException {
@@ -77,152 +90,367 @@ public class ConnectionBasedQosLink extends AbstractConnectionBasedLink {
 
 	public ConnectionBasedQosLink(Connection connection, Protocol protocol,
 			int timeout, TimeUnit timeUnit) throws IOException {
+		this(connection, protocol, timeout, timeUnit, 1);
+	}
+
+	/**
+	 * Creates a link having up to <code>windowSize</code> messages in flight.
+	 * 
+	 * @param timeout
+	 *            the time to wait for the reply of each message
+	 * @param windowSize
+	 *            the maximum number of messages not replied yet,
+	 *            <code>1</code> for stop-and-wait
+	 */
+	public ConnectionBasedQosLink(Connection connection, Protocol protocol,
+			long timeout, TimeUnit timeUnit, int windowSize)
+			throws IOException {
+		this(connection, protocol, timeout, timeUnit, windowSize, 0);
+	}
+
+	/**
+	 * Creates a link retransmitting messages not replied within the
+	 * retransmission timeout. The retransmission timeout is computed from the
+	 * round trip times measured (smoothed round trip time plus four times its
+	 * variation), doubled on each retry and kept until the next round trip
+	 * time is measured. Messages are retransmitted with the same id. Key
+	 * presses, tones and custom messages are never retransmitted since the
+	 * arduino would process them twice if only their reply got lost.
+	 * 
+	 * @param timeout
+	 *            the time to wait for the reply of each message including
+	 *            all retries
+	 * @param windowSize
+	 *            the maximum number of messages not replied yet,
+	 *            <code>1</code> for stop-and-wait
+	 * @param maxRetries
+	 *            the maximum number of retransmissions of a message,
+	 *            <code>0</code> to never retransmit
+	 */
+	public ConnectionBasedQosLink(Connection connection, Protocol protocol,
+			long timeout, TimeUnit timeUnit, int windowSize, int maxRetries)
+			throws IOException {
 		super(connection, protocol);
-		this.timeout = timeout;
-		this.timeUnit = timeUnit;
+		this.inFlight = new InFlightMessages(new InFlightMessages.Sender() {
+			@Override
+			public void send(byte[] bytes) throws IOException {
+				getConnection().write(bytes);
+			}
+		}, windowSize, maxRetries, timeout, timeUnit);
 		addRplyListener(new RplyListener() {
 			@Override
 			public void rplyReceived(RplyEvent event) {
 				logger.debug("Received {}", event.getId());
-				ConnectionBasedQosLink.this.event = event;
-				lock.lock();
-				try {
-					ConnectionBasedQosLink.this.condition.signal();
-				} finally {
-					ConnectionBasedQosLink.this.lock.unlock();
-				}
+				inFlight.replied(event);
 			}
 		});
 	}
 
+	@Override
+	protected void handleCumulativeReply(FromArduinoCumulativeReply reply) {
+		super.handleCumulativeReply(reply);
+		for (long messageId : inFlight.pendingUpTo(reply.getUpToId())) {
+			fireReplyReceived(new DefaultRplyEvent(reply.isOk(messageId),
+					messageId));
+		}
+	}
+
+	public int getWindowSize() {
+		return inFlight.getWindowSize();
+	}
+
+	public int getMaxRetries() {
+		return inFlight.getMaxRetries();
+	}
+
+	/**
+	 * Returns the number of retransmissions since this link was created.
+	 * 
+	 * @return number of messages sent again
+	 */
+	public long getRetransmissionCount() {
+		return inFlight.getRetransmissionCount();
+	}
+
+	/**
+	 * Returns the smoothed round trip time of the messages replied.
+	 * 
+	 * @return smoothed round trip time or <code>0</code> if no message has
+	 *         been replied yet
+	 */
+	public long getSmoothedRtt(TimeUnit timeUnit) {
+		return inFlight.getRttEstimator().getSmoothedRtt(timeUnit);
+	}
+
+	/**
+	 * Returns the time waited for a reply before a message is retransmitted
+	 * (for the first time).
+	 * 
+	 * @return the current retransmission timeout
+	 */
+	public long getRetransmissionTimeout(TimeUnit timeUnit) {
+		return inFlight.getRttEstimator().getTimeout(timeUnit);
+	}
+
+	/**
+	 * Returns the number of messages sent but not replied (yet).
+	 * 
+	 * @return number of messages in flight
+	 */
+	public int getInFlightCount() {
+		return inFlight.size();
+	}
+
+	/**
+	 * Returns a view on this link whose methods return as soon as the message
+	 * has been sent. The futures returned are completed by the replies. The
+	 * methods block while the window is full.
+	 * 
+	 * @return asynchronous view on this link
+	 */
+	public AsyncLink async() {
+		return new AsyncLink() {
+
+			@Override
+			public ReplyFuture startListening(Pin pin) {
+				return submitQuietly(startListeningMessage(pin));
+			}
+
+			@Override
+			public ReplyFuture stopListening(Pin pin) {
+				return submitQuietly(stopListeningMessage(pin));
+			}
+
+			@Override
+			public ReplyFuture switchAnalogPin(AnalogPin analogPin, int value) {
+				return submitQuietly(pinMessage(analogPin, value));
+			}
+
+			@Override
+			public ReplyFuture switchDigitalPin(DigitalPin digitalPin,
+					boolean value) {
+				return submitQuietly(pinMessage(digitalPin, value));
+			}
+
+			@Override
+			public ReplyFuture sendKeyPressEvent(char keychar, int keycode,
+					int keylocation, int keymodifiers, int keymodifiersex) {
+				return submitQuietly(keyPressMessage(keychar, keycode,
+						keylocation, keymodifiers, keymodifiersex));
+			}
+
+			@Override
+			public ReplyFuture sendTone(Tone tone) {
+				return submitQuietly(toneMessage(tone));
+			}
+
+			@Override
+			public ReplyFuture sendNoTone(AnalogPin analogPin) {
+				return submitQuietly(noToneMessage(analogPin));
+			}
+
+			@Override
+			public ReplyFuture sendCustomMessage(String... messages) {
+				return submitQuietly(customMessage(messages));
+			}
+
+			@Override
+			public void close() throws IOException {
+				// the link is closed by its owner
+			}
+
+		};
+	}
+
 	@Override
 	public void startListening(Pin pin) throws IOException {
 		logger.info("Starting listening on pin {}", pin);
-		synchronized (getConnection()) {
-			long messageId = nextId();
-			sendAndWait(
-					getProtocol().toArduino(
-							addMessageId(
-									new DefaultToArduinoStartListening(pin),
-									messageId)), messageId);
-		}
+		sendAndWait(startListeningMessage(pin));
 	}
 
 	@Override
 	public void stopListening(Pin pin) throws IOException {
-		synchronized (getConnection()) {
-			long messageId = nextId();
-			sendAndWait(
-					getProtocol().toArduino(
-							addMessageId(
-									new DefaultToArduinoStopListening(pin),
-									messageId)), messageId);
-		}
+		sendAndWait(stopListeningMessage(pin));
 		logger.info("Stopped listening on pin {}", pin);
 	}
 
 	@Override
 	public void switchAnalogPin(AnalogPin analogPin, int value)
 			throws IOException {
-		synchronized (getConnection()) {
-			long messageId = nextId();
-			sendAndWait(
-					getProtocol().toArduino(
-							addMessageId(new DefaultToArduinoPinEvent(
-									analogPin, value), messageId)), messageId);
-		}
+		sendAndWait(pinMessage(analogPin, value));
 	}
 
 	@Override
 	public void switchDigitalPin(DigitalPin digitalPin, boolean value)
 			throws IOException {
-		synchronized (getConnection()) {
-			long messageId = nextId();
-			sendAndWait(
-					getProtocol().toArduino(
-							addMessageId(new DefaultToArduinoPinEvent(
-									digitalPin, value), messageId)), messageId);
-		}
+		sendAndWait(pinMessage(digitalPin, value));
 	}
 
 	@Override
 	public void sendKeyPressEvent(char keychar, int keycode, int keylocation,
 			int keymodifiers, int keymodifiersex) throws IOException {
-		synchronized (getConnection()) {
-			long messageId = nextId();
-			sendAndWait(
-					getProtocol().toArduino(
-							addMessageId(new DefaultToArduinoKeyPressEvent(
-									keychar, keycode, keylocation,
-									keymodifiers, keymodifiersex), messageId)),
-					messageId);
-		}
+		sendAndWait(keyPressMessage(keychar, keycode, keylocation,
+				keymodifiers, keymodifiersex));
 	}
 
 	@Override
 	public void sendTone(Tone tone) throws IOException {
-		synchronized (getConnection()) {
-			long messageId = nextId();
-			sendAndWait(
-					getProtocol().toArduino(
-							addMessageId(new DefaultToArduinoTone(tone),
-									messageId)), messageId);
-		}
+		sendAndWait(toneMessage(tone));
 	}
 
 	@Override
 	public void sendNoTone(AnalogPin analogPin) throws IOException {
-		synchronized (getConnection()) {
-			long messageId = nextId();
-			sendAndWait(
-					getProtocol().toArduino(
-							addMessageId(new DefaultToArduinoNoTone(analogPin),
-									messageId)), messageId);
-		}
+		sendAndWait(noToneMessage(analogPin));
 	}
 
 	@Override
 	public void sendCustomMessage(String... messages) throws IOException {
-		synchronized (getConnection()) {
-			long messageId = nextId();
-			sendAndWait(
-					getProtocol().toArduino(
-							addMessageId(new DefaultToArduinoCustomMessage(
-									messages), messageId)), messageId);
-		}
+		sendAndWait(customMessage(messages));
+	}
+
+	@Override
+	public void close() throws IOException {
+		inFlight.cancelAll();
+		super.close();
+	}
+
+	private Message startListeningMessage(final Pin pin) {
+		return new Message() {
+			@Override
+			public byte[] encode(long messageId) {
+				return getProtocol().toArduino(
+						addMessageId(new DefaultToArduinoStartListening(pin),
+								messageId));
+			}
+		};
+	}
+
+	private Message stopListeningMessage(final Pin pin) {
+		return new Message() {
+			@Override
+			public byte[] encode(long messageId) {
+				return getProtocol().toArduino(
+						addMessageId(new DefaultToArduinoStopListening(pin),
+								messageId));
+			}
+		};
+	}
+
+	private Message pinMessage(final AnalogPin analogPin, final int value) {
+		return new Message() {
+			@Override
+			public byte[] encode(long messageId) {
+				return getProtocol().toArduino(
+						addMessageId(new DefaultToArduinoPinEvent(analogPin,
+								value), messageId));
+			}
+		};
+	}
+
+	private Message pinMessage(final DigitalPin digitalPin, final boolean value) {
+		return new Message() {
+			@Override
+			public byte[] encode(long messageId) {
+				return getProtocol().toArduino(
+						addMessageId(new DefaultToArduinoPinEvent(digitalPin,
+								value), messageId));
+			}
+		};
+	}
+
+	private Message keyPressMessage(final char keychar, final int keycode,
+			final int keylocation, final int keymodifiers,
+			final int keymodifiersex) {
+		return new Message() {
+			@Override
+			public byte[] encode(long messageId) {
+				return getProtocol().toArduino(
+						addMessageId(new DefaultToArduinoKeyPressEvent(
+								keychar, keycode, keylocation, keymodifiers,
+								keymodifiersex), messageId));
+			}
+
+			@Override
+			boolean isIdempotent() {
+				return false;
+			}
+		};
+	}
+
+	private Message toneMessage(final Tone tone) {
+		return new Message() {
+			@Override
+			public byte[] encode(long messageId) {
+				return getProtocol().toArduino(
+						addMessageId(new DefaultToArduinoTone(tone), messageId));
+			}
+
+			@Override
+			boolean isIdempotent() {
+				return false;
+			}
+		};
 	}
 
-	private void sendAndWait(byte[] bytes, long messageId) throws IOException {
-		getConnection().write(bytes);
-		waitFor(messageId);
+	private Message noToneMessage(final AnalogPin analogPin) {
+		return new Message() {
+			@Override
+			public byte[] encode(long messageId) {
+				return getProtocol().toArduino(
+						addMessageId(new DefaultToArduinoNoTone(analogPin),
+								messageId));
+			}
+		};
 	}
 
-	private long nextId() {
-		return ++messageCounter;
+	private Message customMessage(final String... messages) {
+		return new Message() {
+			@Override
+			public byte[] encode(long messageId) {
+				return getProtocol().toArduino(
+						addMessageId(new DefaultToArduinoCustomMessage(
+								messages), messageId));
+			}
+
+			@Override
+			boolean isIdempotent() {
+				return false;
+			}
+		};
 	}
 
-	// TODO register a listener that interrupts if ANY other message received in
-	// the meanwhile
-	private void waitFor(long idToWaitFor) {
-		lock.lock();
+	private ReplyFuture submit(Message message) throws IOException {
+		long messageId = nextMessageId();
+		return inFlight.send(messageId, message.encode(messageId),
+				message.isIdempotent());
+	}
+
+	private ReplyFuture submitQuietly(Message message) {
 		try {
-			logger.debug("Wait for {}", idToWaitFor);
-			try {
-				checkState(
-						condition.await(timeout, timeUnit),
-						"No response received while waiting for messageId %s within %s %s",
-						idToWaitFor, timeout, timeUnit);
-				long idReceived = checkNotNull(event,
-						"No event received but condition signalled").getId();
-				checkState(idReceived == idToWaitFor,
-						"Waited for %s but got %s", idToWaitFor, idReceived);
-				checkState(event.isOk(), "Response status is not ok");
-				logger.debug("Condition wait {}", idReceived);
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-			}
-		} finally {
-			lock.unlock();
+			return submit(message);
+		} catch (IOException e) {
+			ReplyFuture future = new ReplyFuture();
+			future.fail(e);
+			return future;
+		}
+	}
+
+	private void sendAndWait(Message message) throws IOException {
+		ReplyFuture future = submit(message);
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for reply");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof TimeoutException) {
+				throw new IllegalStateException(cause.getMessage(), cause);
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw propagate(cause);
 		}
 	}
 
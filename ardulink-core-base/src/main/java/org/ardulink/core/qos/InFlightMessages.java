@@ -0,0 +1,274 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.qos;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Threads.daemonThreadFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ardulink.core.async.ReplyFuture;
+import org.ardulink.core.events.RplyEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * The messages sent by a {@link ConnectionBasedQosLink} not replied yet. At
+ * most <code>windowSize</code> messages can be in flight, sending further
+ * messages blocks until a reply has been received or a message timed out.
+ * Replies are matched by their id so they can arrive in any order.
+ * <p>
+ * Retransmittable messages not replied within the retransmission timeout
+ * estimated by an {@link RttEstimator} are sent again (with the same id) up to
+ * <code>maxRetries</code> times, backing off the timeout on each retry.
+ * <p>
+ * Timeouts and retransmissions are scheduled on a timer thread of each
+ * instance, so a retransmission blocked by a stalled connection does not delay
+ * the messages of other links.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+class InFlightMessages {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(InFlightMessages.class);
+
+	interface Sender {
+		void send(byte[] bytes) throws IOException;
+	}
+
+	private class Message {
+
+		private final long messageId;
+		private final byte[] bytes;
+		private final boolean retransmittable;
+		private final ReplyFuture future = new ReplyFuture();
+		private volatile long sentAt;
+		private volatile boolean retransmitted;
+		private volatile ScheduledFuture<?> timer;
+		private int retries;
+
+		Message(long messageId, byte[] bytes, boolean retransmittable) {
+			this.messageId = messageId;
+			this.bytes = bytes;
+			this.retransmittable = retransmittable;
+		}
+
+		void transmit() throws IOException {
+			sentAt = System.nanoTime();
+			sender.send(bytes);
+			if (retransmittable && retries < maxRetries) {
+				timer = timers.schedule(new Runnable() {
+					@Override
+					public void run() {
+						retransmit();
+					}
+				}, Math.min(retransmissionTimeout(), timeUnit.toNanos(timeout)),
+						NANOSECONDS);
+			}
+		}
+
+		void retransmit() {
+			if (future.isDone()) {
+				return;
+			}
+			rttEstimator.backOff();
+			retries++;
+			retransmitted = true;
+			retransmissions.incrementAndGet();
+			logger.debug("Retransmitting messageId {} ({}. retry)", messageId,
+					retries);
+			try {
+				transmit();
+			} catch (IOException e) {
+				future.fail(e);
+			}
+		}
+
+		void cancelTimer() {
+			ScheduledFuture<?> locTimer = timer;
+			if (locTimer != null) {
+				locTimer.cancel(false);
+			}
+		}
+
+	}
+
+	private final Sender sender;
+	private final int windowSize;
+	private final int maxRetries;
+	private final Semaphore window;
+	private final long timeout;
+	private final TimeUnit timeUnit;
+	private final RttEstimator rttEstimator;
+	private final AtomicLong retransmissions = new AtomicLong();
+	private final ConcurrentNavigableMap<Long, Message> pending = new ConcurrentSkipListMap<Long, Message>();
+	private final ScheduledExecutorService timers = Executors
+			.newSingleThreadScheduledExecutor(daemonThreadFactory());
+
+	InFlightMessages(Sender sender, int windowSize, int maxRetries,
+			long timeout, TimeUnit timeUnit) {
+		checkArgument(windowSize > 0, "windowSize must be positive but was %s",
+				windowSize);
+		checkArgument(maxRetries >= 0,
+				"maxRetries must not be negative but was %s", maxRetries);
+		this.sender = sender;
+		this.windowSize = windowSize;
+		this.maxRetries = maxRetries;
+		this.window = new Semaphore(windowSize, true);
+		this.timeout = timeout;
+		this.timeUnit = timeUnit;
+		this.rttEstimator = new RttEstimator(timeout, timeUnit);
+	}
+
+	/**
+	 * Sends a message waiting for a free slot if the window is full.
+	 * 
+	 * @param messageId
+	 *            the id of the message
+	 * @param bytes
+	 *            the message including its id
+	 * @param retransmittable
+	 *            whether the message may be retransmitted if its reply is
+	 *            missing, only idempotent messages should be
+	 * @return the future completed by the message's reply
+	 * @throws InterruptedIOException
+	 *             if interrupted while waiting for a free slot
+	 * @throws IOException
+	 *             if sending the message failed
+	 */
+	ReplyFuture send(final long messageId, byte[] bytes,
+			boolean retransmittable) throws IOException {
+		try {
+			window.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"Interrupted while waiting to send messageId " + messageId);
+		}
+		final Message message = new Message(messageId, bytes, retransmittable);
+		final ReplyFuture future = message.future;
+		final ScheduledFuture<?> deadline = timers.schedule(new Runnable() {
+			@Override
+			public void run() {
+				future.fail(new TimeoutException(
+						String.format(
+								"No response received while waiting for messageId %s within %s %s",
+								messageId, timeout, timeUnit)));
+			}
+		}, timeout, timeUnit);
+		// register before transmitting, otherwise a fast reply could arrive
+		// before the message is pending and would be dropped
+		pending.put(messageId, message);
+		future.addCallback(new ReplyFuture.Callback() {
+			@Override
+			public void done(ReplyFuture future) {
+				deadline.cancel(false);
+				message.cancelTimer();
+				pending.remove(messageId, message);
+				window.release();
+			}
+		});
+		try {
+			message.transmit();
+		} catch (IOException e) {
+			future.fail(e);
+			throw e;
+		}
+		return future;
+	}
+
+	void replied(RplyEvent event) {
+		Message message = pending.remove(event.getId());
+		if (message == null) {
+			logger.debug("Received reply for unknown messageId {}",
+					event.getId());
+			return;
+		}
+		if (!message.retransmitted) {
+			rttEstimator.sample(System.nanoTime() - message.sentAt,
+					NANOSECONDS);
+		}
+		if (event.isOk()) {
+			message.future.complete(event);
+		} else {
+			message.future.fail(new IllegalStateException(
+					"Response status is not ok"));
+		}
+	}
+
+	/**
+	 * Returns the ids of the messages not replied yet whose id is less or
+	 * equal to the passed one in ascending order.
+	 */
+	List<Long> pendingUpTo(long messageId) {
+		return new ArrayList<Long>(pending.headMap(messageId, true).keySet());
+	}
+
+	private long retransmissionTimeout() {
+		return rttEstimator.getTimeout(NANOSECONDS);
+	}
+
+	int getWindowSize() {
+		return windowSize;
+	}
+
+	int getMaxRetries() {
+		return maxRetries;
+	}
+
+	long getRetransmissionCount() {
+		return retransmissions.get();
+	}
+
+	RttEstimator getRttEstimator() {
+		return rttEstimator;
+	}
+
+	int size() {
+		return pending.size();
+	}
+
+	/**
+	 * Cancels the messages in flight and stops the timer thread.
+	 */
+	void cancelAll() {
+		for (Message message : pending.values()) {
+			message.future.cancel(false);
+		}
+		timers.shutdownNow();
+	}
+
+}
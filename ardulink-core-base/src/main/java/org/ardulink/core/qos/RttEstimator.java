@@ -0,0 +1,93 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.qos;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Estimates the retransmission timeout from measured round trip times like
+ * TCP does (RFC 6298): the timeout is the smoothed round trip time plus four
+ * times its variation, bounded by a minimum and a maximum. Each time a
+ * retransmission timer expires the timeout is doubled (backed off) and kept
+ * until the next round trip time is measured.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+class RttEstimator {
+
+	private static final long MIN_TIMEOUT = MILLISECONDS.toNanos(10);
+	private static final long INITIAL_TIMEOUT = SECONDS.toNanos(1);
+
+	private final long maxTimeout;
+	private long smoothed = -1;
+	private long variation;
+	private long backedOff = -1;
+
+	RttEstimator(long maxTimeout, TimeUnit timeUnit) {
+		this.maxTimeout = Math.max(MIN_TIMEOUT, timeUnit.toNanos(maxTimeout));
+	}
+
+	/**
+	 * Adds a measured round trip time. Round trips of retransmitted messages
+	 * must not be sampled since it is unknown which transmission was replied.
+	 */
+	synchronized void sample(long rtt, TimeUnit timeUnit) {
+		long nanos = timeUnit.toNanos(rtt);
+		backedOff = -1;
+		if (smoothed < 0) {
+			smoothed = nanos;
+			variation = nanos / 2;
+		} else {
+			variation = (3 * variation + Math.abs(smoothed - nanos)) / 4;
+			smoothed = (7 * smoothed + nanos) / 8;
+		}
+	}
+
+	synchronized long getSmoothedRtt(TimeUnit timeUnit) {
+		return timeUnit.convert(Math.max(smoothed, 0), NANOSECONDS);
+	}
+
+	/**
+	 * Doubles the timeout, called when a retransmission timer expired.
+	 */
+	synchronized void backOff() {
+		backedOff = Math.min(maxTimeout, 2 * timeout());
+	}
+
+	synchronized long getTimeout(TimeUnit timeUnit) {
+		return timeUnit.convert(timeout(), NANOSECONDS);
+	}
+
+	private long timeout() {
+		if (backedOff >= 0) {
+			return backedOff;
+		}
+		long timeout = smoothed < 0 ? INITIAL_TIMEOUT : smoothed + 4
+				* variation;
+		return Math.min(maxTimeout, Math.max(MIN_TIMEOUT, timeout));
+	}
+
+}
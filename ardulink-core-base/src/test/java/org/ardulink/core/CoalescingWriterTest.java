@@ -0,0 +1,214 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class CoalescingWriterTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(5, SECONDS);
+
+	private static class CountingOutputStream extends ByteArrayOutputStream {
+
+		private final CountDownLatch firstWriteReleased;
+		private int flushes;
+
+		CountingOutputStream(CountDownLatch firstWriteReleased) {
+			this.firstWriteReleased = firstWriteReleased;
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			try {
+				firstWriteReleased.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			super.write(b, off, len);
+		}
+
+		@Override
+		public synchronized void flush() {
+			flushes++;
+		}
+
+	}
+
+	@Test
+	public void pendingMessagesAreWrittenAtOnce() throws IOException {
+		CountDownLatch latch = new CountDownLatch(1);
+		CountingOutputStream outputStream = new CountingOutputStream(latch);
+		CoalescingWriter writer = new CoalescingWriter(outputStream, 0,
+				MILLISECONDS);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			String message = "alp://ppsw/" + i + "/1\n";
+			writer.write(message.getBytes());
+			expected.append(message);
+		}
+		latch.countDown();
+		writer.close();
+		assertThat(outputStream.toString(), is(expected.toString()));
+		// the first message and all the others
+		assertThat(outputStream.flushes <= 2, is(true));
+	}
+
+	@Test
+	public void loneMessageIsWrittenImmediately() throws Exception {
+		final CountingOutputStream outputStream = new CountingOutputStream(
+				new CountDownLatch(0));
+		final CountDownLatch written = new CountDownLatch(1);
+		CoalescingWriter writer = new CoalescingWriter(outputStream, 1,
+				HOURS) {
+			@Override
+			protected void written(byte[] bytes) {
+				// called after the message has been flushed
+				if (outputStream.flushes == 1) {
+					written.countDown();
+				}
+			}
+		};
+		writer.write("a".getBytes());
+		written.await();
+		assertThat(outputStream.toString(), is("a"));
+		writer.close();
+	}
+
+	@Test
+	public void messagesFollowingAWriteAreGatheredUpToMaxLatency()
+			throws Exception {
+		CountingOutputStream outputStream = new CountingOutputStream(
+				new CountDownLatch(0));
+		final CountDownLatch written = new CountDownLatch(1);
+		CoalescingWriter writer = new CoalescingWriter(outputStream, 500,
+				MILLISECONDS) {
+			@Override
+			protected void written(byte[] bytes) {
+				written.countDown();
+			}
+		};
+		writer.write("a".getBytes());
+		written.await();
+		writer.write("b".getBytes());
+		writer.write("c".getBytes());
+		writer.close();
+		assertThat(outputStream.toString(), is("abc"));
+		assertThat(outputStream.flushes, is(2));
+	}
+
+	@Test
+	public void writesBlockIfTheQueueIsFull() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		CountingOutputStream outputStream = new CountingOutputStream(latch);
+		final CoalescingWriter writer = new CoalescingWriter(outputStream, 0,
+				MILLISECONDS);
+		final byte[] message = new byte[100];
+		final AtomicInteger queued = new AtomicInteger();
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < 2000; i++) {
+						writer.write(message);
+						queued.incrementAndGet();
+					}
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		thread.start();
+		MILLISECONDS.sleep(200);
+		// one batch is being written, the others are queued
+		assertThat(queued.get() < 2000, is(true));
+		latch.countDown();
+		thread.join();
+		writer.close();
+		assertThat(outputStream.size(), is(2000 * message.length));
+	}
+
+	@Test
+	public void messagesAreEitherRejectedOrWrittenWhenClosing()
+			throws Exception {
+		CountingOutputStream outputStream = new CountingOutputStream(
+				new CountDownLatch(0));
+		final CoalescingWriter writer = new CoalescingWriter(outputStream, 0,
+				MILLISECONDS);
+		final AtomicInteger accepted = new AtomicInteger();
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						writer.write("x".getBytes());
+						accepted.incrementAndGet();
+					}
+				} catch (IllegalStateException e) {
+					// closed
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		thread.start();
+		MILLISECONDS.sleep(50);
+		writer.close();
+		thread.join();
+		assertThat(outputStream.size(), is(accepted.get()));
+	}
+
+	@Test(expected = IOException.class)
+	public void failuresAreThrownOnNextWrite() throws Exception {
+		final CountDownLatch failed = new CountDownLatch(1);
+		CoalescingWriter writer = new CoalescingWriter(
+				new ByteArrayOutputStream() {
+					@Override
+					public void flush() throws IOException {
+						failed.countDown();
+						throw new IOException("port closed");
+					}
+				}, 0, MILLISECONDS);
+		writer.write("a".getBytes());
+		failed.await();
+		// give the writer thread the chance to store the failure
+		MILLISECONDS.sleep(100);
+		writer.write("b".getBytes());
+	}
+
+}
@@ -28,11 +28,13 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsCollectionContaining.hasItems;
+import static org.hamcrest.core.IsSame.sameInstance;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -45,6 +47,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 
+import org.ardulink.core.Connection.ByteBufferListenerAdapter;
 import org.ardulink.core.Connection.ListenerAdapter;
 import org.ardulink.core.events.AnalogPinValueChangedEvent;
 import org.ardulink.core.events.DigitalPinValueChangedEvent;
@@ -52,6 +55,7 @@ import org.ardulink.core.events.EventListener;
 import org.ardulink.core.events.EventListenerAdapter;
 import org.ardulink.core.events.FilteredEventListenerAdapter;
 import org.ardulink.core.events.PinValueChangedEvent;
+import org.ardulink.core.events.PrimitiveEventListener;
 import org.ardulink.core.proto.api.Protocol;
 import org.ardulink.core.proto.impl.ArdulinkProtocol2;
 
@@ -84,9 +88,10 @@ public class ConnectionBasedLinkTest {
 		this.connection = new StreamConnection(pis, os, proto);
 		this.link = new ConnectionBasedLink(connection, proto) {
 			@Override
-			protected void received(byte[] bytes) {
-				super.received(bytes);
-				ConnectionBasedLinkTest.this.bytesRead.addAndGet(bytes.length);
+			protected void received(ByteBuffer buffer) {
+				int length = buffer.remaining();
+				super.received(buffer);
+				ConnectionBasedLinkTest.this.bytesRead.addAndGet(length);
 			}
 		};
 	}
@@ -112,6 +117,23 @@ public class ConnectionBasedLinkTest {
 		assertThat(toArduinoWasSent(), is("alp://ppsw/" + pin + "/1\n"));
 	}
 
+	@Test
+	public void pinSwitchesAreWrittenFromOneReusedBuffer() throws IOException {
+		final List<ByteBuffer> sent = new ArrayList<ByteBuffer>();
+		this.connection.addListener(new ByteBufferListenerAdapter() {
+			@Override
+			public void sent(ByteBuffer buffer) throws IOException {
+				sent.add(buffer);
+			}
+		});
+		this.link.switchAnalogPin(analogPin(3), 42);
+		this.link.switchDigitalPin(digitalPin(4), true);
+		assertThat(toArduinoWasSent(), is("alp://ppin/3/42\nalp://ppsw/4/1\n"));
+		assertThat(sent.size(), is(2));
+		assertThat(sent.get(0), sameInstance(sent.get(1)));
+		assertThat(sent.get(0).isReadOnly(), is(true));
+	}
+
 	@Test
 	public void doesSendStartListeningAnalogCommangToArduino()
 			throws IOException {
@@ -161,6 +183,26 @@ public class ConnectionBasedLinkTest {
 				hasItems(eventFor(analogPin(pin)).withValue(value)));
 	}
 
+	@Test
+	public void skipsMalformedFrames() throws IOException {
+		final List<PinValueChangedEvent> analogEvents = new ArrayList<PinValueChangedEvent>();
+		this.link.addListener(new EventListenerAdapter() {
+			@Override
+			public void stateChanged(AnalogPinValueChangedEvent event) {
+				analogEvents.add(event);
+			}
+		});
+		String garbage = "alp://garbage";
+		String message = alpProtocolMessage(ANALOG_PIN_READ).forPin(3)
+				.withValue(42);
+		simulateArdunoSend(garbage);
+		simulateArdunoSend(message);
+		waitUntilRead(this.bytesRead, garbage.length() + message.length());
+		assertThat(analogEvents,
+				hasItems(eventFor(analogPin(3)).withValue(42)));
+		assertThat(link.getMalformedFrames(), is(1L));
+	}
+
 	@Test
 	public void doesSendStartListeningDigitalCommangToArduino()
 			throws IOException {
@@ -191,6 +233,30 @@ public class ConnectionBasedLinkTest {
 				hasItems(eventFor(digitalPin(pin)).withValue(true)));
 	}
 
+	@Test
+	public void canReceivePinChangesAsPrimitives() throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		this.link.addPrimitiveListener(new PrimitiveEventListener() {
+			@Override
+			public void onAnalog(int pin, int value, long nanoTime) {
+				sb.append("A").append(pin).append("=").append(value);
+			}
+
+			@Override
+			public void onDigital(int pin, boolean value, long nanoTime) {
+				sb.append("D").append(pin).append("=").append(value);
+			}
+		});
+		String m1 = alpProtocolMessage(ANALOG_PIN_READ).forPin(3)
+				.withValue(42);
+		String m2 = alpProtocolMessage(DIGITAL_PIN_READ).forPin(7)
+				.withState(true);
+		simulateArdunoSend(m1);
+		simulateArdunoSend(m2);
+		waitUntilRead(this.bytesRead, m1.length() + m2.length());
+		assertThat(sb.toString(), is("A3=42D7=true"));
+	}
+
 	@Test
 	public void canFilterPins() throws IOException {
 		int pin = anyPositive(int.class);
@@ -0,0 +1,146 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class DelimiterFramerTest {
+
+	@Test
+	public void splitsFramesAndSkipsEmptyOnes() throws IOException {
+		assertThat(frames("\n", "\nalp://ready/\n\nalp://ared/1/42\n"),
+				is(list("alp://ready/", "alp://ared/1/42")));
+	}
+
+	@Test
+	public void remainderIsReturnedAtEndOfStream() throws IOException {
+		assertThat(frames("\n", "a\nb"), is(list("a", "b")));
+	}
+
+	@Test
+	public void canHandleMultiByteDelimitersSplitAcrossReads()
+			throws IOException {
+		// read one byte at a time so the delimiter is never read at once
+		InputStream in = new ByteArrayInputStream("ab\r\ncd\r\r\ne\r\n"
+				.getBytes()) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 1));
+			}
+		};
+		assertThat(frames(new DelimiterFramer("\r\n".getBytes()), in),
+				is(list("ab", "cd\r", "e")));
+	}
+
+	@Test
+	public void bufferGrowsIfFrameDoesNotFit() throws IOException {
+		String longFrame = "0123456789abcdef0123456789abcdef";
+		assertThat(
+				frames(new DelimiterFramer("\n".getBytes(), 4),
+						new ByteArrayInputStream((longFrame + "\nx\n")
+								.getBytes())), is(list(longFrame, "x")));
+	}
+
+	@Test
+	public void framesExceedingTheMaxFrameLengthAreDropped()
+			throws IOException {
+		DelimiterFramer framer = new DelimiterFramer("\r\n".getBytes(), 4, 8);
+		String tooLong = "0123456789abcdef0123456789abcdef\r";
+		assertThat(
+				frames(framer, new ByteArrayInputStream(("ab\r\n" + tooLong
+						+ "\r\n01234567\r\n" + tooLong).getBytes())),
+				is(list("ab", "01234567")));
+		assertThat(framer.getDroppedFrames(), is(2L));
+	}
+
+	@Test
+	public void returnsNullIfNoCompleteFrameIsAvailable() throws IOException {
+		DelimiterFramer framer = new DelimiterFramer("\n".getBytes());
+		framer.fill(new ByteArrayInputStream("abc".getBytes()));
+		assertThat(framer.next(), nullValue());
+		framer.fill(new ByteArrayInputStream("\n".getBytes()));
+		assertThat(new String(framer.next()), is("abc"));
+		assertThat(framer.remaining(), nullValue());
+	}
+
+	@Test
+	public void buffersAreViewsOnTheFrames() throws IOException {
+		DelimiterFramer framer = new DelimiterFramer("\n".getBytes());
+		framer.fill(new ByteArrayInputStream("ab\ncde\n".getBytes()));
+		assertThat(string(framer.nextBuffer()), is("ab"));
+		ByteBuffer buffer = framer.nextBuffer();
+		assertThat(buffer.isReadOnly(), is(true));
+		assertThat(string(buffer), is("cde"));
+		assertThat(framer.nextBuffer(), nullValue());
+	}
+
+	private static String string(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return new String(bytes);
+	}
+
+	private static List<String> frames(String delimiter, String data)
+			throws IOException {
+		return frames(new DelimiterFramer(delimiter.getBytes()),
+				new ByteArrayInputStream(data.getBytes()));
+	}
+
+	private static List<String> frames(DelimiterFramer framer, InputStream in)
+			throws IOException {
+		List<String> frames = new ArrayList<String>();
+		while (framer.fill(in) >= 0) {
+			byte[] frame;
+			while ((frame = framer.next()) != null) {
+				frames.add(new String(frame));
+			}
+		}
+		byte[] remaining = framer.remaining();
+		if (remaining != null) {
+			frames.add(new String(remaining));
+		}
+		return frames;
+	}
+
+	private static List<String> list(String... strings) {
+		List<String> list = new ArrayList<String>();
+		for (String string : strings) {
+			list.add(string);
+		}
+		return list;
+	}
+
+}
@@ -0,0 +1,161 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class OutboundQueueTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(5, SECONDS);
+
+	/**
+	 * Connection blocking the first write until released.
+	 */
+	private static class BlockingConnection extends AbstractConnection {
+
+		private final CountDownLatch writeStarted = new CountDownLatch(1);
+		private final CountDownLatch released = new CountDownLatch(1);
+		private final List<String> written = new ArrayList<String>();
+
+		@Override
+		public void write(byte[] bytes) throws IOException {
+			writeStarted.countDown();
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			synchronized (written) {
+				written.add(new String(bytes));
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			// nothing to close
+		}
+
+		List<String> written() {
+			synchronized (written) {
+				return new ArrayList<String>(written);
+			}
+		}
+
+	}
+
+	private final BlockingConnection connection = new BlockingConnection();
+
+	@Test
+	public void pendingMessagesWithSameKeyAreConflated() throws Exception {
+		OutboundQueue queue = new OutboundQueue(connection, 10);
+		queue.put("pin9", "9=1".getBytes());
+		connection.writeStarted.await();
+		queue.put("pin9", "9=2".getBytes());
+		queue.add("custom".getBytes());
+		queue.put("pin9", "9=3".getBytes());
+		queue.put("pin10", "10=1".getBytes());
+		assertThat(queue.size(), is(3));
+		connection.released.countDown();
+		queue.close();
+		assertThat(connection.written(),
+				is(Arrays.asList("9=1", "9=3", "custom", "10=1")));
+		assertThat(queue.getConflatedCount(), is(1L));
+	}
+
+	@Test
+	public void hotKeyIsNotStarvedByInterleavedMessages() throws Exception {
+		OutboundQueue queue = new OutboundQueue(connection, 10);
+		queue.add("first".getBytes());
+		connection.writeStarted.await();
+		for (int i = 0; i < 5; i++) {
+			queue.put("pin9", ("9=" + i).getBytes());
+			queue.add(("custom" + i).getBytes());
+		}
+		connection.released.countDown();
+		queue.close();
+		assertThat(connection.written(), is(Arrays.asList("first", "9=4",
+				"custom0", "custom1", "custom2", "custom3", "custom4")));
+		assertThat(queue.getConflatedCount(), is(4L));
+	}
+
+	@Test
+	public void callersBlockWhileQueueIsFull() throws Exception {
+		final OutboundQueue queue = new OutboundQueue(connection, 1);
+		queue.add("a".getBytes());
+		connection.writeStarted.await();
+		queue.add("b".getBytes());
+		final CountDownLatch queued = new CountDownLatch(1);
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					queue.add("c".getBytes());
+					queued.countDown();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}.start();
+		assertThat(queued.await(100, MILLISECONDS),
+				is(false));
+		connection.released.countDown();
+		queued.await();
+		queue.close();
+		assertThat(connection.written(), is(Arrays.asList("a", "b", "c")));
+	}
+
+	@Test
+	public void linkConflatesPinSwitches() throws Exception {
+		ConnectionBasedLink link = new ConnectionBasedLink(connection,
+				ArdulinkProtocol2.instance(), 10);
+		link.switchAnalogPin(analogPin(9), 1);
+		connection.writeStarted.await();
+		for (int value = 2; value <= 100; value++) {
+			link.switchAnalogPin(analogPin(9), value);
+		}
+		connection.released.countDown();
+		link.close();
+		assertThat(connection.written(), is(Arrays.asList(
+				"alp://ppin/9/1\n", "alp://ppin/9/100\n")));
+		assertThat(link.getConflatedCount(), is(98L));
+	}
+
+}
@@ -0,0 +1,92 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import java.util.Arrays;
+
+import org.ardulink.core.events.EventListener;
+import org.ardulink.core.events.EventListenerAdapter;
+import org.junit.Test;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class PinListenerIndexTest {
+
+	private final PinListenerIndex index = new PinListenerIndex();
+
+	private final EventListener listener1 = new EventListenerAdapter();
+	private final EventListener listener2 = new EventListenerAdapter();
+
+	@Test
+	public void listenersAreIndexedByPinTypeAndNumber() {
+		index.add(analogPin(3), listener1);
+		index.add(digitalPin(3), listener2);
+		index.add(analogPin(3), listener2);
+		assertThat(Arrays.asList(index.get(analogPin(3))),
+				is(Arrays.asList(listener1, listener2)));
+		assertThat(Arrays.asList(index.get(digitalPin(3))),
+				is(Arrays.asList(listener2)));
+		assertThat(index.get(analogPin(2)).length, is(0));
+		assertThat(index.get(analogPin(100)).length, is(0));
+	}
+
+	@Test
+	public void canRemoveListeners() {
+		index.add(digitalPin(13), listener1);
+		index.add(digitalPin(13), listener2);
+		EventListener[] before = index.get(digitalPin(13));
+		assertThat(index.remove(digitalPin(13), listener1), is(true));
+		assertThat(index.remove(digitalPin(13), listener1), is(false));
+		assertThat(index.hasListeners(digitalPin(13)), is(true));
+		assertThat(index.remove(digitalPin(13), listener2), is(true));
+		assertThat(index.hasListeners(digitalPin(13)), is(false));
+		// arrays handed out are not modified
+		assertThat(Arrays.asList(before),
+				is(Arrays.asList(listener1, listener2)));
+	}
+
+	@Test
+	public void canHandleHugePinNumbers() {
+		index.add(digitalPin(Integer.MAX_VALUE), listener1);
+		assertThat(Arrays.asList(index.get(digitalPin(Integer.MAX_VALUE))),
+				is(Arrays.asList(listener1)));
+		assertThat(index.get(analogPin(Integer.MAX_VALUE)).length, is(0));
+		assertThat(index.remove(digitalPin(Integer.MAX_VALUE), listener1),
+				is(true));
+		assertThat(index.hasListeners(digitalPin(Integer.MAX_VALUE)),
+				is(false));
+	}
+
+	@Test
+	public void allReturnsListenersOfAllPins() {
+		index.add(analogPin(0), listener1);
+		index.add(digitalPin(7), listener2);
+		assertThat(index.all(), is(Arrays.asList(listener1, listener2)));
+	}
+
+}
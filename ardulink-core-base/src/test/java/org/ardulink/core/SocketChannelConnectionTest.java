@@ -0,0 +1,178 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.ardulink.core.Connection.ListenerAdapter;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class SocketChannelConnectionTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(5, SECONDS);
+
+	private final List<Socket> remotes = new ArrayList<Socket>();
+	private ServerSocket serverSocket;
+	private SelectorLoop loop;
+
+	@Before
+	public void setup() throws IOException {
+		this.serverSocket = new ServerSocket(0);
+		this.loop = new SelectorLoop();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (Socket remote : remotes) {
+			remote.close();
+		}
+		this.serverSocket.close();
+		this.loop.close();
+	}
+
+	@Test
+	public void manyConnectionsCanShareOneLoop() throws IOException,
+			InterruptedException {
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		List<SocketChannelConnection> connections = new ArrayList<SocketChannelConnection>();
+		for (int i = 0; i < 10; i++) {
+			final int id = i;
+			SocketChannelConnection connection = connect();
+			connection.addListener(new ListenerAdapter() {
+				@Override
+				public void received(byte[] bytes) throws IOException {
+					received.add(id + ":" + new String(bytes));
+				}
+			});
+			connections.add(connection);
+		}
+		for (int i = 0; i < remotes.size(); i++) {
+			OutputStream outputStream = remotes.get(i).getOutputStream();
+			outputStream.write(("alp://ready/" + i + "\nalp:").getBytes());
+			outputStream.flush();
+		}
+		List<String> messages = new ArrayList<String>();
+		for (int i = 0; i < remotes.size(); i++) {
+			messages.add(received.take());
+		}
+		for (int i = 0; i < remotes.size(); i++) {
+			assertThat(messages.contains(i + ":alp://ready/" + i), is(true));
+		}
+		for (SocketChannelConnection connection : connections) {
+			connection.close();
+		}
+	}
+
+	@Test
+	public void blockingListenerDoesNotStallOtherConnections()
+			throws IOException, InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		SocketChannelConnection blocked = connect();
+		blocked.addListener(new ListenerAdapter() {
+			@Override
+			public void received(byte[] bytes) throws IOException {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		SocketChannelConnection other = connect();
+		other.addListener(new ListenerAdapter() {
+			@Override
+			public void received(byte[] bytes) throws IOException {
+				received.add(new String(bytes));
+			}
+		});
+		try {
+			write(remotes.get(0), "alp://ready/0\n");
+			write(remotes.get(1), "alp://ready/1\n");
+			assertThat(received.take(), is("alp://ready/1"));
+		} finally {
+			release.countDown();
+			blocked.close();
+			other.close();
+		}
+	}
+
+	@Test
+	public void writesAreSentToTheRemote() throws IOException {
+		SocketChannelConnection connection = connect();
+		try {
+			byte[] message = new byte[256 * 1024];
+			for (int i = 0; i < message.length; i++) {
+				message[i] = (byte) i;
+			}
+			connection.write(message);
+			connection.write(new byte[] { 42 });
+			InputStream inputStream = remotes.get(0).getInputStream();
+			for (int i = 0; i < message.length; i++) {
+				assertThat(inputStream.read(), is(message[i] & 0xFF));
+			}
+			assertThat(inputStream.read(), is(42));
+		} finally {
+			connection.close();
+		}
+	}
+
+	private static void write(Socket remote, String message)
+			throws IOException {
+		OutputStream outputStream = remote.getOutputStream();
+		outputStream.write(message.getBytes());
+		outputStream.flush();
+	}
+
+	private SocketChannelConnection connect() throws IOException {
+		SocketChannel channel = SocketChannel.open(new InetSocketAddress(
+				"localhost", serverSocket.getLocalPort()));
+		remotes.add(serverSocket.accept());
+		return new SocketChannelConnection(channel,
+				ArdulinkProtocol2.instance(), loop);
+	}
+
+}
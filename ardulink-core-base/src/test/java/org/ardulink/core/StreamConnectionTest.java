@@ -0,0 +1,104 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.ardulink.core.Connection.ByteBufferListenerAdapter;
+import org.ardulink.core.Connection.ListenerAdapter;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class StreamConnectionTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(5, SECONDS);
+
+	@Test
+	public void byteBufferListenersGetReadOnlyBuffers() throws Exception {
+		PipedOutputStream arduino = new PipedOutputStream();
+		StreamConnection connection = new StreamConnection(
+				new PipedInputStream(arduino), new ByteArrayOutputStream(),
+				ArdulinkProtocol2.instance());
+		final BlockingQueue<Object> received = new LinkedBlockingQueue<Object>();
+		connection.addListener(new ByteBufferListenerAdapter() {
+			@Override
+			public void received(ByteBuffer buffer) throws IOException {
+				received.add(buffer.isReadOnly());
+				byte[] bytes = new byte[buffer.remaining()];
+				buffer.get(bytes);
+				received.add(new String(bytes));
+			}
+		});
+		try {
+			arduino.write("alp://ready/\n".getBytes());
+			arduino.flush();
+			assertThat(received.take(), is((Object) true));
+			assertThat(received.take(), is((Object) "alp://ready/"));
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test
+	public void byteArrayListenersShareOneCopy() throws Exception {
+		PipedOutputStream arduino = new PipedOutputStream();
+		StreamConnection connection = new StreamConnection(
+				new PipedInputStream(arduino), new ByteArrayOutputStream(),
+				ArdulinkProtocol2.instance());
+		final BlockingQueue<byte[]> received = new LinkedBlockingQueue<byte[]>();
+		for (int i = 0; i < 2; i++) {
+			connection.addListener(new ListenerAdapter() {
+				@Override
+				public void received(byte[] bytes) throws IOException {
+					received.add(bytes);
+				}
+			});
+		}
+		try {
+			arduino.write("alp://ready/\n".getBytes());
+			arduino.flush();
+			byte[] bytes = received.take();
+			assertThat(new String(bytes), is("alp://ready/"));
+			assertThat(received.take(), sameInstance(bytes));
+		} finally {
+			connection.close();
+		}
+	}
+
+}
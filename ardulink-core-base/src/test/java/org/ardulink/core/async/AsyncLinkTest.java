@@ -0,0 +1,203 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.async;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ardulink.core.AbstractConnection;
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.events.RplyEvent;
+import org.ardulink.core.events.RplyListener;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class AsyncLinkTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(5, SECONDS);
+
+	private final List<String> written = new CopyOnWriteArrayList<String>();
+
+	private final AbstractConnection connection = new AbstractConnection() {
+
+		@Override
+		public void write(byte[] bytes) throws IOException {
+			written.add(new String(bytes));
+		}
+
+		@Override
+		public void close() throws IOException {
+			// nothing to close
+		}
+
+	};
+
+	private final ConnectionBasedLink link = new ConnectionBasedLink(
+			connection, ArdulinkProtocol2.instance());
+
+	@After
+	public void tearDown() throws IOException {
+		link.close();
+	}
+
+	@Test
+	public void futuresAreCompletedByReplies() throws Exception {
+		ConnectionBasedAsyncLink asyncLink = new ConnectionBasedAsyncLink(
+				link, 5, SECONDS);
+		ReplyFuture first = asyncLink.switchAnalogPin(analogPin(9), 42);
+		ReplyFuture second = asyncLink.switchDigitalPin(digitalPin(13), true);
+		assertThat(written.get(0), is("alp://ppin/9/42?id=1\n"));
+		assertThat(written.get(1), is("alp://ppsw/13/1?id=2\n"));
+		assertThat(asyncLink.getPendingCount(), is(2));
+
+		final AtomicInteger callbackCalls = new AtomicInteger();
+		second.addCallback(new ReplyFuture.Callback() {
+			@Override
+			public void done(ReplyFuture future) {
+				callbackCalls.incrementAndGet();
+			}
+		});
+		reply("alp://rply/ok?id=2\n");
+		assertThat(second.get().getId(), is(2L));
+		assertThat(callbackCalls.get(), is(1));
+		assertThat(first.isDone(), is(false));
+
+		reply("alp://rply/ok?id=1\n");
+		assertThat(first.get().getId(), is(1L));
+		assertThat(asyncLink.getPendingCount(), is(0));
+		asyncLink.close();
+	}
+
+	@Test
+	public void asyncLinksShareTheMessageIdsOfTheirLink() throws Exception {
+		ConnectionBasedAsyncLink asyncLink1 = new ConnectionBasedAsyncLink(
+				link, 5, SECONDS);
+		ConnectionBasedAsyncLink asyncLink2 = new ConnectionBasedAsyncLink(
+				link, 5, SECONDS);
+		ReplyFuture first = asyncLink1.switchAnalogPin(analogPin(9), 42);
+		ReplyFuture second = asyncLink2.switchAnalogPin(analogPin(9), 43);
+		assertThat(written.get(0), is("alp://ppin/9/42?id=1\n"));
+		assertThat(written.get(1), is("alp://ppin/9/43?id=2\n"));
+		reply("alp://rply/ok?id=2\n");
+		assertThat(second.isDone(), is(true));
+		assertThat(first.isDone(), is(false));
+		asyncLink1.close();
+		asyncLink2.close();
+	}
+
+	@Test
+	public void cumulativeRepliesOnlyCompleteMessagesSent() throws Exception {
+		final List<Long> replied = new CopyOnWriteArrayList<Long>();
+		link.addRplyListener(new RplyListener() {
+			@Override
+			public void rplyReceived(RplyEvent event) {
+				replied.add(event.getId());
+			}
+		});
+		ConnectionBasedAsyncLink asyncLink = new ConnectionBasedAsyncLink(
+				link, 5, SECONDS);
+		ReplyFuture first = asyncLink.switchAnalogPin(analogPin(9), 42);
+		ReplyFuture second = asyncLink.sendNoTone(analogPin(3));
+		reply("alp://rply/ok?upto=10&nack=2\n");
+		assertThat(first.get().isOk(), is(true));
+		try {
+			second.get();
+			fail("Future should have failed");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+		}
+		assertThat(replied, is(Arrays.asList(1L, 2L)));
+		asyncLink.close();
+	}
+
+	@Test
+	public void failsIfReplyIsNotOk() throws Exception {
+		ConnectionBasedAsyncLink asyncLink = new ConnectionBasedAsyncLink(
+				link, 5, SECONDS);
+		ReplyFuture future = asyncLink.sendNoTone(analogPin(3));
+		reply("alp://rply/ko?id=1\n");
+		try {
+			future.get();
+			fail("Future should have failed");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+		}
+		asyncLink.close();
+	}
+
+	@Test
+	public void failsIfNoReplyIsReceivedWithinTimeout() throws Exception {
+		ConnectionBasedAsyncLink asyncLink = new ConnectionBasedAsyncLink(
+				link, 50, MILLISECONDS);
+		ReplyFuture future = asyncLink.switchAnalogPin(analogPin(9), 42);
+		try {
+			future.get();
+			fail("Future should have failed");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(TimeoutException.class));
+		}
+		assertThat(asyncLink.getPendingCount(), is(0));
+		asyncLink.close();
+	}
+
+	@Test
+	public void adapterCompletesFuturesWhenSent() throws Exception {
+		LinkAsyncAdapter asyncLink = new LinkAsyncAdapter(link);
+		ReplyFuture future = asyncLink.sendCustomMessage("foo");
+		assertThat(future.get().isOk(), is(true));
+		assertThat(written.get(0), is("alp://cust/foo\n"));
+		asyncLink.close();
+	}
+
+	@Test
+	public void connectionBasedLinksAreSentWithMessageIds() throws IOException {
+		assertThat(AsyncLinks.asyncLink(link),
+				instanceOf(ConnectionBasedAsyncLink.class));
+	}
+
+	private void reply(String message) {
+		connection.contactListeners4Received(message.substring(0,
+				message.length() - 1).getBytes());
+	}
+
+}
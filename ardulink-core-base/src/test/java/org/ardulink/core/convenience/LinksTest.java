@@ -16,6 +16,8 @@ limitations under the License.
 
 package org.ardulink.core.convenience;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNot.not;
 import static org.hamcrest.core.IsNull.notNullValue;
@@ -31,7 +33,10 @@ import org.ardulink.core.Link;
 import org.ardulink.core.linkmanager.DummyConnection;
 import org.ardulink.core.linkmanager.DummyLinkConfig;
 import org.ardulink.util.URIs;
+import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.Timeout;
 
 /**
  * [ardulinktitle] [ardulinkversion]
@@ -43,6 +48,14 @@ import org.junit.Test;
  */
 public class LinksTest {
 
+	@Rule
+	public Timeout timeout = new Timeout(5, SECONDS);
+
+	@After
+	public void tearDown() {
+		Links.setLinger(0, MILLISECONDS);
+	}
+
 	@Test
 	public void returnsSerialConnectionWhenAvailableAndFallsbackToFirstAvailable()
 			throws IOException {
@@ -126,6 +139,56 @@ public class LinksTest {
 		close(link3);
 	}
 
+	@Test
+	public void lingeringLinksCanBeReusedBeforeTheyGetClosed()
+			throws Exception {
+		Links.setLinger(200, MILLISECONDS);
+		URI randomURI = getRandomURI();
+		Link link1 = createConnectionBasedLink(randomURI);
+		DummyConnection connection = getConnection(link1);
+		link1.close();
+		Link link2 = createConnectionBasedLink(randomURI);
+		assertThat(link2, sameInstance(link1));
+		assertThat(connection.getCloseCalls(), is(0));
+		link2.close();
+		while (connection.getCloseCalls() == 0) {
+			MILLISECONDS.sleep(10);
+		}
+		assertThat(connection.getCloseCalls(), is(1));
+	}
+
+	@Test
+	public void lingeringLinksAreNotClosedWhenGarbageCollected()
+			throws Exception {
+		Links.setLinger(1, SECONDS);
+		URI randomURI = getRandomURI();
+		Link link = createConnectionBasedLink(randomURI);
+		DummyConnection connection = getConnection(link);
+		link.close();
+		link = null;
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			MILLISECONDS.sleep(10);
+		}
+		assertThat(connection.getCloseCalls(), is(0));
+		link = createConnectionBasedLink(randomURI);
+		assertThat(getConnection(link), sameInstance(connection));
+		link.close();
+	}
+
+	@Test
+	public void linksNotClosedGetClosedWhenGarbageCollected()
+			throws Exception {
+		Link link = getRandomLink();
+		DummyConnection connection = getConnection(link);
+		link = null;
+		while (connection.getCloseCalls() == 0) {
+			System.gc();
+			MILLISECONDS.sleep(10);
+		}
+		assertThat(connection.getCloseCalls(), is(1));
+	}
+
 	@Test
 	public void twoDifferentURIsWithSameParamsMustNotBeenMixed() throws IOException {
 		URI uri1 = URIs.newURI("ardulink://dummyLink?a=aVal1&b=4");
@@ -0,0 +1,169 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.events;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.ardulink.core.AbstractConnection;
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.events.AsyncEventListener.OverflowPolicy;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class AsyncEventListenerTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(5, SECONDS);
+
+	/**
+	 * Listener blocking until released, records the values received.
+	 */
+	private static class SlowListener extends EventListenerAdapter {
+
+		private final CountDownLatch released = new CountDownLatch(1);
+		private final List<Object> values = new CopyOnWriteArrayList<Object>();
+		private final CountDownLatch received;
+
+		SlowListener(int expectedEvents) {
+			this.received = new CountDownLatch(expectedEvents);
+		}
+
+		@Override
+		public void stateChanged(AnalogPinValueChangedEvent event) {
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			values.add(event.getValue());
+			received.countDown();
+		}
+
+	}
+
+	@Test
+	public void slowListenerDoesNotBlockTheFiringThread() throws Exception {
+		SlowListener slowListener = new SlowListener(3);
+		AsyncEventListener listener = new AsyncEventListener(slowListener, 10,
+				OverflowPolicy.BLOCK);
+		for (int value = 1; value <= 3; value++) {
+			listener.stateChanged(event(value));
+		}
+		MILLISECONDS.sleep(20);
+		assertThat(listener.getLag(MILLISECONDS) >= 20, is(true));
+		slowListener.released.countDown();
+		slowListener.received.await();
+		assertThat(slowListener.values, is((Object) list(1, 2, 3)));
+		assertThat(listener.getQueueSize(), is(0));
+		assertThat(listener.getMaxLag(MILLISECONDS) >= 20, is(true));
+		listener.close();
+	}
+
+	@Test
+	public void dropsOldestEventsIfQueueIsFull() throws Exception {
+		SlowListener slowListener = new SlowListener(3);
+		AsyncEventListener listener = new AsyncEventListener(slowListener, 2,
+				OverflowPolicy.DROP_OLDEST);
+		listener.stateChanged(event(1));
+		// wait until the first event is taken from the queue
+		while (listener.getQueueSize() > 0) {
+			MILLISECONDS.sleep(1);
+		}
+		for (int value = 2; value <= 5; value++) {
+			listener.stateChanged(event(value));
+		}
+		assertThat(listener.getDroppedCount(), is(2L));
+		slowListener.released.countDown();
+		slowListener.received.await();
+		assertThat(slowListener.values, is((Object) list(1, 4, 5)));
+		listener.close();
+	}
+
+	@Test
+	public void eventsQueuedAreDeliveredAfterClose() throws Exception {
+		int events = 200;
+		SlowListener slowListener = new SlowListener(events);
+		AsyncEventListener listener = new AsyncEventListener(slowListener,
+				events, OverflowPolicy.BLOCK);
+		for (int value = 1; value <= events; value++) {
+			listener.stateChanged(event(value));
+		}
+		listener.close();
+		slowListener.released.countDown();
+		slowListener.received.await();
+		assertThat(slowListener.values.size(), is(events));
+		assertThat(listener.getDroppedCount(), is(0L));
+	}
+
+	@Test
+	public void linkDispatchesAsynchronously() throws Exception {
+		ConnectionBasedLink link = new ConnectionBasedLink(
+				new AbstractConnection() {
+					@Override
+					public void write(byte[] bytes) throws IOException {
+						// discard
+					}
+
+					@Override
+					public void close() throws IOException {
+						// nothing to close
+					}
+				}, ArdulinkProtocol2.instance());
+		link.dispatchAsync(10, OverflowPolicy.DROP_NEWEST);
+		SlowListener slowListener = new SlowListener(1);
+		link.addListener(slowListener);
+		link.fireStateChanged(event(42));
+		assertThat(link.getAsyncListener(slowListener).get().getQueueSize()
+				+ slowListener.values.size() <= 1, is(true));
+		slowListener.released.countDown();
+		slowListener.received.await();
+		assertThat(slowListener.values, is((Object) list(42)));
+		link.close();
+	}
+
+	private static DefaultAnalogPinValueChangedEvent event(int value) {
+		return new DefaultAnalogPinValueChangedEvent(analogPin(1), value);
+	}
+
+	private static List<Object> list(Object... values) {
+		List<Object> list = new CopyOnWriteArrayList<Object>();
+		for (Object value : values) {
+			list.add(value);
+		}
+		return list;
+	}
+
+}
@@ -0,0 +1,73 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.events;
+
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+import org.junit.Test;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class EventCacheTest {
+
+	private final EventCache cache = new EventCache();
+
+	@Test
+	public void pinsAreInterned() {
+		assertThat(analogPin(5), sameInstance(analogPin(5)));
+		assertThat(digitalPin(13), sameInstance(digitalPin(13)));
+		assertThat(analogPin(1000), is(analogPin(1000)));
+	}
+
+	@Test
+	public void eventsForSamePinAndValueAreReused() {
+		AnalogPinValueChangedEvent analog = cache.analogEvent(analogPin(2), 512);
+		assertThat(cache.analogEvent(analogPin(2), 512), sameInstance(analog));
+		assertThat(cache.analogEvent(analogPin(2), 511),
+				not(sameInstance(analog)));
+		assertThat(cache.analogEvent(analogPin(3), 512).getPin(),
+				is(analogPin(3)));
+
+		DigitalPinValueChangedEvent digital = cache.digitalEvent(
+				digitalPin(7), true);
+		assertThat(cache.digitalEvent(digitalPin(7), true),
+				sameInstance(digital));
+		assertThat(cache.digitalEvent(digitalPin(7), false).getValue(),
+				is(false));
+	}
+
+	@Test
+	public void valuesOutOfRangeAreNotCached() {
+		AnalogPinValueChangedEvent event = cache.analogEvent(analogPin(2),
+				4096);
+		assertThat(event.getValue(), is(4096));
+		assertThat(cache.analogEvent(analogPin(2), 4096),
+				not(sameInstance(event)));
+	}
+
+}
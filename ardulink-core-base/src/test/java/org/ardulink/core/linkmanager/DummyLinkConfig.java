@@ -48,6 +48,11 @@ public class DummyLinkConfig implements LinkConfig {
 	@Named("d")
 	public String d;
 
+	@Named("e")
+	public String e;
+
+	public static volatile String[] choiceValuesOfE = { "---unconfigured---" };
+
 	public static final ThreadLocal<String[]> choiceValuesOfD = new ThreadLocal<String[]>() {
 		@Override
 		protected String[] initialValue() {
@@ -119,4 +124,17 @@ public class DummyLinkConfig implements LinkConfig {
 		return choiceValuesOfD.get();
 	}
 
+	public String getE() {
+		return e;
+	}
+
+	public void setE(String e) {
+		this.e = e;
+	}
+
+	@ChoiceFor(value = "e", threadSafe = true)
+	public static String[] choiceValuesVisibleToAllThreads() {
+		return choiceValuesOfE;
+	}
+
 }
\ No newline at end of file
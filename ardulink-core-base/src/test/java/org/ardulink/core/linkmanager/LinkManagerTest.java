@@ -16,12 +16,28 @@ limitations under the License.
 
 package org.ardulink.core.linkmanager;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.linkmanager.LinkFactoryIndex.MODULE_DIR_PROPERTY;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.junit.Assert.assertThat;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.jar.JarOutputStream;
+
+import org.ardulink.core.linkmanager.LinkManager.ChoiceValuesListener;
+import org.ardulink.core.linkmanager.LinkManager.ConfigAttribute;
 import org.ardulink.core.linkmanager.LinkManager.Configurer;
 import org.ardulink.util.URIs;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * [ardulinktitle] [ardulinkversion]
@@ -33,6 +49,9 @@ import org.junit.Test;
  */
 public class LinkManagerTest {
 
+	@Rule
+	public TemporaryFolder moduleDir = new TemporaryFolder();
+
 	@Test
 	public void onceQueriedChoiceValuesStayValid() throws Exception {
 		LinkManager linkManager = LinkManager.getInstance();
@@ -57,6 +76,86 @@ public class LinkManagerTest {
 				is(new Object[] { "1", "2" }));
 	}
 
+	@Test
+	public void factoriesAreLoadedOnceUntilReloaded() {
+		LinkFactoryIndex index = LinkFactoryIndex.get();
+		assertThat(LinkFactoryIndex.get(), sameInstance(index));
+		Object factory = index.getFactory("dummyLink");
+		assertThat(LinkFactoryIndex.get().getFactory("dummyLink"),
+				sameInstance(factory));
+		LinkManager.reloadLinkFactories();
+		assertThat(LinkFactoryIndex.get(), not(sameInstance(index)));
+	}
+
+	@Test
+	public void factoriesAreReloadedWhenModuleDirChanges() throws IOException {
+		String oldModuleDir = System.getProperty(MODULE_DIR_PROPERTY);
+		System.setProperty(MODULE_DIR_PROPERTY, moduleDir.getRoot().getPath());
+		try {
+			LinkFactoryIndex index = LinkFactoryIndex.get();
+			assertThat(LinkFactoryIndex.get(), sameInstance(index));
+			new JarOutputStream(new FileOutputStream(new File(
+					moduleDir.getRoot(), "module.jar"))).close();
+			assertThat(LinkFactoryIndex.get(), not(sameInstance(index)));
+		} finally {
+			if (oldModuleDir == null) {
+				System.clearProperty(MODULE_DIR_PROPERTY);
+			} else {
+				System.setProperty(MODULE_DIR_PROPERTY, oldModuleDir);
+			}
+		}
+	}
+
+	@Test
+	public void cachedChoiceValuesAreRefreshedInBackground() throws Exception {
+		long ttl = LinkManager.getChoiceValuesTtl(MILLISECONDS);
+		LinkManager.setChoiceValuesTtl(0, MILLISECONDS);
+		try {
+			ConfigAttribute attribute = LinkManager.getInstance()
+					.getConfigurer(URIs.newURI("ardulink://dummyLink"))
+					.getAttribute("e");
+			final BlockingQueue<Object[]> changes = new LinkedBlockingQueue<Object[]>();
+			attribute.addChoiceValuesListener(new ChoiceValuesListener() {
+				@Override
+				public void choiceValuesChanged(ConfigAttribute attribute,
+						Object[] choiceValues) {
+					changes.add(choiceValues);
+				}
+			});
+			DummyLinkConfig.choiceValuesOfE = new String[] { "x", "y" };
+			attribute.getChoiceValues();
+			changes.clear();
+
+			// the last known values are returned immediately while the
+			// background thread loads the new ones
+			DummyLinkConfig.choiceValuesOfE = new String[] { "z" };
+			assertThat(attribute.getCachedChoiceValues(), is(new Object[] {
+					"x", "y" }));
+			assertThat(changes.poll(5, SECONDS), is(new Object[] { "z" }));
+			assertThat(attribute.getCachedChoiceValues(),
+					is(new Object[] { "z" }));
+		} finally {
+			DummyLinkConfig.choiceValuesOfE = new String[] { "---unconfigured---" };
+			LinkManager.setChoiceValuesTtl(ttl, MILLISECONDS);
+		}
+	}
+
+	@Test
+	public void cachedChoiceValuesNotThreadSafeAreLoadedByTheCallingThread()
+			throws Exception {
+		long ttl = LinkManager.getChoiceValuesTtl(MILLISECONDS);
+		LinkManager.setChoiceValuesTtl(0, MILLISECONDS);
+		try {
+			ConfigAttribute attribute = LinkManager.getInstance()
+					.getConfigurer(URIs.newURI("ardulink://dummyLink"))
+					.getAttribute("a");
+			assertThat(attribute.getCachedChoiceValues(), is(new Object[] {
+					"aVal1", "aVal2" }));
+		} finally {
+			LinkManager.setChoiceValuesTtl(ttl, MILLISECONDS);
+		}
+	}
+
 	private void choiceValuesOfDNowAre(String... values) {
 		DummyLinkConfig.choiceValuesOfD.set(values);
 	}
@@ -0,0 +1,75 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.proto.api;
+
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.proto.api.MessageIdHolders.addMessageId;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import java.lang.reflect.Proxy;
+
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.ardulink.core.proto.impl.DefaultToArduinoNoTone;
+import org.ardulink.core.proto.impl.DefaultToArduinoPinEvent;
+import org.junit.Test;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class MessageIdHoldersTest {
+
+	@Test
+	public void knownMessageTypesAreWrappedWithoutProxies() {
+		ToArduinoPinEvent pinEvent = addMessageId(new DefaultToArduinoPinEvent(
+				analogPin(3), 42), 7);
+		assertThat(Proxy.isProxyClass(pinEvent.getClass()), is(false));
+		assertThat(((MessageIdHolder) pinEvent).getId(), is(7L));
+		assertThat(pinEvent.getPin(), is((Object) analogPin(3)));
+		assertThat(pinEvent.getValue(), is((Object) 42));
+	}
+
+	@Test
+	public void protocolReadsIdOfWrappedMessages() {
+		Protocol protocol = ArdulinkProtocol2.instance();
+		assertThat(new String(protocol.toArduino(addMessageId(
+				new DefaultToArduinoPinEvent(digitalPin(2), true), 1))),
+				is("alp://ppsw/2/1?id=1\n"));
+		assertThat(new String(protocol.toArduino(addMessageId(
+				new DefaultToArduinoNoTone(analogPin(3)), 2))),
+				is("alp://notn/3?id=2\n"));
+	}
+
+	@Test
+	public void otherTypesAreStillSupportedUsingProxies() {
+		Runnable runnable = addMessageId((Runnable) new Runnable() {
+			@Override
+			public void run() {
+				// noop
+			}
+		}, 3);
+		assertThat(Proxy.isProxyClass(runnable.getClass()), is(true));
+		assertThat(((MessageIdHolder) runnable).getId(), is(3L));
+	}
+
+}
@@ -38,7 +38,8 @@ public class ProtocolsTest {
 	public void defaultAndDummyProtocolsAreRegistered() {
 		assertThat(
 				new HashSet<String>(Protocols.names()),
-				is(new HashSet<String>(Arrays.asList("ardulink2", "dummyProto"))));
+				is(new HashSet<String>(Arrays.asList("ardulink2", "ardulinkbinary",
+						"firmata", "auto", "dummyProto"))));
 	}
 
 }
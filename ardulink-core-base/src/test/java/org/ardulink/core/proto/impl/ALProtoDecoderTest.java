@@ -0,0 +1,197 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.proto.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.ardulink.core.proto.impl.ALProtoDecoder.Handler;
+import org.junit.Test;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class ALProtoDecoderTest {
+
+	private final ALProtoDecoder decoder = new ALProtoDecoder();
+
+	private final Handler<String> handler = new Handler<String>() {
+
+		@Override
+		public String analogPinRead(int pin, int value) {
+			return "analog " + pin + "=" + value;
+		}
+
+		@Override
+		public String digitalPinRead(int pin, boolean value) {
+			return "digital " + pin + "=" + value;
+		}
+
+		@Override
+		public String reply(boolean ok, long id) {
+			return "reply " + ok + " " + id;
+		}
+
+		@Override
+		public String cumulativeReply(boolean ok, long upToId, long[] nackIds) {
+			return "reply " + ok + " up to " + upToId + " nack "
+					+ Arrays.toString(nackIds);
+		}
+
+		@Override
+		public String ready() {
+			return "ready";
+		}
+
+	};
+
+	@Test
+	public void canDecodeAnalogPinRead() {
+		assertThat(decode("alp://ared/3/512"), is("analog 3=512"));
+	}
+
+	@Test
+	public void canDecodeDigitalPinRead() {
+		assertThat(decode("alp://dred/7/1"), is("digital 7=true"));
+		assertThat(decode("alp://dred/7/0"), is("digital 7=false"));
+	}
+
+	@Test
+	public void canDecodeReplies() {
+		assertThat(decode("alp://rply/ok?id=42"), is("reply true 42"));
+		assertThat(decode("alp://rply/OK?id=42"), is("reply true 42"));
+		assertThat(decode("alp://rply/ko?id=" + Long.MAX_VALUE),
+				is("reply false " + Long.MAX_VALUE));
+	}
+
+	@Test
+	public void canDecodeCumulativeReplies() {
+		assertThat(decode("alp://rply/ok?upto=50"),
+				is("reply true up to 50 nack []"));
+		assertThat(decode("alp://rply/ok?upto=50&nack=7,42"),
+				is("reply true up to 50 nack [7, 42]"));
+		assertThat(decode("alp://rply/ko?upto=3&nack=1"),
+				is("reply false up to 3 nack [1]"));
+	}
+
+	@Test
+	public void canDecodeReady() {
+		assertThat(decode("alp://ready/"), is("ready"));
+	}
+
+	@Test
+	public void canDecodeFrameInsideLargerArray() {
+		byte[] bytes = "xxalp://ared/1/2yy".getBytes();
+		assertThat(decoder.decode(bytes, 2, bytes.length - 4, handler),
+				is("analog 1=2"));
+	}
+
+	@Test
+	public void canDecodeDirectByteBufferWithoutModifyingIt() {
+		byte[] bytes = "alp://ared/4/1023".getBytes();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 1);
+		buffer.put((byte) '-').put(bytes).flip();
+		buffer.position(1);
+		assertThat(decoder.decode(buffer, handler), is("analog 4=1023"));
+		assertThat(buffer.position(), is(1));
+		assertThat(buffer.limit(), is(bytes.length + 1));
+	}
+
+	@Test
+	public void decodesReadOnlyBuffersWithoutCopyingThem() {
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		char[] zeros = new char[4096];
+		Arrays.fill(zeros, '0');
+		ByteBuffer frame = ByteBuffer.wrap(
+				("alp://ared/5/" + new String(zeros) + "7").getBytes())
+				.asReadOnlyBuffer();
+		ByteBuffer warmUp = ByteBuffer.wrap("alp://ared/5/7".getBytes())
+				.asReadOnlyBuffer();
+		Handler<Boolean> constant = new Handler<Boolean>() {
+
+			@Override
+			public Boolean analogPinRead(int pin, int value) {
+				return pin == 5 && value == 7;
+			}
+
+			@Override
+			public Boolean digitalPinRead(int pin, boolean value) {
+				return false;
+			}
+
+			@Override
+			public Boolean reply(boolean ok, long id) {
+				return false;
+			}
+
+			@Override
+			public Boolean cumulativeReply(boolean ok, long upToId,
+					long[] nackIds) {
+				return false;
+			}
+
+			@Override
+			public Boolean ready() {
+				return false;
+			}
+
+		};
+		assertThat(decoder.decode(warmUp, constant), is(true));
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		Boolean decoded = decoder.decode(frame, constant);
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+		assertThat(decoded, is(true));
+		// copying the frame would allocate more than its length
+		assertThat(allocated < zeros.length, is(true));
+	}
+
+	@Test
+	public void malformedFramesAreCountedInsteadOfThrown() {
+		String[] malformed = { "", "alp://", "alp://ared", "alp://ared/3",
+				"alp://ared/3/", "alp://ared/x/1", "alp://ared/1/2/3",
+				"alp://ared/1/99999999999", "alp://rply/ok",
+				"alp://rply/ok?id=", "alp://rply/ok?foo=1", "alp://xxxx/1/2",
+				"alp:/ared/1/2", "alp://rply/ok?upto=",
+				"alp://rply/ok?upto=5&foo=1", "alp://rply/ok?upto=5&nack=",
+				"alp://rply/ok?upto=5&nack=1,,2" };
+		for (String frame : malformed) {
+			assertThat(frame, decode(frame), nullValue());
+		}
+		assertThat(decoder.getMalformedFrames(), is((long) malformed.length));
+	}
+
+	private String decode(String frame) {
+		return decoder.decode(frame.getBytes(), handler);
+	}
+
+}
@@ -0,0 +1,94 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.proto.impl;
+
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.alpProtocolMessage;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.POWER_PIN_INTENSITY;
+import static org.ardulink.core.proto.impl.ALProtoEncoder.MAX_FRAME_LENGTH;
+import static org.ardulink.core.proto.impl.ALProtoEncoder.startListening;
+import static org.ardulink.core.proto.impl.ALProtoEncoder.stopListening;
+import static org.ardulink.core.proto.impl.ALProtoEncoder.switchAnalogPin;
+import static org.ardulink.core.proto.impl.ALProtoEncoder.switchDigitalPin;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class ALProtoEncoderTest {
+
+	private final ByteBuffer buffer = ByteBuffer.allocate(MAX_FRAME_LENGTH);
+
+	@Test
+	public void canEncodePinSwitches() {
+		assertThat(written(switchAnalogPin(buffer, 9, 255)),
+				is("alp://ppin/9/255\n"));
+		assertThat(written(switchDigitalPin(buffer, 13, true)),
+				is("alp://ppsw/13/1\n"));
+		assertThat(written(switchDigitalPin(buffer, 0, false, 42)),
+				is("alp://ppsw/0/0?id=42\n"));
+	}
+
+	@Test
+	public void canEncodeListeningCommands() {
+		assertThat(written(startListening(buffer, analogPin(3))),
+				is("alp://srla/3\n"));
+		assertThat(written(startListening(buffer, digitalPin(4))),
+				is("alp://srld/4\n"));
+		assertThat(written(stopListening(buffer, analogPin(5))),
+				is("alp://spla/5\n"));
+		assertThat(written(stopListening(buffer, digitalPin(6))),
+				is("alp://spld/6\n"));
+	}
+
+	@Test
+	public void extremeValuesFitIntoMaxFrameLength() {
+		assertThat(
+				written(switchAnalogPin(buffer, Integer.MAX_VALUE,
+						Integer.MIN_VALUE, Long.MAX_VALUE)),
+				is(alpProtocolMessage(POWER_PIN_INTENSITY)
+						.usingMessageId(Long.MAX_VALUE)
+						.forPin(Integer.MAX_VALUE)
+						.withValue(Integer.MIN_VALUE)
+						+ "\n"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativePinsAreRejected() {
+		switchAnalogPin(buffer, -1, 0);
+	}
+
+	private static String written(ByteBuffer buffer) {
+		buffer.flip();
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		buffer.clear();
+		return new String(bytes);
+	}
+
+}
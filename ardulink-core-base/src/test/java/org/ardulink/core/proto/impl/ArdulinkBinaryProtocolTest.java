@@ -0,0 +1,221 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.proto.impl;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.proto.impl.ArdulinkBinaryProtocol.SYNC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNull.nullValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.StreamConnection;
+import org.ardulink.core.StreamReader;
+import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.EventListenerAdapter;
+import org.ardulink.core.proto.api.MessageIdHolders;
+import org.ardulink.core.proto.impl.ArdulinkBinaryProtocol.FrameBuilder;
+import org.ardulink.core.proto.impl.ArdulinkBinaryProtocol.Opcode;
+import org.ardulink.core.qos.ConnectionBasedQosLink;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class ArdulinkBinaryProtocolTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(5, SECONDS);
+
+	private final ArdulinkBinaryProtocol protocol = new ArdulinkBinaryProtocol(
+			false);
+
+	@Test
+	public void pinEventsAreEncodedAsVarints() {
+		byte[] bytes = protocol.toArduino(new DefaultToArduinoPinEvent(
+				analogPin(9), 255));
+		// 255 zigzag encoded is 510 which is 0xFE 0x03 as varint
+		assertThat(bytes, is(new byte[] { SYNC, 4, 0x02, 9, (byte) 0xFE, 3 }));
+	}
+
+	@Test
+	public void messageIdIsWrittenIfPresent() {
+		byte[] bytes = protocol.toArduino(MessageIdHolders.addMessageId(
+				new DefaultToArduinoPinEvent(digitalPin(13), true), 300));
+		// 300 as varint is 0xAC 0x02
+		assertThat(bytes, is(new byte[] { SYNC, 5, 0x41, (byte) 0xAC, 2, 13,
+				1 }));
+	}
+
+	@Test
+	public void framesCanBeReadBackSkippingGarbage() throws IOException {
+		byte[] frame = new ArdulinkBinaryProtocol(true)
+				.toArduino(new DefaultToArduinoNoTone(analogPin(3)));
+		byte[] stream = new byte[frame.length + 2];
+		stream[0] = 42;
+		stream[1] = 0;
+		System.arraycopy(frame, 0, stream, 2, frame.length);
+		byte[] read = protocol.readFrame(new ByteArrayInputStream(stream));
+		assertThat(read.length, is(frame.length - 2));
+		assertThat(read[read.length - 1],
+				is(ArdulinkBinaryProtocol.crc8(read, 0, read.length - 1)));
+	}
+
+	@Test
+	public void canDecodeFramesWithAndWithoutCrc() {
+		FromArduinoPinStateChanged withoutCrc = (FromArduinoPinStateChanged) protocol
+				.fromArduino(payload(new FrameBuilder(Opcode.ANALOG_PIN_READ,
+						false, -1).unsigned(2).signed(1023)));
+		assertThat(withoutCrc.getPin(), is((Object) analogPin(2)));
+		assertThat(withoutCrc.getValue(), is((Object) 1023));
+
+		FromArduinoReply withCrc = (FromArduinoReply) protocol
+				.fromArduino(payload(new FrameBuilder(Opcode.RPLY, true, 77)
+						.unsigned(1)));
+		assertThat(withCrc.isOk(), is(true));
+		assertThat(withCrc.getId(), is(77L));
+	}
+
+	@Test
+	public void canDecodeCumulativeReplies() {
+		FromArduinoCumulativeReply reply = (FromArduinoCumulativeReply) protocol
+				.fromArduino(payload(new FrameBuilder(Opcode.RPLY_UPTO, true,
+						50).unsigned(1).unsigned(2).unsigned(42).unsigned(7)));
+		assertThat(reply.getUpToId(), is(50L));
+		assertThat(reply.getNackIds(), is(new long[] { 7, 42 }));
+		assertThat(reply.isOk(41), is(true));
+		assertThat(reply.isOk(42), is(false));
+	}
+
+	@Test
+	public void corruptedFramesAreSkipped() {
+		byte[] payload = payload(new FrameBuilder(Opcode.ANALOG_PIN_READ,
+				true, -1).unsigned(2).signed(1023));
+		payload[1] ^= 0x01;
+		assertThat(protocol.fromArduino(payload), nullValue());
+	}
+
+	@Test
+	public void truncatedFramesAreSkipped() {
+		assertThat(protocol.fromArduino(payload(new FrameBuilder(
+				Opcode.ANALOG_PIN_READ, false, -1).unsigned(2))), nullValue());
+	}
+
+	@Test
+	public void resynchronizesAfterCorruptLength() throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		// a ten byte varint exceeding the range of long
+		stream.write(new byte[] { SYNC, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1 });
+		stream.write(new FrameBuilder(Opcode.READY, true, -1).toBytes());
+		InputStream in = new ByteArrayInputStream(stream.toByteArray());
+		assertThat(protocol.readFrame(in).length, is(0));
+		assertThat(protocol.fromArduino(protocol.readFrame(in)),
+				instanceOf(FromArduinoReady.class));
+		assertThat(protocol.readFrame(in), nullValue());
+	}
+
+	@Test
+	public void linkReceivesPinChanges() throws Exception {
+		PipedOutputStream arduino = new PipedOutputStream();
+		PipedInputStream in = new PipedInputStream(arduino);
+		ConnectionBasedLink link = new ConnectionBasedLink(
+				new StreamConnection(in, new ByteArrayOutputStream(),
+						protocol), protocol);
+		try {
+			final BlockingQueue<AnalogPinValueChangedEvent> events = new LinkedBlockingQueue<AnalogPinValueChangedEvent>();
+			link.addListener(new EventListenerAdapter() {
+				@Override
+				public void stateChanged(AnalogPinValueChangedEvent event) {
+					events.add(event);
+				}
+			});
+			arduino.write(new FrameBuilder(Opcode.ANALOG_PIN_READ, true, -1)
+					.unsigned(5).signed(42).toBytes());
+			arduino.flush();
+			AnalogPinValueChangedEvent event = events.take();
+			assertThat(event.getPin(), is(analogPin(5)));
+			assertThat(event.getValue(), is(42));
+		} finally {
+			link.close();
+		}
+	}
+
+	@Test
+	public void qosLinkWorksOnTopOfBinaryProtocol() throws Exception {
+		PipedOutputStream toLink = new PipedOutputStream();
+		PipedInputStream linkIn = new PipedInputStream(toLink);
+		PipedOutputStream linkOut = new PipedOutputStream();
+		PipedInputStream arduinoIn = new PipedInputStream(linkOut);
+		final PipedOutputStream arduinoOut = toLink;
+
+		StreamReader arduino = new StreamReader(arduinoIn) {
+			@Override
+			protected void received(byte[] bytes) throws Exception {
+				// answer each message with an ok reply carrying its id
+				long id = 0;
+				int i = 1;
+				int shift = 0;
+				do {
+					id |= (long) (bytes[i] & 0x7F) << shift;
+					shift += 7;
+				} while ((bytes[i++] & 0x80) != 0);
+				arduinoOut.write(new FrameBuilder(Opcode.RPLY, true, id)
+						.unsigned(1).toBytes());
+				arduinoOut.flush();
+			}
+		};
+		arduino.runReaderThread(protocol);
+		ConnectionBasedQosLink link = new ConnectionBasedQosLink(
+				new StreamConnection(linkIn, linkOut, protocol), protocol);
+		try {
+			link.switchAnalogPin(analogPin(9), 128);
+			link.switchDigitalPin(digitalPin(13), true);
+		} finally {
+			link.close();
+			arduino.close();
+		}
+	}
+
+	private static byte[] payload(FrameBuilder frameBuilder) {
+		try {
+			return new ArdulinkBinaryProtocol().readFrame(new ByteArrayInputStream(
+					frameBuilder.toBytes()));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
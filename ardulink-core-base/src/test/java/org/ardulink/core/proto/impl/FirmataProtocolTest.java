@@ -0,0 +1,198 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.proto.impl;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.StreamConnection;
+import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.DigitalPinValueChangedEvent;
+import org.ardulink.core.events.EventListenerAdapter;
+import org.ardulink.core.events.PinValueChangedEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class FirmataProtocolTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(5, SECONDS);
+
+	private final FirmataProtocol protocol = new FirmataProtocol();
+
+	@Test
+	public void pinModeIsOnlySentWhenChanged() {
+		assertThat(protocol.toArduino(new DefaultToArduinoPinEvent(
+				digitalPin(10), true)), is(bytes(0xF4, 10, 1, 0x91, 4, 0)));
+		assertThat(protocol.toArduino(new DefaultToArduinoPinEvent(
+				digitalPin(15), true)), is(bytes(0xF4, 15, 1, 0x91, 4, 1)));
+		assertThat(protocol.toArduino(new DefaultToArduinoPinEvent(
+				digitalPin(10), false)), is(bytes(0x91, 0, 1)));
+	}
+
+	@Test
+	public void analogValuesAreWrittenAsPwm() {
+		assertThat(protocol.toArduino(new DefaultToArduinoPinEvent(
+				analogPin(9), 255)), is(bytes(0xF4, 9, 3, 0xE9, 0x7F, 1)));
+		assertThat(protocol.toArduino(new DefaultToArduinoPinEvent(
+				analogPin(20), 128)), is(bytes(0xF4, 20, 3, 0xF0, 0x6F, 20, 0,
+				1, 0xF7)));
+	}
+
+	@Test
+	public void digitalPortIsReportedWhileAnyPinIsListened() {
+		assertThat(
+				protocol.toArduino(new DefaultToArduinoStartListening(
+						digitalPin(2))), is(bytes(0xF4, 2, 0, 0xD0, 1)));
+		assertThat(
+				protocol.toArduino(new DefaultToArduinoStartListening(
+						digitalPin(3))), is(bytes(0xF4, 3, 0, 0xD0, 1)));
+		assertThat(
+				protocol.toArduino(new DefaultToArduinoStopListening(
+						digitalPin(2))), is(bytes()));
+		assertThat(
+				protocol.toArduino(new DefaultToArduinoStopListening(
+						digitalPin(3))), is(bytes(0xD0, 0)));
+	}
+
+	@Test
+	public void analogReports() {
+		assertThat(
+				protocol.toArduino(new DefaultToArduinoStartListening(
+						analogPin(5))), is(bytes(0xC5, 1)));
+		assertThat(
+				protocol.toArduino(new DefaultToArduinoStopListening(
+						analogPin(5))), is(bytes(0xC5, 0)));
+	}
+
+	@Test
+	public void customMessagesAreSentAsStringData() {
+		assertThat(protocol.toArduino(new DefaultToArduinoCustomMessage("a",
+				"b")), is(bytes(0xF0, 0x71, 'a', 0, '/', 0, 'b', 0, 0xF7)));
+	}
+
+	@Test
+	public void portMessagesAreSplitIntoChangesOfListenedPins()
+			throws IOException {
+		protocol.toArduino(new DefaultToArduinoStartListening(digitalPin(9)));
+		protocol.toArduino(new DefaultToArduinoStartListening(digitalPin(11)));
+		InputStream in = new ByteArrayInputStream(bytes(
+		// initial state of port 1: pin 9 high
+				0x91, 0x02, 0,
+				// pin 8 (not listened) changes
+				0x91, 0x03, 0,
+				// pin 11 changes
+				0x91, 0x0B, 0));
+		assertThat(read(in), is("D9=true"));
+		assertThat(read(in), is("D11=false"));
+		assertThat(read(in), is("D11=true"));
+		assertThat(protocol.readFrame(in), nullValue());
+	}
+
+	@Test
+	public void unknownMessagesAndGarbageAreSkipped() throws IOException {
+		InputStream in = new ByteArrayInputStream(bytes(
+		// garbage
+				0x12, 0x34,
+				// firmware report sysex
+				0xF0, 0x79, 2, 5, 'x', 0, 0xF7,
+				// analog message interrupted by another one
+				0xE0, 0x01, 0xE3, 0x7F, 0x07,
+				// version
+				0xF9, 2, 5));
+		assertThat(read(in), is("A3=1023"));
+		assertThat(
+				protocol.fromArduino(protocol.readFrame(in)) instanceof FromArduinoReady,
+				is(true));
+		assertThat(protocol.readFrame(in), nullValue());
+	}
+
+	@Test
+	public void linkReceivesPinChanges() throws Exception {
+		PipedOutputStream arduino = new PipedOutputStream();
+		PipedInputStream in = new PipedInputStream(arduino);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ConnectionBasedLink link = new ConnectionBasedLink(
+				new StreamConnection(in, out, protocol), protocol);
+		try {
+			final BlockingQueue<PinValueChangedEvent> events = new LinkedBlockingQueue<PinValueChangedEvent>();
+			link.addListener(new EventListenerAdapter() {
+				@Override
+				public void stateChanged(AnalogPinValueChangedEvent event) {
+					events.add(event);
+				}
+
+				@Override
+				public void stateChanged(DigitalPinValueChangedEvent event) {
+					events.add(event);
+				}
+			});
+			link.startListening(digitalPin(4));
+			assertThat(out.toByteArray(), is(bytes(0xF4, 4, 0, 0xD0, 1)));
+			arduino.write(bytes(0xE2, 0x2A, 0, 0x90, 0x10, 0));
+			arduino.flush();
+			PinValueChangedEvent event = events.take();
+			assertThat(event.getPin(), is((Object) analogPin(2)));
+			assertThat(event.getValue(), is((Object) 42));
+			event = events.take();
+			assertThat(event.getPin(), is((Object) digitalPin(4)));
+			assertThat(event.getValue(), is((Object) true));
+		} finally {
+			link.close();
+		}
+	}
+
+	private String read(InputStream in) throws IOException {
+		FromArduinoPinStateChanged changed = (FromArduinoPinStateChanged) protocol
+				.fromArduino(protocol.readFrame(in));
+		return (changed.getPin().getType().name().charAt(0))
+				+ String.valueOf(changed.getPin().pinNum()) + "="
+				+ changed.getValue();
+	}
+
+	private static byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+
+}
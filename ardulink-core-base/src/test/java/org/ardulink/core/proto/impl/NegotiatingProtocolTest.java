@@ -0,0 +1,210 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.proto.impl;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNull.nullValue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Arrays;
+
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.StreamConnection;
+import org.ardulink.core.proto.impl.ArdulinkBinaryProtocol.FrameBuilder;
+import org.ardulink.core.proto.impl.ArdulinkBinaryProtocol.Opcode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class NegotiatingProtocolTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(5, SECONDS);
+
+	private final NegotiatingProtocol protocol = new NegotiatingProtocol();
+
+	@Test
+	public void detectsArdulinkProtocol2() throws IOException {
+		InputStream in = stream("garbage\nalp://ared/1/42\n".getBytes());
+		FromArduinoPinStateChanged changed = (FromArduinoPinStateChanged) protocol
+				.fromArduino(protocol.readFrame(in));
+		assertThat(changed.getValue(), is((Object) 42));
+		assertThat(protocol.getDetected(), instanceOf(ArdulinkProtocol2.class));
+		assertThat(protocol.readFrame(in), nullValue());
+	}
+
+	@Test
+	public void detectsBinaryProtocol() throws IOException {
+		InputStream in = stream(new FrameBuilder(Opcode.READY, true, -1)
+				.toBytes());
+		assertThat(protocol.fromArduino(protocol.readFrame(in)),
+				instanceOf(FromArduinoReady.class));
+		assertThat(protocol.getDetected(),
+				instanceOf(ArdulinkBinaryProtocol.class));
+	}
+
+	@Test
+	public void detectsFirmata() throws IOException {
+		InputStream in = stream(new byte[] { 0x12, (byte) 0xF9, 2, 5 });
+		assertThat(protocol.fromArduino(protocol.readFrame(in)),
+				instanceOf(FromArduinoReady.class));
+		assertThat(protocol.getDetected(), instanceOf(FirmataProtocol.class));
+	}
+
+	@Test
+	public void framesThatCannotBeDecodedDoNotLeadToDetection()
+			throws IOException {
+		// "a" starts an ALP frame but "another line" cannot be decoded
+		InputStream in = stream("another line\nalp://ready/\n".getBytes());
+		assertThat(protocol.fromArduino(protocol.readFrame(in)),
+				instanceOf(FromArduinoReady.class));
+		assertThat(protocol.getDetected(), instanceOf(ArdulinkProtocol2.class));
+	}
+
+	@Test
+	public void strayFrameStartDoesNotSwallowFollowingFrames()
+			throws IOException {
+		// 0xA5 starts a binary frame of 0x61 ('a') bytes
+		InputStream in = stream("\u00A5alp://rply/ok?id=1\n"
+				.getBytes("ISO-8859-1"));
+		assertThat(protocol.fromArduino(protocol.readFrame(in)),
+				instanceOf(FromArduinoReply.class));
+		assertThat(protocol.getDetected(), instanceOf(ArdulinkProtocol2.class));
+	}
+
+	@Test
+	public void unterminatedFrameIsProbedOnlyUpToALimit() throws IOException {
+		byte[] bytes = new byte[4096];
+		// a Firmata sysex start followed by data bytes but no sysex end
+		bytes[0] = (byte) 0xF0;
+		Arrays.fill(bytes, 1, bytes.length, (byte) 'x');
+		byte[] line = "alp://ready/\n".getBytes();
+		System.arraycopy(line, 0, bytes, 2000, line.length);
+		InputStream in = stream(bytes);
+		assertThat(protocol.fromArduino(protocol.readFrame(in)),
+				instanceOf(FromArduinoReady.class));
+	}
+
+	@Test
+	public void detectsProtocolsWithMultiByteSeparators() throws IOException {
+		NegotiatingProtocol protocol = new NegotiatingProtocol(
+				new ArdulinkProtocol2() {
+					@Override
+					public byte[] getSeparator() {
+						return "\r\n".getBytes();
+					}
+				});
+		InputStream in = stream("alp://ready/\r\r\n".getBytes());
+		assertThat(protocol.readFrame(in), is("alp://ready/\r".getBytes()));
+	}
+
+	@Test
+	public void framesProbedAreNotCountedAsMalformed() throws Exception {
+		PipedOutputStream arduino = new PipedOutputStream();
+		PipedInputStream in = new PipedInputStream(arduino);
+		ConnectionBasedLink link = new ConnectionBasedLink(
+				new StreamConnection(in, answerPing(arduino,
+						"another line\nalp://ready/\n".getBytes()), protocol),
+				protocol);
+		try {
+			assertThat(link.waitForArduinoToBoot(3, SECONDS), is(true));
+			assertThat(link.getMalformedFrames(), is(0L));
+		} finally {
+			link.close();
+		}
+	}
+
+	@Test
+	public void usesFallbackUntilDetected() throws IOException {
+		DefaultToArduinoNoTone noTone = new DefaultToArduinoNoTone(
+				analogPin(3));
+		assertThat(protocol.toArduino(noTone),
+				is(ArdulinkProtocol2.instance().toArduino(noTone)));
+
+		InputStream in = stream(new FrameBuilder(Opcode.READY, true, -1)
+				.toBytes());
+		protocol.readFrame(in);
+		assertThat(protocol.toArduino(noTone),
+				is(new ArdulinkBinaryProtocol().toArduino(noTone)));
+	}
+
+	@Test
+	public void canBeUsedByLinks() throws Exception {
+		PipedOutputStream arduino = new PipedOutputStream();
+		PipedInputStream in = new PipedInputStream(arduino);
+		ConnectionBasedLink link = new ConnectionBasedLink(
+				new StreamConnection(in, answerPing(arduino, new FrameBuilder(
+						Opcode.READY, true, -1).toBytes()), protocol), protocol);
+		try {
+			assertThat(link.waitForArduinoToBoot(3, SECONDS), is(true));
+			assertThat(protocol.getDetected(),
+					instanceOf(ArdulinkBinaryProtocol.class));
+		} finally {
+			link.close();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void cannotDecodeBeforeDetection() {
+		protocol.fromArduino("alp://ready/".getBytes());
+	}
+
+	/**
+	 * Lets the arduino answer the first ping, the answer written earlier could
+	 * arrive before the link waits for it.
+	 */
+	private static OutputStream answerPing(final OutputStream arduino,
+			final byte[] answer) {
+		return new OutputStream() {
+
+			private boolean answered;
+
+			@Override
+			public void write(int b) throws IOException {
+				if (!answered && b == '\n') {
+					answered = true;
+					arduino.write(answer);
+					arduino.flush();
+				}
+			}
+
+		};
+	}
+
+	private static InputStream stream(byte[] bytes) {
+		return new BufferedInputStream(new ByteArrayInputStream(bytes));
+	}
+
+}
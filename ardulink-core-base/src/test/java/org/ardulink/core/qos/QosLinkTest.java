@@ -19,12 +19,22 @@ package org.ardulink.core.qos;
 import static org.ardulink.core.Pin.analogPin;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.StringContains.containsString;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.junit.After;
@@ -33,9 +43,14 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.Timeout;
 
+import org.ardulink.core.AbstractConnection;
 import org.ardulink.core.Connection;
 import org.ardulink.core.StreamConnection;
 import org.ardulink.core.Tone;
+import org.ardulink.core.async.AsyncLink;
+import org.ardulink.core.async.ReplyFuture;
+import org.ardulink.core.events.RplyEvent;
+import org.ardulink.core.events.RplyListener;
 import org.ardulink.core.proto.impl.ArdulinkProtocol2;
 
 /**
@@ -122,6 +137,281 @@ public class QosLinkTest {
 				.withDuration(6, MILLISECONDS));
 	}
 
+	@Test
+	public void repliesCanArriveInAnyOrderWithinTheWindow() throws Exception {
+		arduino.whenReceive(regex("alp:\\/\\/notn\\/\\d\\?id\\=(\\d)"))
+				.thenDoNotRespond();
+		qosLink = new ConnectionBasedQosLink(connectionTo(arduino),
+				ArdulinkProtocol2.instance(), 15, MINUTES, 3);
+		AsyncLink async = qosLink.async();
+		ReplyFuture first = async.sendNoTone(analogPin(1));
+		ReplyFuture second = async.sendNoTone(analogPin(2));
+		ReplyFuture third = async.sendNoTone(analogPin(3));
+		assertThat(qosLink.getInFlightCount(), is(3));
+
+		arduino.send("alp://rply/ok?id=3");
+		arduino.send("alp://rply/ko?id=1");
+		arduino.send("alp://rply/ok?id=2");
+		assertThat(third.get().getId(), is(3L));
+		assertThat(second.get().getId(), is(2L));
+		try {
+			first.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause().getMessage(), containsString("not ok"));
+		}
+		assertThat(qosLink.getInFlightCount(), is(0));
+	}
+
+	@Test
+	public void sendingBlocksWhileTheWindowIsFull() throws Exception {
+		arduino.whenReceive(regex("alp:\\/\\/notn\\/\\d\\?id\\=(\\d)"))
+				.thenDoNotRespond();
+		qosLink = new ConnectionBasedQosLink(connectionTo(arduino),
+				ArdulinkProtocol2.instance(), 200, MILLISECONDS, 1);
+		AsyncLink async = qosLink.async();
+		ReplyFuture first = async.sendNoTone(analogPin(1));
+		long start = System.nanoTime();
+		async.sendNoTone(analogPin(2));
+		assertThat(first.isDone(), is(true));
+		assertThat(NANOSECONDS.toMillis(System.nanoTime() - start) >= 150,
+				is(true));
+	}
+
+	@Test
+	public void retransmitsMessagesWhoseReplyGotLost() throws Exception {
+		final Set<String> received = new HashSet<String>();
+		Connection connection = new AbstractConnection() {
+			@Override
+			public void write(byte[] bytes) throws IOException {
+				String message = new String(bytes).trim();
+				// the reply to the first transmission of notn/9 gets lost
+				if (received.add(message) && message.startsWith("alp://notn/9")) {
+					return;
+				}
+				contactListeners4Received(("alp://rply/ok?id=" + message
+						.substring(message.indexOf("id=") + 3)).getBytes());
+			}
+
+			@Override
+			public void close() throws IOException {
+				// nothing to close
+			}
+		};
+		qosLink = new ConnectionBasedQosLink(connection,
+				ArdulinkProtocol2.instance(), 5, SECONDS, 1, 3);
+		for (int i = 0; i < 10; i++) {
+			qosLink.sendNoTone(analogPin(1));
+		}
+		assertThat(qosLink.getRetransmissionTimeout(MILLISECONDS) < 100,
+				is(true));
+
+		long start = System.nanoTime();
+		qosLink.sendNoTone(analogPin(9));
+		assertThat(NANOSECONDS.toMillis(System.nanoTime() - start) < 500,
+				is(true));
+		assertThat(qosLink.getRetransmissionCount(), is(1L));
+	}
+
+	@Test
+	public void backedOffTimeoutIsKeptUntilTheNextRoundTripIsMeasured()
+			throws Exception {
+		qosLink = new ConnectionBasedQosLink(losingFirstReplyOf("alp://notn/9"),
+				ArdulinkProtocol2.instance(), 5, SECONDS, 1, 3);
+		for (int i = 0; i < 10; i++) {
+			qosLink.sendNoTone(analogPin(1));
+		}
+		long timeout = qosLink.getRetransmissionTimeout(NANOSECONDS);
+
+		// the reply of the retransmission is not measured
+		qosLink.sendNoTone(analogPin(9));
+		assertThat(qosLink.getRetransmissionCount(), is(1L));
+		assertThat(qosLink.getRetransmissionTimeout(NANOSECONDS),
+				is(2 * timeout));
+
+		qosLink.sendNoTone(analogPin(1));
+		assertThat(qosLink.getRetransmissionTimeout(NANOSECONDS) < 2 * timeout,
+				is(true));
+	}
+
+	@Test
+	public void nonIdempotentMessagesAreNotRetransmitted() throws Exception {
+		qosLink = new ConnectionBasedQosLink(
+				losingFirstReplyOf("alp://tone/"),
+				ArdulinkProtocol2.instance(), 300, MILLISECONDS, 1, 3);
+		for (int i = 0; i < 10; i++) {
+			qosLink.sendNoTone(analogPin(1));
+		}
+		try {
+			qosLink.sendTone(Tone.forPin(analogPin(4)).withHertz(5)
+					.withDuration(6, MILLISECONDS));
+			fail();
+		} catch (IllegalStateException e) {
+			assertThat(e.getMessage(), containsString("No response"));
+		}
+		assertThat(qosLink.getRetransmissionCount(), is(0L));
+	}
+
+	@Test
+	public void stalledLinkDoesNotDelayTheTimeoutsOfOtherLinks()
+			throws Exception {
+		final CountDownLatch stalled = new CountDownLatch(1);
+		final CountDownLatch released = new CountDownLatch(1);
+		Connection stalling = new AbstractConnection() {
+
+			private int writes;
+
+			@Override
+			public synchronized void write(byte[] bytes) throws IOException {
+				// the retransmission blocks like a stalled port
+				if (writes++ > 0) {
+					stalled.countDown();
+					try {
+						released.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				// nothing to close
+			}
+		};
+		ConnectionBasedQosLink stallingLink = new ConnectionBasedQosLink(
+				stalling, ArdulinkProtocol2.instance(), 5, SECONDS, 1, 1);
+		try {
+			stallingLink.async().sendNoTone(analogPin(1));
+			stalled.await();
+			qosLink = new ConnectionBasedQosLink(silentConnection(),
+					ArdulinkProtocol2.instance(), 200, MILLISECONDS);
+			exceptions.expect(IllegalStateException.class);
+			exceptions.expectMessage(containsString("No response"));
+			qosLink.sendNoTone(analogPin(2));
+		} finally {
+			released.countDown();
+			stallingLink.close();
+		}
+	}
+
+	@Test
+	public void burstCanBeConfirmedByOneCumulativeReply() throws Exception {
+		class SilentConnection extends AbstractConnection {
+			@Override
+			public void write(byte[] bytes) throws IOException {
+				// replies are sent by the test
+			}
+
+			void reply(String reply) {
+				contactListeners4Received(reply.getBytes());
+			}
+
+			@Override
+			public void close() throws IOException {
+				// nothing to close
+			}
+		}
+		SilentConnection connection = new SilentConnection();
+		qosLink = new ConnectionBasedQosLink(connection,
+				ArdulinkProtocol2.instance(), 15, MINUTES, 64);
+		final AtomicInteger okEvents = new AtomicInteger();
+		qosLink.addRplyListener(new RplyListener() {
+			@Override
+			public void rplyReceived(RplyEvent event) {
+				if (event.isOk()) {
+					okEvents.incrementAndGet();
+				}
+			}
+		});
+		AsyncLink async = qosLink.async();
+		List<ReplyFuture> futures = new ArrayList<ReplyFuture>();
+		for (int i = 0; i < 50; i++) {
+			futures.add(async.switchAnalogPin(analogPin(3), i));
+		}
+		assertThat(qosLink.getInFlightCount(), is(50));
+
+		connection.reply("alp://rply/ok?upto=50&nack=7");
+		assertThat(qosLink.getInFlightCount(), is(0));
+		assertThat(okEvents.get(), is(49));
+		for (ReplyFuture future : futures) {
+			assertThat(future.isDone(), is(true));
+		}
+		try {
+			futures.get(6).get();
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause().getMessage(), containsString("not ok"));
+		}
+	}
+
+	@Test
+	public void pinSwitchesAreSentInOrderWithoutConflation() throws Exception {
+		final List<String> written = new ArrayList<String>();
+		Connection connection = new AbstractConnection() {
+			@Override
+			public void write(byte[] bytes) throws IOException {
+				// replies are not sent, the window is large enough
+				written.add(new String(bytes).trim());
+			}
+
+			@Override
+			public void close() throws IOException {
+				// nothing to close
+			}
+		};
+		qosLink = new ConnectionBasedQosLink(connection,
+				ArdulinkProtocol2.instance(), 15, MINUTES, 8);
+		AsyncLink async = qosLink.async();
+		for (int i = 0; i < 5; i++) {
+			async.switchAnalogPin(analogPin(3), i);
+		}
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 5; i++) {
+			expected.add("alp://ppin/3/" + i + "?id=" + (i + 1));
+		}
+		assertThat(written, is(expected));
+		assertThat(qosLink.getConflatedCount(), is(0L));
+	}
+
+	/**
+	 * Replies to all messages but the first transmission of the messages
+	 * starting with the passed prefix.
+	 */
+	private static Connection losingFirstReplyOf(final String prefix) {
+		final Set<String> received = new HashSet<String>();
+		return new AbstractConnection() {
+			@Override
+			public void write(byte[] bytes) throws IOException {
+				String message = new String(bytes).trim();
+				if (received.add(message) && message.startsWith(prefix)) {
+					return;
+				}
+				contactListeners4Received(("alp://rply/ok?id=" + message
+						.substring(message.indexOf("id=") + 3)).getBytes());
+			}
+
+			@Override
+			public void close() throws IOException {
+				// nothing to close
+			}
+		};
+	}
+
+	private static Connection silentConnection() {
+		return new AbstractConnection() {
+			@Override
+			public void write(byte[] bytes) throws IOException {
+				// never replied
+			}
+
+			@Override
+			public void close() throws IOException {
+				// nothing to close
+			}
+		};
+	}
+
 	private StreamConnection connectionTo(Arduino arduino) {
 		return new StreamConnection(arduino.getInputStream(),
 				arduino.getOutputStream(), ArdulinkProtocol2.instance());
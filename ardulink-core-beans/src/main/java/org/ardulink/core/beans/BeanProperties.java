@@ -25,6 +25,8 @@ import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.ardulink.util.Optional;
 
@@ -32,10 +34,17 @@ import org.ardulink.core.beans.Attribute.AttributeReader;
 import org.ardulink.core.beans.Attribute.AttributeWriter;
 import org.ardulink.core.beans.Attribute.TypedAttributeProvider;
 import org.ardulink.core.beans.finder.api.AttributeFinder;
+import org.ardulink.core.beans.finder.impl.FindByAnnotation;
+import org.ardulink.core.beans.finder.impl.FindByFieldAccess;
+import org.ardulink.core.beans.finder.impl.FindByIntrospection;
 
 /**
  * [ardulinktitle] [ardulinkversion]
  * 
+ * Gives access to the attributes of a bean found by the
+ * {@link AttributeFinder}s. The attributes are resolved once per name, reading
+ * and writing them afterwards does not search the bean again.
+ * 
  * project Ardulink http://www.ardulink.org/
  * 
  * [adsense]
@@ -69,6 +78,7 @@ public class BeanProperties {
 		private final Class<?> type;
 		private final AttributeReader reader;
 		private final AttributeWriter writer;
+		private volatile Annotation[] annotations;
 
 		public DefaultAttribute(String name, Class<?> type,
 				AttributeReader reader, AttributeWriter writer) {
@@ -112,19 +122,28 @@ public class BeanProperties {
 
 		@Override
 		public Annotation[] getAnnotations() {
-			Set<Annotation> annos = new LinkedHashSet<Annotation>();
-			if (reader != null) {
-				reader.addAnnotations(annos);
-			}
-			if (writer != null) {
-				writer.addAnnotations(annos);
+			return annotations().clone();
+		}
+
+		private Annotation[] annotations() {
+			Annotation[] result = annotations;
+			if (result == null) {
+				Set<Annotation> annos = new LinkedHashSet<Annotation>();
+				if (reader != null) {
+					reader.addAnnotations(annos);
+				}
+				if (writer != null) {
+					writer.addAnnotations(annos);
+				}
+				annotations = result = annos.toArray(new Annotation[annos
+						.size()]);
 			}
-			return annos.toArray(new Annotation[annos.size()]);
+			return result;
 		}
 
 		@Override
 		public <T extends Annotation> T getAnnotation(Class<T> annotationClass) {
-			for (Annotation annotation : getAnnotations()) {
+			for (Annotation annotation : annotations()) {
 				if (annotation.annotationType().equals(annotationClass)) {
 					return annotationClass.cast(annotation);
 				}
@@ -136,12 +155,25 @@ public class BeanProperties {
 
 	private final Object bean;
 	private final AttributeFinder[] finders;
+	private final ConcurrentMap<String, Attribute> attributes = new ConcurrentHashMap<String, Attribute>();
+	private volatile List<String> attributeNames;
 
 	private BeanProperties(final Builder builder) {
 		this.bean = builder.bean;
 		this.finders = builder.finders.clone();
 	}
 
+	/**
+	 * Discards the accessors the finders cached per class. The caches
+	 * reference the classes (by their methods and fields), so they have to be
+	 * cleared when the class loader of beans gets discarded.
+	 */
+	public static void clearCaches() {
+		FindByIntrospection.clearCache();
+		FindByAnnotation.clearCache();
+		FindByFieldAccess.clearCache();
+	}
+
 	public static BeanProperties forBean(final Object bean) {
 		return builder(bean).using(beanAttributes()).build();
 	}
@@ -151,6 +183,18 @@ public class BeanProperties {
 	}
 
 	public Attribute getAttribute(final String name) {
+		Attribute attribute = attributes.get(name);
+		if (attribute == null) {
+			attribute = findAttribute(name);
+			if (attribute != null) {
+				Attribute existing = attributes.putIfAbsent(name, attribute);
+				attribute = existing == null ? attribute : existing;
+			}
+		}
+		return attribute;
+	}
+
+	private Attribute findAttribute(final String name) {
 		try {
 			Optional<AttributeReader> reader = findReader(name);
 			Optional<AttributeWriter> writer = findWriter(name);
@@ -211,12 +255,17 @@ public class BeanProperties {
 	}
 
 	public Collection<String> attributeNames() throws Exception {
-		Set<String> attributeNames = new LinkedHashSet<String>();
-		for (AttributeFinder finder : finders) {
-			attributeNames.addAll(namesOf(finder.listReaders(bean)));
-			attributeNames.addAll(namesOf(finder.listWriters(bean)));
+		List<String> names = this.attributeNames;
+		if (names == null) {
+			Set<String> attributeNames = new LinkedHashSet<String>();
+			for (AttributeFinder finder : finders) {
+				attributeNames.addAll(namesOf(finder.listReaders(bean)));
+				attributeNames.addAll(namesOf(finder.listWriters(bean)));
+			}
+			this.attributeNames = names = new ArrayList<String>(
+					attributeNames);
 		}
-		return new ArrayList<String>(attributeNames);
+		return new ArrayList<String>(names);
 	}
 
 	private Collection<? extends String> namesOf(
@@ -27,11 +27,13 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import org.ardulink.util.Optional;
 import org.ardulink.core.beans.Attribute.AttributeReader;
 import org.ardulink.core.beans.Attribute.AttributeWriter;
 import org.ardulink.core.beans.finder.api.AttributeFinder;
@@ -39,6 +41,10 @@ import org.ardulink.core.beans.finder.api.AttributeFinder;
 /**
  * [ardulinktitle] [ardulinkversion]
  * 
+ * Finds the attributes by annotated methods and fields. The annotated members
+ * of each class are searched once and cached, finders are shared per
+ * annotation and annotation attribute.
+ * 
  * project Ardulink http://www.ardulink.org/
  * 
  * [adsense]
@@ -116,8 +122,25 @@ public class FindByAnnotation implements AttributeFinder {
 
 	}
 
+	/**
+	 * Creates the accessor of a cached member for a bean.
+	 */
+	private interface Binding<T> {
+		T bind(Object bean);
+	}
+
+	private static class Members {
+
+		private final List<Binding<? extends AttributeReader>> readers = new ArrayList<Binding<? extends AttributeReader>>();
+		private final List<Binding<? extends AttributeWriter>> writers = new ArrayList<Binding<? extends AttributeWriter>>();
+
+	}
+
+	private static final ConcurrentMap<List<Object>, FindByAnnotation> instances = new ConcurrentHashMap<List<Object>, FindByAnnotation>();
+
 	private final Class<? extends Annotation> annotationClass;
 	private final Method getAnnotationsAttributeReadMethod;
+	private final ConcurrentMap<Class<?>, Members> members = new ConcurrentHashMap<Class<?>, Members>();
 
 	private FindByAnnotation(Class<? extends Annotation> annotationClass,
 			String annotationAttribute) {
@@ -152,89 +175,155 @@ public class FindByAnnotation implements AttributeFinder {
 	public static AttributeFinder propertyAnnotated(
 			Class<? extends Annotation> annotationClass,
 			String annotationAttribute) {
-		return new FindByAnnotation(annotationClass, annotationAttribute);
+		List<Object> key = Arrays.<Object> asList(annotationClass,
+				annotationAttribute);
+		FindByAnnotation finder = instances.get(key);
+		if (finder == null) {
+			FindByAnnotation newFinder = new FindByAnnotation(annotationClass,
+					annotationAttribute);
+			finder = instances.putIfAbsent(key, newFinder);
+			if (finder == null) {
+				finder = newFinder;
+			}
+		}
+		return finder;
+	}
+
+	/**
+	 * Discards the members cached by all finders, so classes of a discarded
+	 * class loader can be unloaded.
+	 */
+	public static void clearCache() {
+		for (FindByAnnotation finder : instances.values()) {
+			finder.members.clear();
+		}
+		instances.clear();
 	}
 
 	@Override
 	public Iterable<? extends AttributeReader> listReaders(Object bean)
 			throws Exception {
-		List<AttributeReader> readers = new ArrayList<AttributeReader>();
-		for (Method method : bean.getClass().getDeclaredMethods()) {
-			if (method.isAnnotationPresent(annotationClass)
-					&& isReadMethod(method)) {
-				readers.add(new ReadMethod(bean, annoValue(method
-						.getAnnotation(annotationClass)), method));
-			}
+		return bind(membersOf(bean.getClass()).readers, bean);
+	}
+
+	@Override
+	public Iterable<AttributeWriter> listWriters(Object bean) throws Exception {
+		return bind(membersOf(bean.getClass()).writers, bean);
+	}
+
+	private static <T> List<T> bind(List<Binding<? extends T>> bindings,
+			Object bean) {
+		List<T> bound = new ArrayList<T>(bindings.size());
+		for (Binding<? extends T> binding : bindings) {
+			bound.add(binding.bind(bean));
 		}
+		return bound;
+	}
 
-		for (Field field : bean.getClass().getDeclaredFields()) {
-			if (field.isAnnotationPresent(annotationClass)) {
-				Optional<AttributeReader> readMethodForAttribute = readMethodForAttribute(
-						bean, field.getName());
-				if (readMethodForAttribute.isPresent()) {
-					readers.add(new AttributeReaderDelegate(
-							readMethodForAttribute.get(), annoValue(field
-									.getAnnotation(annotationClass)), field));
-				} else if (isPublic(field.getModifiers())) {
-					readers.add(new FieldAccess(bean, annoValue(field
-							.getAnnotation(annotationClass)), field));
-				}
+	private Members membersOf(Class<?> type) throws Exception {
+		Members result = members.get(type);
+		if (result == null) {
+			Members newMembers = findMembers(type);
+			result = members.putIfAbsent(type, newMembers);
+			if (result == null) {
+				result = newMembers;
 			}
 		}
-		return readers;
+		return result;
 	}
 
-	@Override
-	public Iterable<AttributeWriter> listWriters(Object bean) throws Exception {
-		List<AttributeWriter> writers = new ArrayList<AttributeWriter>();
-		for (Method method : bean.getClass().getDeclaredMethods()) {
-			if (method.isAnnotationPresent(annotationClass)
-					&& isWriteMethod(method)) {
-				writers.add(new WriteMethod(bean, annoValue(method
-						.getAnnotation(annotationClass)), method));
+	private Members findMembers(Class<?> type) throws Exception {
+		Members members = new Members();
+		for (Method method : type.getDeclaredMethods()) {
+			if (method.isAnnotationPresent(annotationClass)) {
+				String name = annoValue(method.getAnnotation(annotationClass));
+				if (isReadMethod(method)) {
+					members.readers.add(readMethod(name,
+							Reflections.accessible(method)));
+				}
+				if (isWriteMethod(method)) {
+					members.writers.add(writeMethod(name,
+							Reflections.accessible(method)));
+				}
 			}
 		}
 
-		for (Field field : bean.getClass().getDeclaredFields()) {
+		for (Field field : type.getDeclaredFields()) {
 			if (field.isAnnotationPresent(annotationClass)) {
-				Optional<AttributeWriter> writeMethodForAttribute = writeMethodForAttribute(
-						bean, field.getName());
-				if (writeMethodForAttribute.isPresent()) {
-					writers.add(new AttributeWriterDelegate(
-							writeMethodForAttribute.get(), annoValue(field
-									.getAnnotation(annotationClass)), field));
+				String name = annoValue(field.getAnnotation(annotationClass));
+				Method readMethod = FindByIntrospection.readMethod(type,
+						field.getName());
+				Method writeMethod = FindByIntrospection.writeMethod(type,
+						field.getName());
+				if (readMethod != null) {
+					members.readers.add(readMethod(name, field.getName(),
+							readMethod, field));
 				} else if (isPublic(field.getModifiers())) {
-					writers.add(new FieldAccess(bean, annoValue(field
-							.getAnnotation(annotationClass)), field));
+					members.readers.add(fieldAccess(name,
+							Reflections.accessible(field)));
+				}
+				if (writeMethod != null) {
+					members.writers.add(writeMethod(name, field.getName(),
+							writeMethod, field));
+				} else if (isPublic(field.getModifiers())) {
+					members.writers.add(fieldAccess(name,
+							Reflections.accessible(field)));
 				}
-
 			}
 		}
-		return writers;
+		return members;
 	}
 
-	private Optional<AttributeReader> readMethodForAttribute(Object bean,
-			final String name) throws Exception {
-		for (AttributeReader reader : FindByIntrospection.beanAttributes()
-				.listReaders(bean)) {
-			if (reader.getName().equals(name)) {
-				return Optional.of(reader);
+	private static Binding<AttributeReader> readMethod(final String name,
+			final Method method) {
+		return new Binding<AttributeReader>() {
+			@Override
+			public AttributeReader bind(Object bean) {
+				return new ReadMethod(bean, name, method);
 			}
-		}
-		return Optional.absent();
+		};
+	}
 
+	private static Binding<AttributeReader> readMethod(final String name,
+			final String propertyName, final Method method, final Field field) {
+		return new Binding<AttributeReader>() {
+			@Override
+			public AttributeReader bind(Object bean) {
+				return new AttributeReaderDelegate(new ReadMethod(bean,
+						propertyName, method), name, field);
+			}
+		};
 	}
 
-	private Optional<AttributeWriter> writeMethodForAttribute(Object bean,
-			final String name) throws Exception {
-		for (AttributeWriter writer : FindByIntrospection.beanAttributes()
-				.listWriters(bean)) {
-			if (writer.getName().equals(name)) {
-				return Optional.of(writer);
+	private static Binding<AttributeWriter> writeMethod(final String name,
+			final Method method) {
+		return new Binding<AttributeWriter>() {
+			@Override
+			public AttributeWriter bind(Object bean) {
+				return new WriteMethod(bean, name, method);
 			}
-		}
-		return Optional.absent();
+		};
+	}
 
+	private static Binding<AttributeWriter> writeMethod(final String name,
+			final String propertyName, final Method method, final Field field) {
+		return new Binding<AttributeWriter>() {
+			@Override
+			public AttributeWriter bind(Object bean) {
+				return new AttributeWriterDelegate(new WriteMethod(bean,
+						propertyName, method), name, field);
+			}
+		};
+	}
+
+	private static Binding<FieldAccess> fieldAccess(final String name,
+			final Field field) {
+		return new Binding<FieldAccess>() {
+			@Override
+			public FieldAccess bind(Object bean) {
+				return new FieldAccess(bean, name, field);
+			}
+		};
 	}
 
 	private String annoValue(Annotation annotation)
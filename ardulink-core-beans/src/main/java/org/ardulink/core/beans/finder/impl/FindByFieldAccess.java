@@ -21,6 +21,8 @@ import static java.lang.reflect.Modifier.isPublic;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.ardulink.core.beans.finder.api.AttributeFinder;
 
@@ -34,6 +36,8 @@ import org.ardulink.core.beans.finder.api.AttributeFinder;
  */
 public class FindByFieldAccess implements AttributeFinder {
 
+	private static final ConcurrentMap<Class<?>, List<Field>> publicFields = new ConcurrentHashMap<Class<?>, List<Field>>();
+
 	private FindByFieldAccess() {
 		super();
 	}
@@ -53,13 +57,37 @@ public class FindByFieldAccess implements AttributeFinder {
 	}
 
 	private Iterable<FieldAccess> find(Object bean) {
-		List<FieldAccess> accessors = new ArrayList<FieldAccess>();
-		for (Field field : bean.getClass().getDeclaredFields()) {
-			if (isPublic(field.getModifiers())) {
-				accessors.add(new FieldAccess(bean, field.getName(), field));
-			}
+		List<Field> fields = publicFieldsOf(bean.getClass());
+		List<FieldAccess> accessors = new ArrayList<FieldAccess>(fields.size());
+		for (Field field : fields) {
+			accessors.add(new FieldAccess(bean, field.getName(), field));
 		}
 		return accessors;
 	}
 
+	/**
+	 * Discards the fields cached, so classes of a discarded class loader can
+	 * be unloaded.
+	 */
+	public static void clearCache() {
+		publicFields.clear();
+	}
+
+	private static List<Field> publicFieldsOf(Class<?> type) {
+		List<Field> fields = publicFields.get(type);
+		if (fields == null) {
+			List<Field> newFields = new ArrayList<Field>();
+			for (Field field : type.getDeclaredFields()) {
+				if (isPublic(field.getModifiers())) {
+					newFields.add(Reflections.accessible(field));
+				}
+			}
+			fields = publicFields.putIfAbsent(type, newFields);
+			if (fields == null) {
+				fields = newFields;
+			}
+		}
+		return fields;
+	}
+
 }
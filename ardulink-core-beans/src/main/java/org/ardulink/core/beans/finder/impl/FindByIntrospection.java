@@ -20,9 +20,16 @@ import static org.ardulink.core.beans.finder.impl.ReadMethod.isReadMethod;
 import static org.ardulink.core.beans.finder.impl.WriteMethod.isWriteMethod;
 import static java.beans.Introspector.getBeanInfo;
 
+import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.ardulink.core.beans.Attribute.AttributeReader;
 import org.ardulink.core.beans.Attribute.AttributeWriter;
@@ -31,6 +38,9 @@ import org.ardulink.core.beans.finder.api.AttributeFinder;
 /**
  * [ardulinktitle] [ardulinkversion]
  * 
+ * Finds the attributes by their read and write methods. The methods of each
+ * class are introspected once and cached.
+ * 
  * project Ardulink http://www.ardulink.org/
  * 
  * [adsense]
@@ -38,8 +48,31 @@ import org.ardulink.core.beans.finder.api.AttributeFinder;
  */
 public class FindByIntrospection implements AttributeFinder {
 
+	private static class Accessors {
+
+		private final Map<String, Method> readMethods = new LinkedHashMap<String, Method>();
+		private final Map<String, Method> writeMethods = new LinkedHashMap<String, Method>();
+
+		Accessors(Class<?> type) throws IntrospectionException {
+			for (PropertyDescriptor pd : getBeanInfo(type)
+					.getPropertyDescriptors()) {
+				if (isReadMethod(pd.getReadMethod())) {
+					readMethods.put(pd.getName(),
+							Reflections.accessible(pd.getReadMethod()));
+				}
+				if (isWriteMethod(pd.getWriteMethod())) {
+					writeMethods.put(pd.getName(),
+							Reflections.accessible(pd.getWriteMethod()));
+				}
+			}
+		}
+
+	}
+
 	private static final FindByIntrospection instance = new FindByIntrospection();
 
+	private static final ConcurrentMap<Class<?>, Accessors> accessors = new ConcurrentHashMap<Class<?>, Accessors>();
+
 	public static FindByIntrospection beanAttributes() {
 		return instance;
 	}
@@ -51,13 +84,11 @@ public class FindByIntrospection implements AttributeFinder {
 	@Override
 	public Iterable<? extends AttributeReader> listReaders(Object bean)
 			throws Exception {
-		List<ReadMethod> readers = new ArrayList<ReadMethod>();
-		for (PropertyDescriptor pd : getBeanInfo(bean.getClass())
-				.getPropertyDescriptors()) {
-			if (isReadMethod(pd.getReadMethod())) {
-				readers.add(new ReadMethod(bean, pd.getName(), pd
-						.getReadMethod()));
-			}
+		Map<String, Method> readMethods = accessorsOf(bean.getClass()).readMethods;
+		List<ReadMethod> readers = new ArrayList<ReadMethod>(
+				readMethods.size());
+		for (Entry<String, Method> entry : readMethods.entrySet()) {
+			readers.add(new ReadMethod(bean, entry.getKey(), entry.getValue()));
 		}
 		return readers;
 	}
@@ -65,15 +96,54 @@ public class FindByIntrospection implements AttributeFinder {
 	@Override
 	public Iterable<? extends AttributeWriter> listWriters(Object bean)
 			throws Exception {
-		List<WriteMethod> writers = new ArrayList<WriteMethod>();
-		for (PropertyDescriptor pd : getBeanInfo(bean.getClass())
-				.getPropertyDescriptors()) {
-			if (isWriteMethod(pd.getWriteMethod())) {
-				writers.add(new WriteMethod(bean, pd.getName(), pd
-						.getWriteMethod()));
-			}
+		Map<String, Method> writeMethods = accessorsOf(bean.getClass()).writeMethods;
+		List<WriteMethod> writers = new ArrayList<WriteMethod>(
+				writeMethods.size());
+		for (Entry<String, Method> entry : writeMethods.entrySet()) {
+			writers.add(new WriteMethod(bean, entry.getKey(), entry.getValue()));
 		}
 		return writers;
 	}
 
+	/**
+	 * Returns the read method of the passed class' property.
+	 * 
+	 * @return the read method or <code>null</code> if there is none
+	 */
+	static Method readMethod(Class<?> type, String name)
+			throws IntrospectionException {
+		return accessorsOf(type).readMethods.get(name);
+	}
+
+	/**
+	 * Returns the write method of the passed class' property.
+	 * 
+	 * @return the write method or <code>null</code> if there is none
+	 */
+	static Method writeMethod(Class<?> type, String name)
+			throws IntrospectionException {
+		return accessorsOf(type).writeMethods.get(name);
+	}
+
+	/**
+	 * Discards the accessors cached, so classes of a discarded class loader
+	 * can be unloaded.
+	 */
+	public static void clearCache() {
+		accessors.clear();
+	}
+
+	private static Accessors accessorsOf(Class<?> type)
+			throws IntrospectionException {
+		Accessors result = accessors.get(type);
+		if (result == null) {
+			Accessors newAccessors = new Accessors(type);
+			result = accessors.putIfAbsent(type, newAccessors);
+			if (result == null) {
+				result = newAccessors;
+			}
+		}
+		return result;
+	}
+
 }
\ No newline at end of file
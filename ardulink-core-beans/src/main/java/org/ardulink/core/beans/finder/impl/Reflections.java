@@ -0,0 +1,49 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.beans.finder.impl;
+
+import java.lang.reflect.AccessibleObject;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+final class Reflections {
+
+	private Reflections() {
+		super();
+	}
+
+	/**
+	 * Suppresses the access checks of the passed method or field so invoking
+	 * it does not have to check the caller's access each time. If a security
+	 * manager denies this the object is returned unchanged.
+	 */
+	static <T extends AccessibleObject> T accessible(T object) {
+		try {
+			object.setAccessible(true);
+		} catch (SecurityException e) {
+			// access is checked on each call then
+		}
+		return object;
+	}
+
+}
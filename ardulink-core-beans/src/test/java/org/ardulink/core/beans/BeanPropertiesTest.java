@@ -22,6 +22,7 @@ import static org.ardulink.core.beans.finder.impl.FindByIntrospection.beanAttrib
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import static org.hamcrest.core.AllOf.allOf;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.hamcrest.core.StringContains.containsString;
 import static org.junit.Assert.assertThat;
 
@@ -276,6 +277,26 @@ public class BeanPropertiesTest {
 
 	}
 
+	@Test
+	public void attributesAreResolvedOncePerBean() throws Exception {
+		BeanWithAnnoOnField bean1 = new BeanWithAnnoOnField();
+		BeanWithAnnoOnField bean2 = new BeanWithAnnoOnField();
+		BeanProperties bp1 = BeanProperties.builder(bean1)
+				.using(propertyAnnotated(OurOwnTestAnno.class)).build();
+		BeanProperties bp2 = BeanProperties.builder(bean2)
+				.using(propertyAnnotated(OurOwnTestAnno.class)).build();
+		assertThat(propertyAnnotated(OurOwnTestAnno.class),
+				sameInstance(propertyAnnotated(OurOwnTestAnno.class)));
+		assertThat(bp1.getAttribute("foo"),
+				sameInstance(bp1.getAttribute("foo")));
+
+		// the cached metadata is bound to each bean
+		bp1.getAttribute("foo").writeValue(Arrays.asList("1"));
+		bp2.getAttribute("foo").writeValue(Arrays.asList("2"));
+		assertThat(bean1.getValues(), is(Arrays.asList("1")));
+		assertThat(bean2.getValues(), is(Arrays.asList("2")));
+	}
+
 	@Test
 	public void canFindPropertyByAnnotatedPublicField() throws Exception {
 		BeanWithAnnoOnPublicField bean = new BeanWithAnnoOnPublicField();
@@ -20,7 +20,11 @@ import javax.bluetooth.UUID;
 
 public class BluetoothDiscoveryUtil {
 
-	public static Map<String, ServiceRecord> getDevices() {
+	/**
+	 * Searches the devices offering a serial port. Since the local device
+	 * can only run one inquiry at a time concurrent calls are serialized.
+	 */
+	public static synchronized Map<String, ServiceRecord> getDevices() {
 		// TODO should be replaced by Semaphore
 		Object lock = new Object();
 		List<RemoteDevice> devices = new ArrayList<RemoteDevice>();
@@ -48,7 +48,7 @@ public class BluetoothLinkConfig implements LinkConfig {
 		this.deviceName = deviceName;
 	}
 
-	@ChoiceFor("deviceName")
+	@ChoiceFor(value = "deviceName", threadSafe = true)
 	public String[] listDevices() {
 		return BluetoothDiscoveryUtil.getDevices().keySet()
 				.toArray(EMPTY_ARRAY);
@@ -41,6 +41,8 @@ public class DigisparkLinkConfig implements LinkConfig {
 		this.deviceName = deviceName;
 	}
 
+	// not thread-safe: enumerating reinitializes libusb which is used by open
+	// connections without any locking
 	@ChoiceFor("deviceName")
 	public Set<String> listdeviceNames() {
 		try {
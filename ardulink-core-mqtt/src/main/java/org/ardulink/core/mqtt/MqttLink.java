@@ -23,6 +23,7 @@ import static org.ardulink.core.Pin.analogPin;
 import static org.ardulink.core.Pin.digitalPin;
 import static org.ardulink.util.Integers.tryParse;
 import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Threads.getThreadFactory;
 import static org.ardulink.util.Throwables.propagate;
 import static org.fusesource.mqtt.client.QoS.AT_LEAST_ONCE;
 
@@ -90,7 +91,7 @@ public class MqttLink extends AbstractListenerLink {
 				+ "([aAdD])(\\d+)\\/value\\/set");
 		this.mqttClient = newClient(config);
 		this.connection = new BlockingConnection(futureConnection());
-		new Thread() {
+		getThreadFactory().newThread(new Runnable() {
 			@Override
 			public void run() {
 				while (true) {
@@ -133,7 +134,7 @@ public class MqttLink extends AbstractListenerLink {
 				return null;
 			}
 
-		}.start();
+		}).start();
 		try {
 			connection.connect();
 			subscribe();
@@ -23,8 +23,10 @@ import static org.ardulink.util.Preconditions.checkState;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -73,8 +75,18 @@ public class ProxyConnectionToRemote implements Closeable {
 
 
 	public ProxyConnectionToRemote(String host, int port) throws UnknownHostException, IOException {
+		this(host, port, false);
+	}
+
+	/**
+	 * Opens the connection to the proxy server. Only if <code>nio</code> is
+	 * set the socket is backed by a {@link SocketChannel}: the stream adaptors
+	 * of a channel share one lock so a write would block as long as a reader
+	 * waits for data.
+	 */
+	public ProxyConnectionToRemote(String host, int port, boolean nio) throws UnknownHostException, IOException {
 		this.host = host;
-		socket = new Socket(host, port);
+		this.socket = nio ? SocketChannel.open(new InetSocketAddress(host, port)).socket() : new Socket(host, port);
 		this.scanner = new Scanner(socket.getInputStream()).useDelimiter(Pattern.quote(PROXY_CONNECTION_SEPARATOR));
 		this.printWriter = new PrintWriter(socket.getOutputStream(), false);
 	}
@@ -96,6 +108,10 @@ public class ProxyConnectionToRemote implements Closeable {
 		return socket;
 	}
 
+	public boolean isNio() {
+		return socket.getChannel() != null;
+	}
+
 	public String read() throws IOException {
 		return scanner.next();
 	}
@@ -16,8 +16,12 @@ limitations under the License.
 
 package org.ardulink.core.proxy;
 
+import static org.ardulink.util.Preconditions.checkArgument;
+
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -25,6 +29,7 @@ import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 
 import org.ardulink.core.linkmanager.LinkConfig;
+import org.ardulink.core.proto.api.FrameReader;
 import org.ardulink.core.proto.api.Protocol;
 import org.ardulink.core.proto.api.Protocols;
 import org.ardulink.core.proto.impl.ArdulinkProtocol2;
@@ -58,6 +63,9 @@ public class ProxyLinkConfig implements LinkConfig {
 	@Min(1)
 	private int speed = DEFAULT_SPEED;
 
+	@Named("nio")
+	private boolean nio;
+
 	@Named("proto")
 	private Protocol proto = ArdulinkProtocol2.instance();
 
@@ -87,17 +95,46 @@ public class ProxyLinkConfig implements LinkConfig {
 		this.speed = speed;
 	}
 
+	public boolean isNio() {
+		return nio;
+	}
+
+	public void setNio(boolean nio) {
+		this.nio = nio;
+	}
+
 	public void setProto(String proto) {
-		this.proto = Protocols.getByName(proto);
+		Protocol protocol = Protocols.getByName(proto);
+		checkArgument(isForwardable(protocol),
+				"Protocol %s cannot be forwarded by the proxy server", proto);
+		this.proto = protocol;
 	}
 
 	public String getProto() {
 		return proto == null ? null : proto.getName();
 	}
 
+	/**
+	 * The proxy server forwards the bytes between the separators of
+	 * {@link ArdulinkProtocol2} and opens the remote link using that protocol,
+	 * so only protocols using the same separator and not reading their frames
+	 * on their own (see {@link FrameReader}) can be used.
+	 */
 	@ChoiceFor("proto")
 	public List<String> getProtos() {
-		return Protocols.names();
+		List<String> names = new ArrayList<String>();
+		for (Protocol protocol : Protocols.list()) {
+			if (isForwardable(protocol)) {
+				names.add(protocol.getName());
+			}
+		}
+		return names;
+	}
+
+	private static boolean isForwardable(Protocol protocol) {
+		return !(protocol instanceof FrameReader)
+				&& Arrays.equals(protocol.getSeparator(), ArdulinkProtocol2
+						.instance().getSeparator());
 	}
 
 	public void setTcphost(String tcphost) {
@@ -108,6 +145,8 @@ public class ProxyLinkConfig implements LinkConfig {
 		this.tcpport = tcpport;
 	}
 
+	// not thread-safe: the port list is requested using the connection that
+	// is handed over to the link by getRemote()
 	@ChoiceFor(value = "port", dependsOn = { "tcphost", "tcpport" })
 	public List<String> getAvailablePorts() throws IOException {
 		return tcphost == null ? Collections.<String> emptyList()
@@ -116,6 +155,10 @@ public class ProxyLinkConfig implements LinkConfig {
 
 	public synchronized ProxyConnectionToRemote getRemote()
 			throws UnknownHostException, IOException {
+		if (this.remote != null && this.remote.isNio() != nio) {
+			this.remote.close();
+			this.remote = null;
+		}
 		ProxyConnectionToRemote result = getRemoteInternal();
 		this.remote = null;
 		return result;
@@ -124,7 +167,7 @@ public class ProxyLinkConfig implements LinkConfig {
 	private ProxyConnectionToRemote getRemoteInternal()
 			throws UnknownHostException, IOException {
 		if (this.remote == null) {
-			this.remote = new ProxyConnectionToRemote(tcphost, tcpport);
+			this.remote = new ProxyConnectionToRemote(tcphost, tcpport, nio);
 		}
 		return this.remote;
 	}
@@ -24,11 +24,13 @@ import java.io.IOException;
 import java.net.Socket;
 import java.net.UnknownHostException;
 
+import org.ardulink.core.Connection;
 import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.SocketChannelConnection;
 import org.ardulink.core.StreamConnection;
 import org.ardulink.core.linkmanager.LinkFactory;
 import org.ardulink.core.proto.api.Protocol;
-import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.ardulink.core.proto.api.Protocols;
 
 /**
  * [ardulinktitle] [ardulinkversion]
@@ -59,10 +61,11 @@ public class ProxyLinkFactory implements LinkFactory<ProxyLinkConfig> {
 		checkState(OK.equals(response),
 				"Did not receive %s from remote, got %s", OK, response);
 		Socket socket = remote.getSocket();
-		Protocol proto = ArdulinkProtocol2.instance();
-		return new ConnectionBasedLink(new StreamConnection(
-				socket.getInputStream(), socket.getOutputStream(), proto),
-				proto) {
+		Protocol proto = Protocols.getByName(config.getProto());
+		Connection connection = config.isNio() ? new SocketChannelConnection(
+				socket.getChannel(), proto) : new StreamConnection(
+				socket.getInputStream(), socket.getOutputStream(), proto);
+		return new ConnectionBasedLink(connection, proto) {
 			@Override
 			public void close() throws IOException {
 				super.close();
@@ -16,11 +16,15 @@ limitations under the License.
 
 package org.ardulink.core.proxy;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsCollectionContaining.hasItem;
+import static org.hamcrest.core.IsNot.not;
 import static org.junit.Assert.assertThat;
 
 import java.util.Arrays;
+import java.util.List;
 
 import org.ardulink.core.Link;
 import org.ardulink.core.Pin;
@@ -61,6 +65,22 @@ public class ProxyLinkFactoryTest {
 		assertThat(port.getChoiceValues(), is(emptyArray));
 	}
 
+	@Test
+	public void offersOnlyProtocolsTheProxyServerCanForward() {
+		Configurer configurer = LinkManager.getInstance().getConfigurer(
+				URIs.newURI("ardulink://proxy"));
+		List<Object> protos = Arrays.asList(configurer.getAttribute("proto")
+				.getChoiceValues());
+		assertThat(protos, hasItem((Object) "ardulink2"));
+		assertThat(protos, not(hasItem((Object) "ardulinkbinary")));
+		assertThat(protos, not(hasItem((Object) "firmata")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsProtocolsTheProxyServerCannotForward() {
+		new ProxyLinkConfig().setProto("ardulinkbinary");
+	}
+
 	@Test
 	public void canReadAvailablePorts() {
 		LinkManager connectionManager = LinkManager.getInstance();
@@ -112,4 +132,42 @@ public class ProxyLinkFactoryTest {
 		newLink.close();
 	}
 
+	@Test
+	public void canWriteWhileReaderIsBlocked() throws Exception {
+		LinkManager connectionManager = LinkManager.getInstance();
+		Configurer configurer = connectionManager.getConfigurer(URIs
+				.newURI("ardulink://proxy?tcphost=localhost&tcpport="
+						+ proxyServerDouble.getLocalPort()));
+		configurer.getAttribute("port").setValue("myPortNr0");
+		Link newLink = configurer.newLink();
+
+		// give the reader thread time to block waiting for data
+		MILLISECONDS.sleep(500);
+		newLink.switchAnalogPin(Pin.analogPin(1), 123);
+		assertThat(proxyServerDouble.getReceived(), is(Arrays.asList(
+				"ardulink:networkproxyserver:get_port_list",
+				"ardulink:networkproxyserver:connect", "myPortNr0", "115200",
+				"alp://ppin/1/123")));
+
+		newLink.close();
+	}
+
+	@Test
+	public void canSwitchAnalogPortUsingNio() throws Exception {
+		LinkManager connectionManager = LinkManager.getInstance();
+		Configurer configurer = connectionManager.getConfigurer(URIs
+				.newURI("ardulink://proxy?nio=true&tcphost=localhost&tcpport="
+						+ proxyServerDouble.getLocalPort()));
+		configurer.getAttribute("port").setValue("myPortNr0");
+		Link newLink = configurer.newLink();
+
+		newLink.switchAnalogPin(Pin.analogPin(1), 123);
+		assertThat(proxyServerDouble.getReceived(), is(Arrays.asList(
+				"ardulink:networkproxyserver:get_port_list",
+				"ardulink:networkproxyserver:connect", "myPortNr0", "115200",
+				"alp://ppin/1/123")));
+
+		newLink.close();
+	}
+
 }
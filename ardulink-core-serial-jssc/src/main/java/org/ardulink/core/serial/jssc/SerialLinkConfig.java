@@ -63,6 +63,21 @@ public class SerialLinkConfig implements LinkConfig {
 	@Named("pingprobe")
 	private boolean pingprobe = true;
 
+	@Min(-1)
+	@Max(1000)
+	@Named("writelatency")
+	private int writelatency = -1;
+
+	@Min(1)
+	@Max(64)
+	@Named("qoswindow")
+	private int qoswindow = 1;
+
+	@Min(0)
+	@Max(10)
+	@Named("qosretries")
+	private int qosretries;
+
 	public int getBaudrate() {
 		return baudrate;
 	}
@@ -79,7 +94,7 @@ public class SerialLinkConfig implements LinkConfig {
 		return port;
 	}
 
-	@ChoiceFor("port")
+	@ChoiceFor(value = "port", threadSafe = true)
 	public String[] listPorts() {
 		return SerialPortList.getPortNames();
 	}
@@ -109,6 +124,18 @@ public class SerialLinkConfig implements LinkConfig {
 		return this.qos;
 	}
 
+	public int getWritelatency() {
+		return writelatency;
+	}
+
+	public int getQoswindow() {
+		return qoswindow;
+	}
+
+	public int getQosretries() {
+		return qosretries;
+	}
+
 	public void setBaudrate(int baudrate) {
 		this.baudrate = baudrate;
 	}
@@ -133,4 +160,16 @@ public class SerialLinkConfig implements LinkConfig {
 		this.waitsecs = waitsecs;
 	}
 
+	public void setWritelatency(int writelatency) {
+		this.writelatency = writelatency;
+	}
+
+	public void setQoswindow(int qoswindow) {
+		this.qoswindow = qoswindow;
+	}
+
+	public void setQosretries(int qosretries) {
+		this.qosretries = qosretries;
+	}
+
 }
@@ -16,6 +16,7 @@ limitations under the License.
 
 package org.ardulink.core.serial.jssc;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static jssc.SerialPort.DATABITS_8;
 import static jssc.SerialPort.PARITY_NONE;
@@ -24,6 +25,8 @@ import static org.ardulink.util.Preconditions.checkNotNull;
 import static org.ardulink.util.Preconditions.checkState;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import org.ardulink.core.AbstractConnectionBasedLink;
 import org.ardulink.core.ConnectionBasedLink;
@@ -31,7 +34,6 @@ import org.ardulink.core.StreamConnection;
 import org.ardulink.core.convenience.LinkDelegate;
 import org.ardulink.core.linkmanager.LinkFactory;
 import org.ardulink.core.proto.api.Protocol;
-import org.ardulink.core.proto.impl.ArdulinkProtocol2;
 import org.ardulink.core.qos.ConnectionBasedQosLink;
 
 import jssc.SerialPort;
@@ -47,8 +49,6 @@ import jssc.SerialPortException;
  */
 public class SerialLinkFactory implements LinkFactory<SerialLinkConfig> {
 
-	private static final Protocol proto = ArdulinkProtocol2.instance();
-
 	@Override
 	public String getName() {
 		return "serial-jssc";
@@ -59,10 +59,13 @@ public class SerialLinkFactory implements LinkFactory<SerialLinkConfig> {
 		String portIdentifier = checkNotNull(config.getPort(), "port must not be null");
 		final SerialPort serialPort = serialPort(config, portIdentifier);
 		
-		StreamConnection connection = new StreamConnection(new SerialInputStream(serialPort), new SerialOutputStream(serialPort),
-				proto);
+		// connection and link have to share the protocol instance (e.g. a
+		// negotiating protocol decides on the format while reading frames)
+		Protocol proto = config.getProto();
+		StreamConnection connection = connection(config, proto, new SerialInputStream(serialPort),
+				new SerialOutputStream(serialPort));
 
-		return new LinkDelegate(waitForArdulink(config, createDelegateTo(config, connection))) {
+		return new LinkDelegate(waitForArdulink(config, createDelegateTo(config, proto, connection))) {
 			@Override
 			public void close() throws IOException {
 				super.close();
@@ -75,6 +78,13 @@ public class SerialLinkFactory implements LinkFactory<SerialLinkConfig> {
 		};
 	}
 
+	private StreamConnection connection(SerialLinkConfig config, Protocol proto, InputStream inputStream,
+			OutputStream outputStream) {
+		int writelatency = config.getWritelatency();
+		return writelatency < 0 ? new StreamConnection(inputStream, outputStream, proto)
+				: new StreamConnection(inputStream, outputStream, proto, writelatency, MILLISECONDS);
+	}
+
 	private AbstractConnectionBasedLink waitForArdulink(SerialLinkConfig config, AbstractConnectionBasedLink link) {
 		if (config.isPingprobe()) {
 			checkState(link.waitForArduinoToBoot(config.getWaitsecs(), SECONDS),
@@ -89,10 +99,10 @@ public class SerialLinkFactory implements LinkFactory<SerialLinkConfig> {
 		return link;
 	}
 
-	private AbstractConnectionBasedLink createDelegateTo(SerialLinkConfig config, StreamConnection connection)
-			throws IOException {
-		Protocol proto = config.getProto();
-		return config.isQos() ? new ConnectionBasedQosLink(connection, proto)
+	private AbstractConnectionBasedLink createDelegateTo(SerialLinkConfig config, Protocol proto,
+			StreamConnection connection) throws IOException {
+		return config.isQos() ? new ConnectionBasedQosLink(connection, proto,
+				5, SECONDS, config.getQoswindow(), config.getQosretries())
 				: new ConnectionBasedLink(connection, proto);
 	}
 
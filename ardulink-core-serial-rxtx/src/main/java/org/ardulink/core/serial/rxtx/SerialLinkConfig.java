@@ -67,6 +67,21 @@ public class SerialLinkConfig implements LinkConfig {
 	@Named("pingprobe")
 	private boolean pingprobe = true;
 
+	@Min(-1)
+	@Max(1000)
+	@Named("writelatency")
+	private int writelatency = -1;
+
+	@Min(1)
+	@Max(64)
+	@Named("qoswindow")
+	private int qoswindow = 1;
+
+	@Min(0)
+	@Max(10)
+	@Named("qosretries")
+	private int qosretries;
+
 	public int getBaudrate() {
 		return baudrate;
 	}
@@ -84,7 +99,7 @@ public class SerialLinkConfig implements LinkConfig {
 		return port;
 	}
 
-	@ChoiceFor("port")
+	@ChoiceFor(value = "port", threadSafe = true)
 	public List<String> listPorts() {
 		List<String> ports = Lists.newArrayList();
 		for (CommPortIdentifier portIdentifier : portIdentifiers()) {
@@ -120,6 +135,18 @@ public class SerialLinkConfig implements LinkConfig {
 		return this.qos;
 	}
 
+	public int getWritelatency() {
+		return writelatency;
+	}
+
+	public int getQoswindow() {
+		return qoswindow;
+	}
+
+	public int getQosretries() {
+		return qosretries;
+	}
+
 	@SuppressWarnings("unchecked")
 	private Iterable<CommPortIdentifier> portIdentifiers() {
 		return forEnumeration((Enumeration<CommPortIdentifier>) CommPortIdentifier
@@ -150,4 +177,16 @@ public class SerialLinkConfig implements LinkConfig {
 		this.waitsecs = waitsecs;
 	}
 
+	public void setWritelatency(int writelatency) {
+		this.writelatency = writelatency;
+	}
+
+	public void setQoswindow(int qoswindow) {
+		this.qoswindow = qoswindow;
+	}
+
+	public void setQosretries(int qosretries) {
+		this.qosretries = qosretries;
+	}
+
 }
@@ -19,6 +19,7 @@ package org.ardulink.core.serial.rxtx;
 import static gnu.io.SerialPort.DATABITS_8;
 import static gnu.io.SerialPort.PARITY_NONE;
 import static gnu.io.SerialPort.STOPBITS_1;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.ardulink.util.Preconditions.checkNotNull;
 import static org.ardulink.util.Preconditions.checkState;
@@ -29,6 +30,8 @@ import gnu.io.SerialPort;
 import gnu.io.UnsupportedCommOperationException;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import org.ardulink.core.AbstractConnectionBasedLink;
 import org.ardulink.core.ConnectionBasedLink;
@@ -36,7 +39,6 @@ import org.ardulink.core.StreamConnection;
 import org.ardulink.core.convenience.LinkDelegate;
 import org.ardulink.core.linkmanager.LinkFactory;
 import org.ardulink.core.proto.api.Protocol;
-import org.ardulink.core.proto.impl.ArdulinkProtocol2;
 import org.ardulink.core.qos.ConnectionBasedQosLink;
 
 /**
@@ -49,8 +51,6 @@ import org.ardulink.core.qos.ConnectionBasedQosLink;
  */
 public class SerialLinkFactory implements LinkFactory<SerialLinkConfig> {
 
-	private static final Protocol proto = ArdulinkProtocol2.instance();
-
 	@Override
 	public String getName() {
 		return "serial";
@@ -66,12 +66,14 @@ public class SerialLinkFactory implements LinkFactory<SerialLinkConfig> {
 		checkState(!portIdentifier.isCurrentlyOwned(),
 				"Port %s is currently in use", config.getPort());
 		final SerialPort serialPort = serialPort(config, portIdentifier);
-		StreamConnection connection = new StreamConnection(
-				serialPort.getInputStream(), serialPort.getOutputStream(),
-				proto);
+		// connection and link have to share the protocol instance (e.g. a
+		// negotiating protocol decides on the format while reading frames)
+		Protocol proto = config.getProto();
+		StreamConnection connection = connection(config, proto,
+				serialPort.getInputStream(), serialPort.getOutputStream());
 
 		return new LinkDelegate(waitForArdulink(config,
-				createDelegateTo(config, connection))) {
+				createDelegateTo(config, proto, connection))) {
 			@Override
 			public void close() throws IOException {
 				super.close();
@@ -80,6 +82,14 @@ public class SerialLinkFactory implements LinkFactory<SerialLinkConfig> {
 		};
 	}
 
+	private StreamConnection connection(SerialLinkConfig config,
+			Protocol proto, InputStream inputStream, OutputStream outputStream) {
+		int writelatency = config.getWritelatency();
+		return writelatency < 0 ? new StreamConnection(inputStream,
+				outputStream, proto) : new StreamConnection(inputStream,
+				outputStream, proto, writelatency, MILLISECONDS);
+	}
+
 	private AbstractConnectionBasedLink waitForArdulink(
 			SerialLinkConfig config, AbstractConnectionBasedLink link) {
 		if (config.isPingprobe()) {
@@ -98,10 +108,10 @@ public class SerialLinkFactory implements LinkFactory<SerialLinkConfig> {
 
 	@SuppressWarnings("resource")
 	private AbstractConnectionBasedLink createDelegateTo(
-			SerialLinkConfig config, StreamConnection connection)
-			throws IOException {
-		Protocol proto = config.getProto();
-		return config.isQos() ? new ConnectionBasedQosLink(connection, proto)
+			SerialLinkConfig config, Protocol proto,
+			StreamConnection connection) throws IOException {
+		return config.isQos() ? new ConnectionBasedQosLink(connection, proto,
+				5, SECONDS, config.getQoswindow(), config.getQosretries())
 				: new ConnectionBasedLink(connection, proto);
 	}
 
@@ -57,7 +57,8 @@ public class SerialLinkFactoryIntegrationTest {
 		Configurer configurer = connectionManager.getConfigurer(URIs.newURI("ardulink://serial"));
 
 		assertThat(newArrayList(configurer.getAttributes()),
-				is(newArrayList("port", "baudrate", "proto", "qos", "waitsecs", "pingprobe")));
+				is(newArrayList("port", "baudrate", "proto", "qos", "waitsecs", "pingprobe", "writelatency", "qoswindow",
+						"qosretries")));
 
 		ConfigAttribute port = configurer.getAttribute("port");
 		ConfigAttribute proto = configurer.getAttribute("proto");
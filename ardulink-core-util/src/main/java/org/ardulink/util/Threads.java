@@ -0,0 +1,141 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+ 
+    http://www.apache.org/licenses/LICENSE-2.0
+ 
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.util;
+
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Preconditions.checkState;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Creates the threads used by Ardulink (stream readers, writers, listener
+ * dispatchers, ...). The {@link ThreadFactory} used can be replaced by
+ * {@link #setThreadFactory(ThreadFactory)} or by setting the system property
+ * <code>ardulink.threads</code> to <code>virtual</code> which makes Ardulink
+ * use virtual threads if the JVM supports them (Java 21 and later) and
+ * platform threads otherwise.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public final class Threads {
+
+	public static final String THREADS_PROPERTY = "ardulink.threads";
+
+	private static final ThreadFactory platformThreadFactory = new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			return new Thread(runnable);
+		}
+	};
+
+	private static final ThreadFactory virtualThreadFactory = lookupVirtualThreadFactory();
+
+	private static volatile ThreadFactory threadFactory = "virtual"
+			.equalsIgnoreCase(System.getProperty(THREADS_PROPERTY))
+			&& virtualThreadFactory != null ? virtualThreadFactory
+			: platformThreadFactory;
+
+	private static final ThreadFactory daemonThreadFactory = new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = threadFactory.newThread(runnable);
+			if (!thread.isDaemon()) {
+				thread.setDaemon(true);
+			}
+			return thread;
+		}
+	};
+
+	private Threads() {
+		super();
+	}
+
+	private static ThreadFactory lookupVirtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+					.getMethod("factory").invoke(builder);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	public static boolean virtualThreadsSupported() {
+		return virtualThreadFactory != null;
+	}
+
+	/**
+	 * Returns a factory creating virtual threads.
+	 * 
+	 * @return factory creating virtual threads
+	 * @throws IllegalStateException
+	 *             if the JVM does not support virtual threads
+	 */
+	public static ThreadFactory virtualThreadFactory() {
+		checkState(virtualThreadFactory != null,
+				"Virtual threads are not supported by this JVM");
+		return virtualThreadFactory;
+	}
+
+	public static ThreadFactory platformThreadFactory() {
+		return platformThreadFactory;
+	}
+
+	public static ThreadFactory getThreadFactory() {
+		return threadFactory;
+	}
+
+	/**
+	 * Sets the factory used for all threads created afterwards.
+	 * 
+	 * @param threadFactory
+	 *            the factory to use, e.g. {@link #virtualThreadFactory()}
+	 */
+	public static void setThreadFactory(ThreadFactory threadFactory) {
+		Threads.threadFactory = checkNotNull(threadFactory,
+				"threadFactory must not be null");
+	}
+
+	/**
+	 * Returns a factory creating daemon threads using the factory currently
+	 * set. Virtual threads always are daemon threads.
+	 * 
+	 * @return factory creating daemon threads
+	 */
+	public static ThreadFactory daemonThreadFactory() {
+		return daemonThreadFactory;
+	}
+
+	/**
+	 * Creates and starts a daemon thread running the passed runnable.
+	 * 
+	 * @param runnable
+	 *            the code to run
+	 * @return the started thread
+	 */
+	public static Thread startDaemonThread(Runnable runnable) {
+		Thread thread = daemonThreadFactory.newThread(runnable);
+		thread.start();
+		return thread;
+	}
+
+}
@@ -0,0 +1,91 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.util;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class ThreadsTest {
+
+	private final ThreadFactory initial = Threads.getThreadFactory();
+
+	@After
+	public void tearDown() {
+		Threads.setThreadFactory(initial);
+	}
+
+	@Test
+	public void startsDaemonThreads() throws InterruptedException {
+		final CountDownLatch ran = new CountDownLatch(1);
+		Thread thread = Threads.startDaemonThread(new Runnable() {
+			@Override
+			public void run() {
+				ran.countDown();
+			}
+		});
+		assertThat(thread.isDaemon(), is(true));
+		assertThat(ran.await(5, SECONDS), is(true));
+	}
+
+	@Test
+	public void threadsAreCreatedByTheFactorySet() {
+		final AtomicInteger created = new AtomicInteger();
+		Threads.setThreadFactory(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				created.incrementAndGet();
+				return new Thread(runnable);
+			}
+		});
+		Threads.daemonThreadFactory().newThread(new Runnable() {
+			@Override
+			public void run() {
+				// noop
+			}
+		});
+		assertThat(created.get(), is(1));
+	}
+
+	@Test
+	public void virtualThreadFactoryIsOnlyAvailableIfSupported() {
+		try {
+			ThreadFactory factory = Threads.virtualThreadFactory();
+			assertThat(Threads.virtualThreadsSupported(), is(true));
+			assertThat(factory, sameInstance(Threads.virtualThreadFactory()));
+		} catch (IllegalStateException e) {
+			assertThat(Threads.virtualThreadsSupported(), is(false));
+		}
+	}
+
+}
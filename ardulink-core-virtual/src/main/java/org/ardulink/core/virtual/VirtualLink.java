@@ -1,5 +1,7 @@
 package org.ardulink.core.virtual;
 
+import static org.ardulink.util.Threads.startDaemonThread;
+
 import java.io.IOException;
 import java.security.SecureRandom;
 import java.util.Arrays;
@@ -26,12 +28,7 @@ public class VirtualLink extends AbstractListenerLink {
 
 	private final SecureRandom secureRandom = new SecureRandom();
 
-	private final Thread thread = new Thread() {
-
-		{
-			setDaemon(true);
-			start();
-		}
+	private final Thread thread = startDaemonThread(new Runnable() {
 
 		@Override
 		public void run() {
@@ -54,7 +51,7 @@ public class VirtualLink extends AbstractListenerLink {
 			}
 		}
 
-	};
+	});
 
 	private final Map<Pin, Object> listeningPins = new HashMap<Pin, Object>();
 
@@ -16,6 +16,8 @@ limitations under the License.
 */
 package org.ardulink.mqtt.compactors;
 
+import static org.ardulink.util.Threads.startDaemonThread;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -33,11 +35,7 @@ public class ThreadTimeSlicer implements TimeSlicer {
 	private final List<SlicedAnalogReadChangeListenerAdapter> runnables = new ArrayList<SlicedAnalogReadChangeListenerAdapter>();
 
 	public ThreadTimeSlicer(final long value, final TimeUnit timeUnit) {
-		new Thread() {
-			{
-				setDaemon(true);
-				start();
-			}
+		startDaemonThread(new Runnable() {
 
 			@Override
 			public void run() {
@@ -52,7 +50,7 @@ public class ThreadTimeSlicer implements TimeSlicer {
 					}
 				}
 			}
-		};
+		});
 	}
 
 	@Override
@@ -17,6 +17,7 @@ package org.ardulink.connection.proxy;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.ardulink.connection.proxy.NetworkProxyMessages.STOP_SERVER_CMD;
+import static org.ardulink.util.Threads.getThreadFactory;
 
 import java.io.PrintWriter;
 import java.net.InetAddress;
@@ -55,8 +56,9 @@ public class NetworkProxyServer {
 					System.out
 							.println("Ardulink Network Proxy Server running...");
 					while (true) {
-						new Thread(new NetworkProxyServerConnection(
-								serverSocket.accept())).start();
+						getThreadFactory().newThread(
+								new NetworkProxyServerConnection(serverSocket
+										.accept())).start();
 					}
 				} finally {
 					serverSocket.close();
@@ -21,6 +21,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 import org.ardulink.core.Connection;
 import org.ardulink.core.ConnectionBasedLink;
@@ -77,10 +80,14 @@ public class NetworkProxyServerConnection implements Runnable {
 
 			final Connection connection = ((ConnectionBasedLink) link)
 					.getConnection();
-			connection.addListener(new Connection.ListenerAdapter() {
+			final WritableByteChannel channelRemote = Channels
+					.newChannel(osRemote);
+			connection.addListener(new Connection.ByteBufferListenerAdapter() {
 				@Override
-				public void received(byte[] bytes) throws IOException {
-					osRemote.write(bytes);
+				public void received(ByteBuffer buffer) throws IOException {
+					while (buffer.hasRemaining()) {
+						channelRemote.write(buffer);
+					}
 					osRemote.write(proto.getSeparator());
 				}
 			});
@@ -93,7 +100,7 @@ public class NetworkProxyServerConnection implements Runnable {
 				}
 			};
 			try {
-				streamReader.readUntilClosed(new String(proto.getSeparator()));
+				streamReader.readUntilClosed(proto.getSeparator());
 			} finally {
 				streamReader.close();
 			}